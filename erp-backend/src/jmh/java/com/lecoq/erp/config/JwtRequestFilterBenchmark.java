@@ -0,0 +1,82 @@
+package com.lecoq.erp.config;
+
+import com.lecoq.erp.entity.Usuario;
+import com.lecoq.erp.service.TokenRevocationService;
+import com.lecoq.erp.service.TokenVersionService;
+import jakarta.servlet.FilterChain;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Costo de {@link JwtRequestFilter#doFilterInternal} por request para un token vigente que acierta
+ * en el cache (verifica revocación y versión en memoria), en modo sin estado y según el tamaño del
+ * conjunto de tokens revocados. Debe mantenerse plano.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class JwtRequestFilterBenchmark {
+
+    private static final String SECRET = "lecoqERPSecretKeyForJWTTokenGeneration2024";
+
+    @Param({"0", "1000", "100000", "1000000", "3000000"})
+    private int revocados;
+
+    private JwtRequestFilter filter;
+    private MockHttpServletRequest request;
+    private MockHttpServletResponse response;
+    private final FilterChain chain = (request, response) -> { };
+
+    @Setup
+    @SuppressWarnings("unchecked")
+    public void setup() throws Exception {
+        JwtTokenUtil jwtTokenUtil = new JwtTokenUtil();
+        ReflectionTestUtils.setField(jwtTokenUtil, "secret", SECRET);
+        ReflectionTestUtils.setField(jwtTokenUtil, "expiration", 86400000L);
+        ReflectionTestUtils.setField(jwtTokenUtil, "stateless", true);
+        jwtTokenUtil.init();
+
+        JwtTokenCache jwtTokenCache = new JwtTokenCache();
+        ReflectionTestUtils.setField(jwtTokenCache, "maxSize", 10000);
+        ReflectionTestUtils.setField(jwtTokenCache, "ttl", 300000L);
+        jwtTokenCache.init();
+
+        Usuario admin = Usuario.fromTokenClaims(1L, "admin", Usuario.Rol.ADMIN, 0);
+        TokenVersionService tokenVersionService = new TokenVersionService(null);
+        tokenVersionService.registrar(admin);
+
+        TokenRevocationService tokenRevocationService = new TokenRevocationService(null, jwtTokenCache);
+        Map<String, Long> enMemoria = (Map<String, Long>) ReflectionTestUtils.getField(tokenRevocationService, "revocados");
+        long expiracion = System.currentTimeMillis() + TimeUnit.DAYS.toMillis(1);
+        for (int i = 0; i < revocados; i++) {
+            enMemoria.put(UUID.randomUUID().toString(), expiracion);
+        }
+
+        filter = new JwtRequestFilter(jwtTokenUtil, null, jwtTokenCache, tokenVersionService, tokenRevocationService);
+        response = new MockHttpServletResponse();
+
+        request = new MockHttpServletRequest();
+        request.addHeader("Authorization", "Bearer " + jwtTokenUtil.generateToken(admin));
+
+        // La primera pasada deja el token en el cache
+        tokenVigenteEnCache();
+    }
+
+    @Benchmark
+    public Authentication tokenVigenteEnCache() throws Exception {
+        SecurityContextHolder.clearContext();
+        filter.doFilterInternal(request, response, chain);
+        return SecurityContextHolder.getContext().getAuthentication();
+    }
+}
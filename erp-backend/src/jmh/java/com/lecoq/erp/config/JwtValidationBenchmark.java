@@ -0,0 +1,65 @@
+package com.lecoq.erp.config;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Costo de validar un token por request: la ruta anterior (clave y parser nuevos
+ * en cada llamada, tres parseos por request) frente a {@link JwtTokenUtil#parse}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JwtValidationBenchmark {
+
+    private static final String SECRET = "lecoqERPSecretKeyForJWTTokenGeneration2024";
+
+    private JwtTokenUtil jwtTokenUtil;
+    private UserDetails userDetails;
+    private String token;
+
+    @Setup
+    public void setup() {
+        jwtTokenUtil = new JwtTokenUtil();
+        ReflectionTestUtils.setField(jwtTokenUtil, "secret", SECRET);
+        ReflectionTestUtils.setField(jwtTokenUtil, "expiration", 86400000L);
+        jwtTokenUtil.init();
+
+        userDetails = new User("admin", "", List.of());
+        token = jwtTokenUtil.generateToken(userDetails);
+    }
+
+    @Benchmark
+    public boolean anterior() {
+        String username = parseAnterior(token).getSubject();
+        boolean mismoUsuario = parseAnterior(token).getSubject().equals(username);
+        Date expiration = parseAnterior(token).getExpiration();
+        return mismoUsuario && username.equals(userDetails.getUsername()) && !expiration.before(new Date());
+    }
+
+    @Benchmark
+    public boolean parseUnico() {
+        return jwtTokenUtil.validateToken(jwtTokenUtil.parse(token), userDetails);
+    }
+
+    private static Claims parseAnterior(String token) {
+        return Jwts.parserBuilder()
+                .setSigningKey(Keys.hmacShaKeyFor(SECRET.getBytes(StandardCharsets.UTF_8)))
+                .build()
+                .parseClaimsJws(token)
+                .getBody();
+    }
+}
@@ -0,0 +1,111 @@
+package com.lecoq.erp.service;
+
+import com.lecoq.erp.ErpLecoqApplication;
+import com.lecoq.erp.entity.DetalleMaquilado;
+import com.lecoq.erp.entity.Maquilado;
+import com.lecoq.erp.entity.Producto;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput de escrituras concurrentes sobre un mismo maquilado con 1, 10 y 100 escritores.
+ * Cada operación fija la cantidad recibida de su única línea, lo que siempre incrementa la
+ * versión, de modo que todos los escritores compiten por la misma fila. Los contadores
+ * {@code exitos} y {@code conflictos} muestran cuántas operaciones agotaron los reintentos.
+ * Crea datos: ejecutar contra una base descartable (ver {@link PedidoInsertBenchmark}).
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class MaquiladoContencionBenchmark {
+
+    private static final int CANTIDAD_SOLICITADA = 1000;
+
+    private ConfigurableApplicationContext context;
+    private MaquiladoService maquiladoService;
+    private Long maquiladoId;
+    private Long detalleId;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Resultados {
+        public long exitos;
+        public long conflictos;
+    }
+
+    @Setup
+    public void setup() {
+        context = new SpringApplicationBuilder(ErpLecoqApplication.class)
+                .web(WebApplicationType.NONE)
+                .properties("spring.jpa.show-sql=false")
+                .run();
+        maquiladoService = context.getBean(MaquiladoService.class);
+        Long usuarioId = context.getBean(UsuarioService.class).findByUsername("admin").orElseThrow().getId();
+
+        Producto producto = new Producto();
+        producto.setNombre("Producto contención " + System.nanoTime());
+        producto.setPresentacion("Lata 250ml");
+        producto.setPrecio(new BigDecimal("3.50"));
+        Long productoId = context.getBean(ProductoService.class).create(producto).getId();
+
+        Producto referencia = new Producto();
+        referencia.setId(productoId);
+        DetalleMaquilado detalle = new DetalleMaquilado();
+        detalle.setProducto(referencia);
+        detalle.setCantidadSolicitada(CANTIDAD_SOLICITADA);
+        detalle.setCostoUnitario(new BigDecimal("1.20"));
+        Maquilado maquilado = new Maquilado();
+        maquilado.setProveedorNombre("Proveedor benchmark");
+        maquilado.setDetalles(List.of(detalle));
+
+        maquiladoId = maquiladoService.create(maquilado, usuarioId).getId();
+        maquiladoService.cambiarEstado(maquiladoId, Maquilado.EstadoMaquilado.FINALIZADO);
+        detalleId = maquiladoService.findDetallesByMaquiladoId(maquiladoId).get(0).getId();
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void unEscritor(Resultados resultados) {
+        escribir(resultados);
+    }
+
+    @Benchmark
+    @Threads(10)
+    public void diezEscritores(Resultados resultados) {
+        escribir(resultados);
+    }
+
+    @Benchmark
+    @Threads(100)
+    public void cienEscritores(Resultados resultados) {
+        escribir(resultados);
+    }
+
+    private void escribir(Resultados resultados) {
+        DetalleMaquilado cambio = new DetalleMaquilado();
+        cambio.setId(detalleId);
+        cambio.setCantidadSolicitada(CANTIDAD_SOLICITADA);
+        cambio.setCantidadRecibida(ThreadLocalRandom.current().nextInt(CANTIDAD_SOLICITADA + 1));
+        try {
+            maquiladoService.actualizarCantidadesRecibidas(maquiladoId, List.of(cambio));
+            resultados.exitos++;
+        } catch (ConflictoVersionException e) {
+            resultados.conflictos++;
+        }
+    }
+}
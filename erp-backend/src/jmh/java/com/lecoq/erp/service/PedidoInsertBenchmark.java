@@ -0,0 +1,84 @@
+package com.lecoq.erp.service;
+
+import com.lecoq.erp.ErpLecoqApplication;
+import com.lecoq.erp.entity.DetallePedido;
+import com.lecoq.erp.entity.Pedido;
+import com.lecoq.erp.entity.Producto;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput de creación de pedidos de 100 líneas contra la base configurada, sin lotes
+ * ({@code batchSize=1}, equivalente a la inserción fila por fila de IDENTITY) y con lotes JDBC.
+ * Crea datos: ejecutar contra una base descartable, por ejemplo con
+ * {@code -Dspring.datasource.url=jdbc:mysql://localhost:3306/lecoq_bench?createDatabaseIfNotExist=true&rewriteBatchedStatements=true}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class PedidoInsertBenchmark {
+
+    private static final int LINEAS = 100;
+
+    @Param({"1", "50"})
+    private int batchSize;
+
+    private ConfigurableApplicationContext context;
+    private PedidoService pedidoService;
+    private Long usuarioId;
+    private List<Long> productoIds;
+
+    @Setup
+    public void setup() {
+        context = new SpringApplicationBuilder(ErpLecoqApplication.class)
+                .web(WebApplicationType.NONE)
+                .properties("spring.jpa.show-sql=false",
+                        "spring.jpa.properties.hibernate.jdbc.batch_size=" + batchSize)
+                .run();
+        pedidoService = context.getBean(PedidoService.class);
+        usuarioId = context.getBean(UsuarioService.class).findByUsername("admin").orElseThrow().getId();
+
+        ProductoService productoService = context.getBean(ProductoService.class);
+        productoIds = new ArrayList<>();
+        for (int i = 0; i < LINEAS; i++) {
+            Producto producto = new Producto();
+            producto.setNombre("Producto benchmark " + i + " " + System.nanoTime());
+            producto.setPresentacion("Lata 250ml");
+            producto.setPrecio(new BigDecimal("3.50"));
+            producto.setStock(1_000_000_000);
+            productoIds.add(productoService.create(producto).getId());
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Long crearPedido() {
+        Pedido pedido = new Pedido();
+        pedido.setClienteNombre("Cliente benchmark");
+        List<DetallePedido> detalles = new ArrayList<>(LINEAS);
+        for (Long productoId : productoIds) {
+            Producto referencia = new Producto();
+            referencia.setId(productoId);
+            DetallePedido detalle = new DetallePedido();
+            detalle.setProducto(referencia);
+            detalle.setCantidad(1);
+            detalles.add(detalle);
+        }
+        pedido.setDetalles(detalles);
+        return pedidoService.create(pedido, usuarioId).getId();
+    }
+}
@@ -1,6 +1,9 @@
 package com.lecoq.erp.config;
 
+import com.lecoq.erp.entity.Usuario;
 import com.lecoq.erp.service.CustomUserDetailsService;
+import com.lecoq.erp.service.TokenRevocationService;
+import com.lecoq.erp.service.TokenVersionService;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -23,6 +26,9 @@ public class JwtRequestFilter extends OncePerRequestFilter {
 
     private final JwtTokenUtil jwtTokenUtil;
     private final CustomUserDetailsService userDetailsService;
+    private final JwtTokenCache jwtTokenCache;
+    private final TokenVersionService tokenVersionService;
+    private final TokenRevocationService tokenRevocationService;
 
     @Override
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, 
@@ -30,30 +36,76 @@ public class JwtRequestFilter extends OncePerRequestFilter {
 
         final String requestTokenHeader = request.getHeader("Authorization");
 
-        String username = null;
         String jwtToken = null;
+        JwtTokenUtil.JwtClaims claims = null;
 
         if (requestTokenHeader != null && requestTokenHeader.startsWith("Bearer ")) {
             jwtToken = requestTokenHeader.substring(7);
+
+            // Token ya verificado: se evita re-parsear y consultar la base de datos, pero la
+            // revocación y la versión se vuelven a verificar porque pueden cambiar en otra instancia
+            JwtTokenCache.TokenVerificado cached = jwtTokenCache.get(jwtToken);
+            if (cached != null && sigueVigente(cached)) {
+                if (SecurityContextHolder.getContext().getAuthentication() == null) {
+                    authenticate(cached.userDetails(), request);
+                }
+                chain.doFilter(request, response);
+                return;
+            }
+            if (cached != null) {
+                jwtTokenCache.invalidate(jwtToken);
+            }
+
             try {
-                username = jwtTokenUtil.getUsernameFromToken(jwtToken);
+                claims = jwtTokenUtil.parse(jwtToken);
             } catch (Exception e) {
                 log.error("Error obteniendo username del token JWT: {}", e.getMessage());
             }
+
+            // Un token revocado puede seguir en el cache de otra instancia: por eso el acierto
+            // también consulta la revocación (ver sigueVigente)
+            if (claims != null && tokenRevocationService.isRevocado(claims.getId())) {
+                log.warn("Token JWT revocado para usuario: {}", claims.getSubject());
+                claims = null;
+            }
         }
 
-        if (username != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-            UserDetails userDetails = userDetailsService.loadUserByUsername(username);
+        if (claims != null && SecurityContextHolder.getContext().getAuthentication() == null
+                && jwtTokenUtil.isStateless() && claims.hasPrincipalClaims()) {
+            // Principal construido desde el token; solo se verifica la versión en memoria
+            if (tokenVersionService.isVigente(claims.getUsuarioId(), claims.getTokenVersion())) {
+                UserDetails userDetails = claims.toUsuario();
+                jwtTokenCache.put(jwtToken, claims, userDetails);
+                authenticate(userDetails, request);
+            } else {
+                log.warn("Token JWT obsoleto para usuario: {}", claims.getSubject());
+            }
+        } else if (claims != null && SecurityContextHolder.getContext().getAuthentication() == null) {
+            UserDetails userDetails = userDetailsService.loadUserByUsername(claims.getSubject());
 
-            if (jwtTokenUtil.validateToken(jwtToken, userDetails)) {
-                UsernamePasswordAuthenticationToken authToken = 
-                    new UsernamePasswordAuthenticationToken(
-                        userDetails, null, userDetails.getAuthorities());
-                authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
-                SecurityContextHolder.getContext().setAuthentication(authToken);
+            if (jwtTokenUtil.validateToken(claims, userDetails)) {
+                // Solo se cachea si la versión cargada coincide con la vigente: si no, el acierto la rechazaría
+                if (userDetails instanceof Usuario usuario
+                        && tokenVersionService.isVigente(usuario.getId(), usuario.getTokenVersion())) {
+                    jwtTokenCache.put(jwtToken, claims, userDetails);
+                }
+                authenticate(userDetails, request);
             }
         }
         
         chain.doFilter(request, response);
     }
+
+    private boolean sigueVigente(JwtTokenCache.TokenVerificado cached) {
+        return !tokenRevocationService.isRevocado(cached.jti())
+                && tokenVersionService.isVigente(cached.usuarioId(), cached.tokenVersion());
+    }
+
+    private void authenticate(UserDetails userDetails, HttpServletRequest request) {
+        UsernamePasswordAuthenticationToken authToken = 
+            new UsernamePasswordAuthenticationToken(
+                userDetails, null, userDetails.getAuthorities());
+        authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
+        SecurityContextHolder.getContext().setAuthentication(authToken);
+    }
 }
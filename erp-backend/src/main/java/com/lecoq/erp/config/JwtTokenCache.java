@@ -0,0 +1,120 @@
+package com.lecoq.erp.config;
+
+import com.lecoq.erp.entity.Usuario;
+import com.lecoq.erp.service.CacheAcotado;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache acotado de tokens JWT ya verificados. La clave es el SHA-256 del token
+ * (nunca el token en claro) y cada entrada expira con el token o al cumplir el TTL,
+ * lo que ocurra primero. Cada entrada guarda el jti, el id de usuario y la versión de
+ * token para que el filtro repita en cada acierto las verificaciones en memoria de
+ * revocación y versión: un acierto evita el parseo y la base de datos, no esas verificaciones.
+ */
+@Component
+@Slf4j
+public class JwtTokenCache {
+
+    @Value("${app.jwt.cache.max-size:10000}")
+    private int maxSize;
+
+    @Value("${app.jwt.cache.ttl:300000}")
+    private long ttl;
+
+    private CacheAcotado<String, TokenVerificado> cache;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        cache = new CacheAcotado<>(maxSize);
+    }
+
+    public TokenVerificado get(String token) {
+        TokenVerificado cached = cache.get(digest(token));
+        if (cached == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return cached;
+    }
+
+    public void put(String token, JwtTokenUtil.JwtClaims claims, UserDetails userDetails) {
+        Long usuarioId = null;
+        Integer tokenVersion = null;
+        if (userDetails instanceof Usuario usuario) {
+            usuarioId = usuario.getId();
+            tokenVersion = usuario.getTokenVersion();
+        }
+        Date expiration = claims.getExpiration();
+        long expiresAt = Math.min(expiration.getTime(), System.currentTimeMillis() + ttl);
+        cache.put(digest(token), new TokenVerificado(userDetails, claims.getId(), usuarioId, tokenVersion), expiresAt);
+    }
+
+    public void invalidate(String token) {
+        cache.remove(digest(token));
+    }
+
+    public void invalidateUser(String username) {
+        if (username == null) {
+            return;
+        }
+        int before = cache.size();
+        cache.removeIf(cached -> username.equals(cached.userDetails().getUsername()));
+        log.debug("Tokens en cache invalidados para {}: {}", username, before - cache.size());
+    }
+
+    /**
+     * Descarta los tokens revocados en otra instancia, que el filtro igual rechazaría al consultarlos.
+     */
+    public void invalidateJtis(Collection<String> jtis) {
+        if (!jtis.isEmpty()) {
+            cache.removeIf(cached -> jtis.contains(cached.jti()));
+        }
+    }
+
+    public void clear() {
+        cache.clear();
+    }
+
+    public Map<String, Object> getEstadisticas() {
+        long h = hits.get();
+        long m = misses.get();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("tamano", cache.size());
+        stats.put("tamanoMaximo", cache.getMaxSize());
+        stats.put("aciertos", h);
+        stats.put("fallos", m);
+        stats.put("desalojos", cache.getDesalojos());
+        stats.put("tasaAciertos", h + m == 0 ? 0.0 : (double) h / (h + m));
+        return stats;
+    }
+
+    private static String digest(String token) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            byte[] hash = md.digest(token.getBytes(StandardCharsets.UTF_8));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 no disponible", e);
+        }
+    }
+
+    public record TokenVerificado(UserDetails userDetails, String jti, Long usuarioId, Integer tokenVersion) {
+    }
+}
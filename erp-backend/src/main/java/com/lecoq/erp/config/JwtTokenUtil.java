@@ -1,9 +1,13 @@
 package com.lecoq.erp.config;
 
+import com.lecoq.erp.entity.Usuario;
 import io.jsonwebtoken.*;
 import io.jsonwebtoken.security.Keys;
+import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Component;
 
@@ -11,7 +15,9 @@ import javax.crypto.SecretKey;
 import java.nio.charset.StandardCharsets;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.UUID;
 import java.util.function.Function;
 
 @Component
@@ -24,9 +30,29 @@ public class JwtTokenUtil {
     @Value("${app.jwt.expiration}")
     private Long expiration;
 
-    private SecretKey getSigningKey() {
-        byte[] keyBytes = secret.getBytes(StandardCharsets.UTF_8);
-        return Keys.hmacShaKeyFor(keyBytes);
+    // Modo sin estado: id, rol y versión viajan firmados en el token y el filtro no consulta la BD
+    @Value("${app.jwt.stateless:false}")
+    private boolean stateless;
+
+    // La clave y el parser son inmutables y thread-safe: se construyen una sola vez
+    private SecretKey signingKey;
+    private JwtParser jwtParser;
+
+    @PostConstruct
+    void init() {
+        signingKey = Keys.hmacShaKeyFor(secret.getBytes(StandardCharsets.UTF_8));
+        jwtParser = Jwts.parserBuilder()
+                .setSigningKey(signingKey)
+                .build();
+    }
+
+    /**
+     * Verifica la firma y parsea el token una única vez.
+     *
+     * @throws JwtException si el token es inválido, está expirado o fue alterado
+     */
+    public JwtClaims parse(String token) {
+        return new JwtClaims(getAllClaimsFromToken(token));
     }
 
     public String getUsernameFromToken(String token) {
@@ -43,20 +69,20 @@ public class JwtTokenUtil {
     }
 
     private Claims getAllClaimsFromToken(String token) {
-        return Jwts.parserBuilder()
-                .setSigningKey(getSigningKey())
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
+        return jwtParser.parseClaimsJws(token).getBody();
     }
 
-    private Boolean isTokenExpired(String token) {
-        final Date expiration = getExpirationDateFromToken(token);
-        return expiration.before(new Date());
+    public boolean isStateless() {
+        return stateless;
     }
 
     public String generateToken(UserDetails userDetails) {
         Map<String, Object> claims = new HashMap<>();
+        if (stateless && userDetails instanceof Usuario usuario) {
+            claims.put(JwtClaims.ID, usuario.getId());
+            claims.put(JwtClaims.ROL, usuario.getRol().name());
+            claims.put(JwtClaims.VERSION, usuario.getTokenVersion());
+        }
         return createToken(claims, userDetails.getUsername());
     }
 
@@ -66,33 +92,98 @@ public class JwtTokenUtil {
 
         return Jwts.builder()
                 .setClaims(claims)
+                .setId(UUID.randomUUID().toString())
                 .setSubject(subject)
                 .setIssuedAt(now)
                 .setExpiration(expiryDate)
-                .signWith(getSigningKey(), SignatureAlgorithm.HS256)
+                .signWith(signingKey, SignatureAlgorithm.HS256)
                 .compact();
     }
 
     public Boolean validateToken(String token, UserDetails userDetails) {
         try {
-            final String username = getUsernameFromToken(token);
-            return (username.equals(userDetails.getUsername()) && !isTokenExpired(token));
+            return validateToken(parse(token), userDetails);
         } catch (JwtException | IllegalArgumentException e) {
             log.error("Error validando token JWT: {}", e.getMessage());
             return false;
         }
     }
 
+    public boolean validateToken(JwtClaims claims, UserDetails userDetails) {
+        return claims.getSubject().equals(userDetails.getUsername()) && !claims.isExpired();
+    }
+
     public Boolean isTokenValid(String token) {
         try {
-            Jwts.parserBuilder()
-                    .setSigningKey(getSigningKey())
-                    .build()
-                    .parseClaimsJws(token);
+            jwtParser.parseClaimsJws(token);
             return true;
         } catch (JwtException | IllegalArgumentException e) {
             log.error("Token JWT inválido: {}", e.getMessage());
             return false;
         }
     }
+
+    /**
+     * Vista inmutable de los claims de un token ya verificado.
+     */
+    public static final class JwtClaims {
+
+        static final String ID = "id";
+        static final String ROL = "rol";
+        static final String VERSION = "ver";
+
+        private final Claims claims;
+
+        private JwtClaims(Claims claims) {
+            this.claims = claims;
+        }
+
+        public String getSubject() {
+            return claims.getSubject();
+        }
+
+        public String getId() {
+            return claims.getId();
+        }
+
+        public Date getExpiration() {
+            return claims.getExpiration();
+        }
+
+        public boolean isExpired() {
+            return claims.getExpiration().before(new Date());
+        }
+
+        public <T> T get(String name, Class<T> type) {
+            return claims.get(name, type);
+        }
+
+        public List<GrantedAuthority> getAuthorities() {
+            String rol = claims.get(ROL, String.class);
+            if (rol == null) {
+                return List.of();
+            }
+            return List.of(new SimpleGrantedAuthority("ROLE_" + rol));
+        }
+
+        public Long getUsuarioId() {
+            return claims.get(ID, Long.class);
+        }
+
+        public Integer getTokenVersion() {
+            return claims.get(VERSION, Integer.class);
+        }
+
+        public boolean hasPrincipalClaims() {
+            return claims.get(ID) != null && claims.get(ROL) != null && claims.get(VERSION) != null;
+        }
+
+        /**
+         * Construye el principal a partir de los claims; solo válido si {@link #hasPrincipalClaims()}.
+         */
+        public Usuario toUsuario() {
+            return Usuario.fromTokenClaims(getUsuarioId(), getSubject(),
+                    Usuario.Rol.valueOf(claims.get(ROL, String.class)), getTokenVersion());
+        }
+    }
 }
@@ -1,6 +1,7 @@
 package com.lecoq.erp.config;
 
 import com.lecoq.erp.service.CustomUserDetailsService;
+import jakarta.servlet.DispatcherType;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
@@ -76,12 +77,15 @@ public class SecurityConfig {
             .sessionManagement(session -> 
                 session.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
             .authorizeHttpRequests(authz -> authz
+                // El despacho asíncrono (SSE, exportaciones en streaming) continúa una petición ya autorizada
+                .dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll()
                 .requestMatchers("/api/auth/**").permitAll()
                 .requestMatchers("/api/productos/**").hasAnyRole("ADMIN", "VENTAS", "MAQUILA")
                 .requestMatchers("/api/pedidos/**").hasAnyRole("ADMIN", "VENTAS")
                 .requestMatchers("/api/distribuciones/**").hasAnyRole("ADMIN", "VENTAS")
                 .requestMatchers("/api/maquilados/**").hasAnyRole("ADMIN", "MAQUILA")
                 .requestMatchers("/api/usuarios/**").hasRole("ADMIN")
+                .requestMatchers("/api/metricas/**").hasRole("ADMIN")
                 .anyRequest().authenticated()
             );
 
@@ -1,18 +1,24 @@
 package com.lecoq.erp.controller;
 
+import com.lecoq.erp.config.JwtTokenCache;
 import com.lecoq.erp.config.JwtTokenUtil;
 import com.lecoq.erp.dto.ApiResponse;
 import com.lecoq.erp.dto.JwtResponse;
 import com.lecoq.erp.dto.LoginRequest;
 import com.lecoq.erp.entity.Usuario;
 import com.lecoq.erp.service.CustomUserDetailsService;
+import com.lecoq.erp.service.LoginExecutorService;
+import com.lecoq.erp.service.LoginRechazadoException;
+import com.lecoq.erp.service.LoginThrottleService;
+import com.lecoq.erp.service.TokenRevocationService;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.BadCredentialsException;
-import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
@@ -24,18 +30,23 @@ import org.springframework.web.bind.annotation.*;
 @CrossOrigin(origins = "*", maxAge = 3600)
 public class AuthController {
 
-    private final AuthenticationManager authenticationManager;
     private final JwtTokenUtil jwtTokenUtil;
     private final CustomUserDetailsService userDetailsService;
+    private final LoginExecutorService loginExecutorService;
+    private final LoginThrottleService loginThrottleService;
+    private final TokenRevocationService tokenRevocationService;
+    private final JwtTokenCache jwtTokenCache;
 
     @PostMapping("/login")
-    public ResponseEntity<?> authenticateUser(@Valid @RequestBody LoginRequest loginRequest) {
+    public ResponseEntity<?> authenticateUser(@Valid @RequestBody LoginRequest loginRequest,
+                                              HttpServletRequest request) {
         try {
-            Authentication authentication = authenticationManager.authenticate(
-                    new UsernamePasswordAuthenticationToken(
-                            loginRequest.getUsername(),
-                            loginRequest.getPassword()
-                    )
+            loginThrottleService.checkIntento(loginRequest.getUsername(), request.getRemoteAddr());
+
+            // La verificación BCrypt corre en un pool acotado, no en el hilo de Tomcat
+            Authentication authentication = loginExecutorService.authenticate(
+                    loginRequest.getUsername(),
+                    loginRequest.getPassword()
             );
 
             SecurityContextHolder.getContext().setAuthentication(authentication);
@@ -55,7 +66,13 @@ public class AuthController {
             
             return ResponseEntity.ok(ApiResponse.success("Login exitoso", jwtResponse));
 
+        } catch (LoginRechazadoException e) {
+            log.warn("Login rechazado para usuario {}: {}", loginRequest.getUsername(), e.getMessage());
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                    .body(ApiResponse.error(e.getMessage()));
         } catch (BadCredentialsException e) {
+            loginThrottleService.registrarFallo(loginRequest.getUsername());
             log.error("Credenciales inválidas para usuario: {}", loginRequest.getUsername());
             return ResponseEntity.badRequest()
                     .body(ApiResponse.error("Credenciales inválidas"));
@@ -71,10 +88,11 @@ public class AuthController {
         try {
             if (token != null && token.startsWith("Bearer ")) {
                 String jwtToken = token.substring(7);
-                String username = jwtTokenUtil.getUsernameFromToken(jwtToken);
-                Usuario userDetails = (Usuario) userDetailsService.loadUserByUsername(username);
+                JwtTokenUtil.JwtClaims claims = jwtTokenUtil.parse(jwtToken);
+                Usuario userDetails = (Usuario) userDetailsService.loadUserByUsername(claims.getSubject());
                 
-                if (jwtTokenUtil.validateToken(jwtToken, userDetails)) {
+                if (!tokenRevocationService.isRevocado(claims.getId())
+                        && jwtTokenUtil.validateToken(claims, userDetails)) {
                     return ResponseEntity.ok(ApiResponse.success("Token válido", userDetails));
                 }
             }
@@ -85,7 +103,17 @@ public class AuthController {
     }
 
     @PostMapping("/logout")
-    public ResponseEntity<?> logoutUser() {
+    public ResponseEntity<?> logoutUser(@RequestHeader(value = "Authorization", required = false) String token) {
+        if (token != null && token.startsWith("Bearer ")) {
+            String jwtToken = token.substring(7);
+            try {
+                JwtTokenUtil.JwtClaims claims = jwtTokenUtil.parse(jwtToken);
+                tokenRevocationService.revocar(claims.getId(), claims.getExpiration());
+                jwtTokenCache.invalidate(jwtToken);
+            } catch (Exception e) {
+                log.warn("Logout con token inválido: {}", e.getMessage());
+            }
+        }
         SecurityContextHolder.clearContext();
         return ResponseEntity.ok(ApiResponse.success("Logout exitoso"));
     }
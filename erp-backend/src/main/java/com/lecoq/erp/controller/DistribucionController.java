@@ -1,18 +1,28 @@
 package com.lecoq.erp.controller;
 
 import com.lecoq.erp.dto.ApiResponse;
+import com.lecoq.erp.dto.CursorPaginacion;
+import com.lecoq.erp.dto.PaginaCursor;
+import com.lecoq.erp.dto.DistribucionResumen;
 import com.lecoq.erp.entity.Distribucion;
 import com.lecoq.erp.entity.Usuario;
+import com.lecoq.erp.service.ConflictoVersionException;
 import com.lecoq.erp.service.DistribucionService;
+import com.lecoq.erp.service.TableroDistribucionService;
+import com.lecoq.erp.service.VersionRecursoService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Slice;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.time.LocalDateTime;
 import java.util.List;
@@ -27,21 +37,34 @@ import java.util.Optional;
 public class DistribucionController {
 
     private final DistribucionService distribucionService;
+    private final VersionRecursoService versionRecursoService;
+    private final TableroDistribucionService tableroDistribucionService;
 
     @GetMapping
     @PreAuthorize("hasAnyRole('ADMIN', 'VENTAS')")
-    public ResponseEntity<ApiResponse> getAllDistribuciones(Authentication authentication) {
+    public ResponseEntity<ApiResponse> getAllDistribuciones(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "" + PaginaCursor.TAMANO_POR_DEFECTO) int size,
+            Authentication authentication,
+            WebRequest request) {
         try {
             Usuario usuario = (Usuario) authentication.getPrincipal();
-            List<Distribucion> distribuciones;
-            
-            if (usuario.getRol() == Usuario.Rol.ADMIN) {
-                distribuciones = distribucionService.findAll();
-            } else {
-                distribuciones = distribucionService.findByUsuario(usuario);
+            Long usuarioId = usuario.getRol() == Usuario.Rol.ADMIN ? null : usuario.getId();
+            ResponseEntity<ApiResponse> noModificado =
+                    RespuestaCondicional.noModificado(request, versionRecursoService.distribuciones(usuarioId));
+            if (noModificado != null) {
+                return noModificado;
             }
-            
-            return ResponseEntity.ok(ApiResponse.success("Distribuciones obtenidas exitosamente", distribuciones));
+
+            Slice<DistribucionResumen> distribuciones = distribucionService.findPagina(usuarioId,
+                    CursorPaginacion.decodificar(cursor), PaginaCursor.limitarTamano(size));
+            PaginaCursor<DistribucionResumen> pagina = PaginaCursor.of(distribuciones,
+                    d -> new CursorPaginacion(d.getFechaSalida(), d.getId()));
+
+            return RespuestaCondicional.ok(ApiResponse.success("Distribuciones obtenidas exitosamente", pagina));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body(ApiResponse.error(e.getMessage()));
         } catch (Exception e) {
             log.error("Error obteniendo distribuciones: {}", e.getMessage());
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -49,13 +72,29 @@ public class DistribucionController {
         }
     }
 
+    /**
+     * Tablero de despacho por Server-Sent Events: distribuciones creadas y cambios de estado.
+     * Ver {@link TableroDistribucionService#suscribir(Usuario, String)}.
+     */
+    @GetMapping(value = "/eventos", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @PreAuthorize("hasAnyRole('ADMIN', 'VENTAS')")
+    public SseEmitter suscribirEventos(@RequestHeader(value = "Last-Event-ID", required = false) String ultimoEventoId,
+                                       Authentication authentication) {
+        return tableroDistribucionService.suscribir((Usuario) authentication.getPrincipal(), ultimoEventoId);
+    }
+
     @GetMapping("/{id}")
     @PreAuthorize("hasAnyRole('ADMIN', 'VENTAS')")
-    public ResponseEntity<ApiResponse> getDistribucionById(@PathVariable Long id) {
+    public ResponseEntity<ApiResponse> getDistribucionById(@PathVariable Long id, WebRequest request) {
         try {
+            ResponseEntity<ApiResponse> noModificado =
+                    RespuestaCondicional.noModificado(request, versionRecursoService.distribucion(id));
+            if (noModificado != null) {
+                return noModificado;
+            }
             Optional<Distribucion> distribucion = distribucionService.findById(id);
             if (distribucion.isPresent()) {
-                return ResponseEntity.ok(ApiResponse.success("Distribución encontrada", distribucion.get()));
+                return RespuestaCondicional.ok(ApiResponse.success("Distribución encontrada", distribucion.get()));
             } else {
                 return ResponseEntity.status(HttpStatus.NOT_FOUND)
                         .body(ApiResponse.error("Distribución no encontrada"));
@@ -82,9 +121,10 @@ public class DistribucionController {
 
     @GetMapping("/chofer")
     @PreAuthorize("hasAnyRole('ADMIN', 'VENTAS')")
-    public ResponseEntity<ApiResponse> getDistribucionesByChofer(@RequestParam String nombre) {
+    public ResponseEntity<ApiResponse> getDistribucionesByChofer(@RequestParam String nombre,
+                                                                 @RequestParam(defaultValue = "50") int limite) {
         try {
-            List<Distribucion> distribuciones = distribucionService.findByChoferNombre(nombre);
+            List<Distribucion> distribuciones = distribucionService.findByChoferNombre(nombre, PaginaCursor.limitarTamano(limite));
             return ResponseEntity.ok(ApiResponse.success("Distribuciones encontradas por chofer", distribuciones));
         } catch (Exception e) {
             log.error("Error buscando distribuciones por chofer: {}", e.getMessage());
@@ -144,6 +184,10 @@ public class DistribucionController {
         try {
             Distribucion distribucionActualizada = distribucionService.update(id, distribucion);
             return ResponseEntity.ok(ApiResponse.success("Distribución actualizada exitosamente", distribucionActualizada));
+        } catch (ConflictoVersionException e) {
+            log.warn("Conflicto de versión: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(ApiResponse.error(e.getMessage(), e.getDetalle()));
         } catch (Exception e) {
             log.error("Error actualizando distribución: {}", e.getMessage());
             return ResponseEntity.status(HttpStatus.BAD_REQUEST)
@@ -164,6 +208,10 @@ public class DistribucionController {
             Distribucion.EstadoDistribucion nuevoEstado = Distribucion.EstadoDistribucion.valueOf(estadoStr.toUpperCase());
             Distribucion distribucionActualizada = distribucionService.cambiarEstado(id, nuevoEstado);
             return ResponseEntity.ok(ApiResponse.success("Estado de la distribución actualizado", distribucionActualizada));
+        } catch (ConflictoVersionException e) {
+            log.warn("Conflicto de versión: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(ApiResponse.error(e.getMessage(), e.getDetalle()));
         } catch (IllegalArgumentException e) {
             return ResponseEntity.status(HttpStatus.BAD_REQUEST)
                     .body(ApiResponse.error("Estado inválido: " + request.get("estado")));
@@ -180,6 +228,10 @@ public class DistribucionController {
         try {
             distribucionService.marcarComoEntregado(id);
             return ResponseEntity.ok(ApiResponse.success("Distribución marcada como entregada"));
+        } catch (ConflictoVersionException e) {
+            log.warn("Conflicto de versión: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(ApiResponse.error(e.getMessage(), e.getDetalle()));
         } catch (Exception e) {
             log.error("Error marcando distribución como entregada: {}", e.getMessage());
             return ResponseEntity.status(HttpStatus.BAD_REQUEST)
@@ -193,6 +245,10 @@ public class DistribucionController {
         try {
             distribucionService.marcarComoEnRuta(id);
             return ResponseEntity.ok(ApiResponse.success("Distribución marcada como en ruta"));
+        } catch (ConflictoVersionException e) {
+            log.warn("Conflicto de versión: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(ApiResponse.error(e.getMessage(), e.getDetalle()));
         } catch (Exception e) {
             log.error("Error marcando distribución como en ruta: {}", e.getMessage());
             return ResponseEntity.status(HttpStatus.BAD_REQUEST)
@@ -206,6 +262,10 @@ public class DistribucionController {
         try {
             distribucionService.marcarComoFallido(id);
             return ResponseEntity.ok(ApiResponse.success("Distribución marcada como fallida"));
+        } catch (ConflictoVersionException e) {
+            log.warn("Conflicto de versión: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(ApiResponse.error(e.getMessage(), e.getDetalle()));
         } catch (Exception e) {
             log.error("Error marcando distribución como fallida: {}", e.getMessage());
             return ResponseEntity.status(HttpStatus.BAD_REQUEST)
@@ -1,19 +1,26 @@
 package com.lecoq.erp.controller;
 
 import com.lecoq.erp.dto.ApiResponse;
+import com.lecoq.erp.dto.CursorPaginacion;
+import com.lecoq.erp.dto.PaginaCursor;
+import com.lecoq.erp.dto.MaquiladoResumen;
 import com.lecoq.erp.entity.DetalleMaquilado;
 import com.lecoq.erp.entity.Maquilado;
 import com.lecoq.erp.entity.Usuario;
+import com.lecoq.erp.service.ConflictoVersionException;
 import com.lecoq.erp.service.MaquiladoService;
+import com.lecoq.erp.service.VersionRecursoService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Slice;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 import java.time.LocalDateTime;
 import java.util.List;
@@ -28,21 +35,33 @@ import java.util.Optional;
 public class MaquiladoController {
 
     private final MaquiladoService maquiladoService;
+    private final VersionRecursoService versionRecursoService;
 
     @GetMapping
     @PreAuthorize("hasAnyRole('ADMIN', 'MAQUILA')")
-    public ResponseEntity<ApiResponse> getAllMaquilados(Authentication authentication) {
+    public ResponseEntity<ApiResponse> getAllMaquilados(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "" + PaginaCursor.TAMANO_POR_DEFECTO) int size,
+            Authentication authentication,
+            WebRequest request) {
         try {
             Usuario usuario = (Usuario) authentication.getPrincipal();
-            List<Maquilado> maquilados;
-            
-            if (usuario.getRol() == Usuario.Rol.ADMIN) {
-                maquilados = maquiladoService.findAll();
-            } else {
-                maquilados = maquiladoService.findByUsuario(usuario);
+            Long usuarioId = usuario.getRol() == Usuario.Rol.ADMIN ? null : usuario.getId();
+            ResponseEntity<ApiResponse> noModificado =
+                    RespuestaCondicional.noModificado(request, versionRecursoService.maquilados(usuarioId));
+            if (noModificado != null) {
+                return noModificado;
             }
-            
-            return ResponseEntity.ok(ApiResponse.success("Maquilados obtenidos exitosamente", maquilados));
+
+            Slice<MaquiladoResumen> maquilados = maquiladoService.findPagina(usuarioId,
+                    CursorPaginacion.decodificar(cursor), PaginaCursor.limitarTamano(size));
+            PaginaCursor<MaquiladoResumen> pagina = PaginaCursor.of(maquilados,
+                    m -> new CursorPaginacion(m.getFechaOrden(), m.getId()));
+
+            return RespuestaCondicional.ok(ApiResponse.success("Maquilados obtenidos exitosamente", pagina));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body(ApiResponse.error(e.getMessage()));
         } catch (Exception e) {
             log.error("Error obteniendo maquilados: {}", e.getMessage());
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -52,11 +71,16 @@ public class MaquiladoController {
 
     @GetMapping("/{id}")
     @PreAuthorize("hasAnyRole('ADMIN', 'MAQUILA')")
-    public ResponseEntity<ApiResponse> getMaquiladoById(@PathVariable Long id) {
+    public ResponseEntity<ApiResponse> getMaquiladoById(@PathVariable Long id, WebRequest request) {
         try {
+            ResponseEntity<ApiResponse> noModificado =
+                    RespuestaCondicional.noModificado(request, versionRecursoService.maquilado(id));
+            if (noModificado != null) {
+                return noModificado;
+            }
             Optional<Maquilado> maquilado = maquiladoService.findById(id);
             if (maquilado.isPresent()) {
-                return ResponseEntity.ok(ApiResponse.success("Maquilado encontrado", maquilado.get()));
+                return RespuestaCondicional.ok(ApiResponse.success("Maquilado encontrado", maquilado.get()));
             } else {
                 return ResponseEntity.status(HttpStatus.NOT_FOUND)
                         .body(ApiResponse.error("Maquilado no encontrado"));
@@ -101,9 +125,10 @@ public class MaquiladoController {
 
     @GetMapping("/proveedor")
     @PreAuthorize("hasAnyRole('ADMIN', 'MAQUILA')")
-    public ResponseEntity<ApiResponse> getMaquiladosByProveedor(@RequestParam String nombre) {
+    public ResponseEntity<ApiResponse> getMaquiladosByProveedor(@RequestParam String nombre,
+                                                                @RequestParam(defaultValue = "50") int limite) {
         try {
-            List<Maquilado> maquilados = maquiladoService.findByProveedorNombre(nombre);
+            List<Maquilado> maquilados = maquiladoService.findByProveedorNombre(nombre, PaginaCursor.limitarTamano(limite));
             return ResponseEntity.ok(ApiResponse.success("Maquilados encontrados por proveedor", maquilados));
         } catch (Exception e) {
             log.error("Error buscando maquilados por proveedor: {}", e.getMessage());
@@ -161,6 +186,10 @@ public class MaquiladoController {
         try {
             Maquilado maquiladoActualizado = maquiladoService.update(id, maquilado);
             return ResponseEntity.ok(ApiResponse.success("Maquilado actualizado exitosamente", maquiladoActualizado));
+        } catch (ConflictoVersionException e) {
+            log.warn("Conflicto de versión: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(ApiResponse.error(e.getMessage(), e.getDetalle()));
         } catch (Exception e) {
             log.error("Error actualizando maquilado: {}", e.getMessage());
             return ResponseEntity.status(HttpStatus.BAD_REQUEST)
@@ -181,6 +210,10 @@ public class MaquiladoController {
             Maquilado.EstadoMaquilado nuevoEstado = Maquilado.EstadoMaquilado.valueOf(estadoStr.toUpperCase());
             Maquilado maquiladoActualizado = maquiladoService.cambiarEstado(id, nuevoEstado);
             return ResponseEntity.ok(ApiResponse.success("Estado del maquilado actualizado", maquiladoActualizado));
+        } catch (ConflictoVersionException e) {
+            log.warn("Conflicto de versión: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(ApiResponse.error(e.getMessage(), e.getDetalle()));
         } catch (IllegalArgumentException e) {
             return ResponseEntity.status(HttpStatus.BAD_REQUEST)
                     .body(ApiResponse.error("Estado inválido: " + request.get("estado")));
@@ -197,6 +230,10 @@ public class MaquiladoController {
         try {
             Maquilado maquiladoRecibido = maquiladoService.recibirMaquilado(id);
             return ResponseEntity.ok(ApiResponse.success("Maquilado recibido exitosamente", maquiladoRecibido));
+        } catch (ConflictoVersionException e) {
+            log.warn("Conflicto de versión: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(ApiResponse.error(e.getMessage(), e.getDetalle()));
         } catch (Exception e) {
             log.error("Error recibiendo maquilado: {}", e.getMessage());
             return ResponseEntity.status(HttpStatus.BAD_REQUEST)
@@ -212,6 +249,10 @@ public class MaquiladoController {
         try {
             Maquilado maquiladoActualizado = maquiladoService.actualizarCantidadesRecibidas(id, detallesActualizados);
             return ResponseEntity.ok(ApiResponse.success("Cantidades recibidas actualizadas", maquiladoActualizado));
+        } catch (ConflictoVersionException e) {
+            log.warn("Conflicto de versión: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(ApiResponse.error(e.getMessage(), e.getDetalle()));
         } catch (Exception e) {
             log.error("Error actualizando cantidades recibidas: {}", e.getMessage());
             return ResponseEntity.status(HttpStatus.BAD_REQUEST)
@@ -225,6 +266,10 @@ public class MaquiladoController {
         try {
             maquiladoService.marcarComoEnProceso(id);
             return ResponseEntity.ok(ApiResponse.success("Maquilado marcado como en proceso"));
+        } catch (ConflictoVersionException e) {
+            log.warn("Conflicto de versión: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(ApiResponse.error(e.getMessage(), e.getDetalle()));
         } catch (Exception e) {
             log.error("Error marcando maquilado como en proceso: {}", e.getMessage());
             return ResponseEntity.status(HttpStatus.BAD_REQUEST)
@@ -238,6 +283,10 @@ public class MaquiladoController {
         try {
             maquiladoService.marcarComoFinalizado(id);
             return ResponseEntity.ok(ApiResponse.success("Maquilado marcado como finalizado"));
+        } catch (ConflictoVersionException e) {
+            log.warn("Conflicto de versión: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(ApiResponse.error(e.getMessage(), e.getDetalle()));
         } catch (Exception e) {
             log.error("Error marcando maquilado como finalizado: {}", e.getMessage());
             return ResponseEntity.status(HttpStatus.BAD_REQUEST)
@@ -251,6 +300,10 @@ public class MaquiladoController {
         try {
             maquiladoService.marcarComoCancelado(id);
             return ResponseEntity.ok(ApiResponse.success("Maquilado marcado como cancelado"));
+        } catch (ConflictoVersionException e) {
+            log.warn("Conflicto de versión: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(ApiResponse.error(e.getMessage(), e.getDetalle()));
         } catch (Exception e) {
             log.error("Error marcando maquilado como cancelado: {}", e.getMessage());
             return ResponseEntity.status(HttpStatus.BAD_REQUEST)
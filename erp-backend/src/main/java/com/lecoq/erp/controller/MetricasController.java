@@ -0,0 +1,54 @@
+package com.lecoq.erp.controller;
+
+import com.lecoq.erp.config.JwtTokenCache;
+import com.lecoq.erp.dto.ApiResponse;
+import com.lecoq.erp.service.BusquedaTextoService;
+import com.lecoq.erp.service.CatalogoProductoCache;
+import com.lecoq.erp.service.LoginExecutorService;
+import com.lecoq.erp.service.LoginThrottleService;
+import com.lecoq.erp.service.NumeradorDocumentoService;
+import com.lecoq.erp.service.ReintentoOptimistaService;
+import com.lecoq.erp.service.StockBajoService;
+import com.lecoq.erp.service.TableroDistribucionService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/metricas")
+@RequiredArgsConstructor
+@Slf4j
+@CrossOrigin(origins = "*", maxAge = 3600)
+public class MetricasController {
+
+    private final JwtTokenCache jwtTokenCache;
+    private final LoginExecutorService loginExecutorService;
+    private final LoginThrottleService loginThrottleService;
+    private final NumeradorDocumentoService numeradorDocumentoService;
+    private final ReintentoOptimistaService reintentoOptimistaService;
+    private final BusquedaTextoService busquedaTextoService;
+    private final CatalogoProductoCache catalogoProductoCache;
+    private final StockBajoService stockBajoService;
+    private final TableroDistribucionService tableroDistribucionService;
+
+    @GetMapping
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<ApiResponse> getMetricas() {
+        Map<String, Object> metricas = new LinkedHashMap<>();
+        metricas.put("jwtCache", jwtTokenCache.getEstadisticas());
+        metricas.put("loginExecutor", loginExecutorService.getEstadisticas());
+        metricas.put("loginThrottle", loginThrottleService.getEstadisticas());
+        metricas.put("numeracion", numeradorDocumentoService.getEstadisticas());
+        metricas.put("reintentosOptimistas", reintentoOptimistaService.getEstadisticas());
+        metricas.put("busqueda", busquedaTextoService.getEstadisticas());
+        metricas.put("catalogoProductos", catalogoProductoCache.getEstadisticas());
+        metricas.put("stockBajo", stockBajoService.getEstadisticas());
+        metricas.put("tableroDistribuciones", tableroDistribucionService.getEstadisticas());
+        return ResponseEntity.ok(ApiResponse.success("Métricas obtenidas exitosamente", metricas));
+    }
+}
@@ -1,20 +1,34 @@
 package com.lecoq.erp.controller;
 
 import com.lecoq.erp.dto.ApiResponse;
+import com.lecoq.erp.dto.CambioEstadoLoteRequest;
+import com.lecoq.erp.dto.CursorPaginacion;
+import com.lecoq.erp.dto.PaginaCursor;
+import com.lecoq.erp.dto.PedidoResumen;
+import com.lecoq.erp.dto.ResultadoCambioEstado;
 import com.lecoq.erp.entity.DetallePedido;
 import com.lecoq.erp.entity.Pedido;
 import com.lecoq.erp.entity.Usuario;
+import com.lecoq.erp.service.ConflictoVersionException;
+import com.lecoq.erp.service.ExportacionPedidoService;
 import com.lecoq.erp.service.PedidoService;
+import com.lecoq.erp.service.VersionRecursoService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Slice;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Map;
@@ -28,21 +42,28 @@ import java.util.Optional;
 public class PedidoController {
 
     private final PedidoService pedidoService;
+    private final ExportacionPedidoService exportacionPedidoService;
+    private final VersionRecursoService versionRecursoService;
 
     @GetMapping
     @PreAuthorize("hasAnyRole('ADMIN', 'VENTAS')")
-    public ResponseEntity<ApiResponse> getAllPedidos(Authentication authentication) {
+    public ResponseEntity<ApiResponse> getAllPedidos(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "" + PaginaCursor.TAMANO_POR_DEFECTO) int size,
+            Authentication authentication) {
         try {
             Usuario usuario = (Usuario) authentication.getPrincipal();
-            List<Pedido> pedidos;
-            
-            if (usuario.getRol() == Usuario.Rol.ADMIN) {
-                pedidos = pedidoService.findAll();
-            } else {
-                pedidos = pedidoService.findByUsuario(usuario);
-            }
-            
-            return ResponseEntity.ok(ApiResponse.success("Pedidos obtenidos exitosamente", pedidos));
+            Long usuarioId = usuario.getRol() == Usuario.Rol.ADMIN ? null : usuario.getId();
+
+            Slice<PedidoResumen> pedidos = pedidoService.findPagina(usuarioId,
+                    CursorPaginacion.decodificar(cursor), PaginaCursor.limitarTamano(size));
+            PaginaCursor<PedidoResumen> pagina = PaginaCursor.of(pedidos,
+                    p -> new CursorPaginacion(p.getFechaPedido(), p.getId()));
+
+            return ResponseEntity.ok(ApiResponse.success("Pedidos obtenidos exitosamente", pagina));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body(ApiResponse.error(e.getMessage()));
         } catch (Exception e) {
             log.error("Error obteniendo pedidos: {}", e.getMessage());
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -52,11 +73,16 @@ public class PedidoController {
 
     @GetMapping("/{id}")
     @PreAuthorize("hasAnyRole('ADMIN', 'VENTAS')")
-    public ResponseEntity<ApiResponse> getPedidoById(@PathVariable Long id) {
+    public ResponseEntity<ApiResponse> getPedidoById(@PathVariable Long id, WebRequest request) {
         try {
+            ResponseEntity<ApiResponse> noModificado =
+                    RespuestaCondicional.noModificado(request, versionRecursoService.pedido(id));
+            if (noModificado != null) {
+                return noModificado;
+            }
             Optional<Pedido> pedido = pedidoService.findById(id);
             if (pedido.isPresent()) {
-                return ResponseEntity.ok(ApiResponse.success("Pedido encontrado", pedido.get()));
+                return RespuestaCondicional.ok(ApiResponse.success("Pedido encontrado", pedido.get()));
             } else {
                 return ResponseEntity.status(HttpStatus.NOT_FOUND)
                         .body(ApiResponse.error("Pedido no encontrado"));
@@ -101,9 +127,10 @@ public class PedidoController {
 
     @GetMapping("/cliente")
     @PreAuthorize("hasAnyRole('ADMIN', 'VENTAS')")
-    public ResponseEntity<ApiResponse> getPedidosByCliente(@RequestParam String nombre) {
+    public ResponseEntity<ApiResponse> getPedidosByCliente(@RequestParam String nombre,
+                                                           @RequestParam(defaultValue = "50") int limite) {
         try {
-            List<Pedido> pedidos = pedidoService.findByClienteNombre(nombre);
+            List<Pedido> pedidos = pedidoService.findByClienteNombre(nombre, PaginaCursor.limitarTamano(limite));
             return ResponseEntity.ok(ApiResponse.success("Pedidos encontrados por cliente", pedidos));
         } catch (Exception e) {
             log.error("Error buscando pedidos por cliente: {}", e.getMessage());
@@ -127,6 +154,31 @@ public class PedidoController {
         }
     }
 
+    @GetMapping("/exportar")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<?> exportarPedidos(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime fechaInicio,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime fechaFin,
+            @RequestParam(defaultValue = "csv") String formato) {
+        ExportacionPedidoService.Formato tipo;
+        try {
+            tipo = ExportacionPedidoService.Formato.valueOf(formato.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body(ApiResponse.error("Formato inválido: " + formato));
+        }
+
+        // Se escribe directo en la respuesta a medida que se leen las filas
+        StreamingResponseBody cuerpo = salida -> exportacionPedidoService.exportar(fechaInicio, fechaFin, tipo, salida);
+        String extension = tipo == ExportacionPedidoService.Formato.CSV ? "csv" : "ndjson";
+        return ResponseEntity.ok()
+                .contentType(tipo == ExportacionPedidoService.Formato.CSV
+                        ? new MediaType("text", "csv", StandardCharsets.UTF_8)
+                        : MediaType.APPLICATION_NDJSON)
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"pedidos." + extension + "\"")
+                .body(cuerpo);
+    }
+
     @GetMapping("/{id}/detalles")
     @PreAuthorize("hasAnyRole('ADMIN', 'VENTAS')")
     public ResponseEntity<ApiResponse> getDetallesPedido(@PathVariable Long id) {
@@ -161,6 +213,10 @@ public class PedidoController {
         try {
             Pedido pedidoActualizado = pedidoService.update(id, pedido);
             return ResponseEntity.ok(ApiResponse.success("Pedido actualizado exitosamente", pedidoActualizado));
+        } catch (ConflictoVersionException e) {
+            log.warn("Conflicto de versión: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(ApiResponse.error(e.getMessage(), e.getDetalle()));
         } catch (Exception e) {
             log.error("Error actualizando pedido: {}", e.getMessage());
             return ResponseEntity.status(HttpStatus.BAD_REQUEST)
@@ -181,6 +237,10 @@ public class PedidoController {
             Pedido.EstadoPedido nuevoEstado = Pedido.EstadoPedido.valueOf(estadoStr.toUpperCase());
             Pedido pedidoActualizado = pedidoService.cambiarEstado(id, nuevoEstado);
             return ResponseEntity.ok(ApiResponse.success("Estado del pedido actualizado", pedidoActualizado));
+        } catch (ConflictoVersionException e) {
+            log.warn("Conflicto de versión: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(ApiResponse.error(e.getMessage(), e.getDetalle()));
         } catch (IllegalArgumentException e) {
             return ResponseEntity.status(HttpStatus.BAD_REQUEST)
                     .body(ApiResponse.error("Estado inválido: " + request.get("estado")));
@@ -191,6 +251,23 @@ public class PedidoController {
         }
     }
 
+    @PutMapping("/estado")
+    @PreAuthorize("hasAnyRole('ADMIN', 'VENTAS')")
+    public ResponseEntity<ApiResponse> cambiarEstadoPedidos(@Valid @RequestBody CambioEstadoLoteRequest request) {
+        try {
+            Pedido.EstadoPedido nuevoEstado = Pedido.EstadoPedido.valueOf(request.getEstado().toUpperCase());
+            List<ResultadoCambioEstado> resultados = pedidoService.cambiarEstadoLote(request.getIds(), nuevoEstado);
+            return ResponseEntity.ok(ApiResponse.success("Cambio de estado de pedidos procesado", resultados));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body(ApiResponse.error("Estado inválido: " + request.getEstado()));
+        } catch (Exception e) {
+            log.error("Error cambiando estado de pedidos: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(ApiResponse.error("Error cambiando estado de pedidos: " + e.getMessage()));
+        }
+    }
+
     @DeleteMapping("/{id}")
     @PreAuthorize("hasRole('ADMIN')")
     public ResponseEntity<ApiResponse> deletePedido(@PathVariable Long id) {
@@ -1,16 +1,30 @@
 package com.lecoq.erp.controller;
 
 import com.lecoq.erp.dto.ApiResponse;
+import com.lecoq.erp.dto.PaginaCursor;
+import com.lecoq.erp.entity.MovimientoStock;
 import com.lecoq.erp.entity.Producto;
+import com.lecoq.erp.service.ConflictoVersionException;
+import com.lecoq.erp.service.KardexService;
 import com.lecoq.erp.service.ProductoService;
+import com.lecoq.erp.service.StockBajoService;
+import com.lecoq.erp.service.VersionRecursoService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -23,13 +37,22 @@ import java.util.Optional;
 public class ProductoController {
 
     private final ProductoService productoService;
+    private final KardexService kardexService;
+    private final VersionRecursoService versionRecursoService;
+    private final StockBajoService stockBajoService;
 
     @GetMapping
     @PreAuthorize("hasAnyRole('ADMIN', 'VENTAS', 'MAQUILA')")
-    public ResponseEntity<ApiResponse> getAllProductos() {
+    public ResponseEntity<ApiResponse> getAllProductos(WebRequest request) {
         try {
+            // Puede venir del cache: el validador se calcula sobre la misma lista que se responde
             List<Producto> productos = productoService.findAllActiveOrderByName();
-            return ResponseEntity.ok(ApiResponse.success("Productos obtenidos exitosamente", productos));
+            ResponseEntity<ApiResponse> noModificado =
+                    RespuestaCondicional.noModificado(request, versionRecursoService.productos("activos", productos));
+            if (noModificado != null) {
+                return noModificado;
+            }
+            return RespuestaCondicional.ok(ApiResponse.success("Productos obtenidos exitosamente", productos));
         } catch (Exception e) {
             log.error("Error obteniendo productos: {}", e.getMessage());
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -39,10 +62,15 @@ public class ProductoController {
 
     @GetMapping("/todos")
     @PreAuthorize("hasRole('ADMIN')")
-    public ResponseEntity<ApiResponse> getAllProductosIncludingInactive() {
+    public ResponseEntity<ApiResponse> getAllProductosIncludingInactive(WebRequest request) {
         try {
+            ResponseEntity<ApiResponse> noModificado =
+                    RespuestaCondicional.noModificado(request, versionRecursoService.productos());
+            if (noModificado != null) {
+                return noModificado;
+            }
             List<Producto> productos = productoService.findAll();
-            return ResponseEntity.ok(ApiResponse.success("Todos los productos obtenidos exitosamente", productos));
+            return RespuestaCondicional.ok(ApiResponse.success("Todos los productos obtenidos exitosamente", productos));
         } catch (Exception e) {
             log.error("Error obteniendo todos los productos: {}", e.getMessage());
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -52,11 +80,17 @@ public class ProductoController {
 
     @GetMapping("/{id}")
     @PreAuthorize("hasAnyRole('ADMIN', 'VENTAS', 'MAQUILA')")
-    public ResponseEntity<ApiResponse> getProductoById(@PathVariable Long id) {
+    public ResponseEntity<ApiResponse> getProductoById(@PathVariable Long id, WebRequest request) {
         try {
+            // Puede venir del cache: el validador se calcula sobre el mismo producto que se responde
             Optional<Producto> producto = productoService.findById(id);
             if (producto.isPresent()) {
-                return ResponseEntity.ok(ApiResponse.success("Producto encontrado", producto.get()));
+                ResponseEntity<ApiResponse> noModificado =
+                        RespuestaCondicional.noModificado(request, versionRecursoService.producto(producto.get()));
+                if (noModificado != null) {
+                    return noModificado;
+                }
+                return RespuestaCondicional.ok(ApiResponse.success("Producto encontrado", producto.get()));
             } else {
                 return ResponseEntity.status(HttpStatus.NOT_FOUND)
                         .body(ApiResponse.error("Producto no encontrado"));
@@ -70,9 +104,10 @@ public class ProductoController {
 
     @GetMapping("/buscar")
     @PreAuthorize("hasAnyRole('ADMIN', 'VENTAS', 'MAQUILA')")
-    public ResponseEntity<ApiResponse> buscarProductos(@RequestParam String nombre) {
+    public ResponseEntity<ApiResponse> buscarProductos(@RequestParam String nombre,
+                                                       @RequestParam(defaultValue = "50") int limite) {
         try {
-            List<Producto> productos = productoService.findByNombre(nombre);
+            List<Producto> productos = productoService.findByNombre(nombre, PaginaCursor.limitarTamano(limite));
             return ResponseEntity.ok(ApiResponse.success("Productos encontrados", productos));
         } catch (Exception e) {
             log.error("Error buscando productos: {}", e.getMessage());
@@ -83,10 +118,15 @@ public class ProductoController {
 
     @GetMapping("/stock-bajo")
     @PreAuthorize("hasAnyRole('ADMIN', 'MAQUILA')")
-    public ResponseEntity<ApiResponse> getProductosConStockBajo() {
+    public ResponseEntity<ApiResponse> getProductosConStockBajo(WebRequest request) {
         try {
+            ResponseEntity<ApiResponse> noModificado =
+                    RespuestaCondicional.noModificado(request, stockBajoService.version());
+            if (noModificado != null) {
+                return noModificado;
+            }
             List<Producto> productos = productoService.findProductosConStockBajo();
-            return ResponseEntity.ok(ApiResponse.success("Productos con stock bajo obtenidos", productos));
+            return RespuestaCondicional.ok(ApiResponse.success("Productos con stock bajo obtenidos", productos));
         } catch (Exception e) {
             log.error("Error obteniendo productos con stock bajo: {}", e.getMessage());
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -94,12 +134,27 @@ public class ProductoController {
         }
     }
 
+    /**
+     * Cada producto que entra o sale del conjunto de stock bajo, sin consultar {@code /stock-bajo}
+     * periódicamente. Ver {@link StockBajoService#suscribir()}.
+     */
+    @GetMapping(value = "/stock-bajo/eventos", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @PreAuthorize("hasAnyRole('ADMIN', 'MAQUILA')")
+    public SseEmitter suscribirStockBajo() {
+        return stockBajoService.suscribir();
+    }
+
     @GetMapping("/con-stock")
     @PreAuthorize("hasAnyRole('ADMIN', 'VENTAS')")
-    public ResponseEntity<ApiResponse> getProductosConStock() {
+    public ResponseEntity<ApiResponse> getProductosConStock(WebRequest request) {
         try {
             List<Producto> productos = productoService.findProductosConStock();
-            return ResponseEntity.ok(ApiResponse.success("Productos con stock obtenidos", productos));
+            ResponseEntity<ApiResponse> noModificado =
+                    RespuestaCondicional.noModificado(request, versionRecursoService.productos("con-stock", productos));
+            if (noModificado != null) {
+                return noModificado;
+            }
+            return RespuestaCondicional.ok(ApiResponse.success("Productos con stock obtenidos", productos));
         } catch (Exception e) {
             log.error("Error obteniendo productos con stock: {}", e.getMessage());
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -107,6 +162,49 @@ public class ProductoController {
         }
     }
 
+    @GetMapping("/{id}/movimientos")
+    @PreAuthorize("hasAnyRole('ADMIN', 'MAQUILA')")
+    public ResponseEntity<ApiResponse> getMovimientosStock(
+            @PathVariable Long id,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime desde,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime hasta,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "50") int size) {
+        try {
+            Page<MovimientoStock> movimientos = kardexService.historial(id,
+                    desde != null ? desde : LocalDateTime.of(2000, 1, 1, 0, 0),
+                    hasta != null ? hasta : LocalDateTime.now(),
+                    PageRequest.of(Math.max(page, 0), Math.min(Math.max(size, 1), 500)));
+
+            Map<String, Object> data = new LinkedHashMap<>();
+            data.put("movimientos", movimientos.getContent());
+            data.put("pagina", movimientos.getNumber());
+            data.put("totalPaginas", movimientos.getTotalPages());
+            data.put("totalMovimientos", movimientos.getTotalElements());
+            return ResponseEntity.ok(ApiResponse.success("Movimientos de stock obtenidos", data));
+        } catch (Exception e) {
+            log.error("Error obteniendo movimientos de stock: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(ApiResponse.error("Error obteniendo movimientos: " + e.getMessage()));
+        }
+    }
+
+    @GetMapping("/{id}/stock-historico")
+    @PreAuthorize("hasAnyRole('ADMIN', 'MAQUILA')")
+    public ResponseEntity<ApiResponse> getStockHistorico(
+            @PathVariable Long id,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime fecha) {
+        try {
+            int stock = kardexService.stockEn(id, fecha);
+            return ResponseEntity.ok(ApiResponse.success("Stock a la fecha obtenido",
+                    Map.of("productoId", id, "fecha", fecha, "stock", stock)));
+        } catch (Exception e) {
+            log.error("Error obteniendo stock histórico: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(ApiResponse.error("Error obteniendo stock histórico: " + e.getMessage()));
+        }
+    }
+
     @PostMapping
     @PreAuthorize("hasRole('ADMIN')")
     public ResponseEntity<ApiResponse> createProducto(@Valid @RequestBody Producto producto) {
@@ -127,6 +225,10 @@ public class ProductoController {
         try {
             Producto productoActualizado = productoService.update(id, producto);
             return ResponseEntity.ok(ApiResponse.success("Producto actualizado exitosamente", productoActualizado));
+        } catch (ConflictoVersionException e) {
+            log.warn("Conflicto de versión: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(ApiResponse.error(e.getMessage(), e.getDetalle()));
         } catch (Exception e) {
             log.error("Error actualizando producto: {}", e.getMessage());
             return ResponseEntity.status(HttpStatus.BAD_REQUEST)
@@ -172,6 +274,10 @@ public class ProductoController {
         try {
             productoService.deactivate(id);
             return ResponseEntity.ok(ApiResponse.success("Producto desactivado exitosamente"));
+        } catch (ConflictoVersionException e) {
+            log.warn("Conflicto de versión: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(ApiResponse.error(e.getMessage(), e.getDetalle()));
         } catch (Exception e) {
             log.error("Error desactivando producto: {}", e.getMessage());
             return ResponseEntity.status(HttpStatus.BAD_REQUEST)
@@ -185,6 +291,10 @@ public class ProductoController {
         try {
             productoService.activate(id);
             return ResponseEntity.ok(ApiResponse.success("Producto activado exitosamente"));
+        } catch (ConflictoVersionException e) {
+            log.warn("Conflicto de versión: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(ApiResponse.error(e.getMessage(), e.getDetalle()));
         } catch (Exception e) {
             log.error("Error activando producto: {}", e.getMessage());
             return ResponseEntity.status(HttpStatus.BAD_REQUEST)
@@ -0,0 +1,72 @@
+package com.lecoq.erp.controller;
+
+import com.lecoq.erp.dto.ApiResponse;
+import com.lecoq.erp.dto.VentaAgregada;
+import com.lecoq.erp.service.VentaDiariaService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/reportes")
+@RequiredArgsConstructor
+@Slf4j
+@CrossOrigin(origins = "*", maxAge = 3600)
+public class ReporteController {
+
+    private final VentaDiariaService ventaDiariaService;
+
+    @GetMapping("/ventas")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<ApiResponse> getVentas(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate desde,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate hasta,
+            @RequestParam(defaultValue = "dia") String agrupar) {
+        try {
+            List<VentaAgregada> ventas = switch (agrupar.toLowerCase()) {
+                case "dia" -> ventaDiariaService.porDia(desde, hasta);
+                case "producto" -> ventaDiariaService.porProducto(desde, hasta);
+                case "usuario" -> ventaDiariaService.porUsuario(desde, hasta);
+                default -> null;
+            };
+            if (ventas == null) {
+                return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                        .body(ApiResponse.error("Agrupación inválida: " + agrupar));
+            }
+            return ResponseEntity.ok(ApiResponse.success("Reporte de ventas obtenido", ventas));
+        } catch (Exception e) {
+            log.error("Error obteniendo reporte de ventas: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(ApiResponse.error("Error obteniendo reporte de ventas: " + e.getMessage()));
+        }
+    }
+
+    @PostMapping("/ventas/reconstruir")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<ApiResponse> reconstruirVentas(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate desde,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate hasta) {
+        try {
+            Map<String, Object> resultado = ventaDiariaService.reconstruir(desde, hasta);
+            return ResponseEntity.ok(ApiResponse.success("Reporte de ventas reconstruido", resultado));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body(ApiResponse.error(e.getMessage()));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(ApiResponse.error(e.getMessage()));
+        } catch (Exception e) {
+            log.error("Error reconstruyendo reporte de ventas: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(ApiResponse.error("Error reconstruyendo reporte de ventas: " + e.getMessage()));
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.lecoq.erp.controller;
+
+import com.lecoq.erp.dto.ApiResponse;
+import com.lecoq.erp.dto.VersionRecurso;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.context.request.WebRequest;
+
+import java.util.Optional;
+
+/**
+ * GET condicionales: se compara {@code If-None-Match}/{@code If-Modified-Since} con el validador
+ * antes de cargar el recurso. {@link WebRequest#checkNotModified(String, long)} agrega ETag y
+ * Last-Modified a la respuesta en ambos casos; aquí solo se fija el Cache-Control, que permite
+ * guardar la respuesta en el cliente pero obliga a revalidarla (Spring Security pondría no-store).
+ */
+final class RespuestaCondicional {
+
+    private static final CacheControl REVALIDAR = CacheControl.noCache().cachePrivate();
+
+    private RespuestaCondicional() {
+    }
+
+    /**
+     * @return 304 si el cliente ya tiene esta versión, o {@code null} si hay que responder el recurso
+     */
+    static ResponseEntity<ApiResponse> noModificado(WebRequest request, VersionRecurso version) {
+        if (request.checkNotModified(version.etag(), version.ultimaModificacion())) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).cacheControl(REVALIDAR).build();
+        }
+        return null;
+    }
+
+    static ResponseEntity<ApiResponse> noModificado(WebRequest request, Optional<VersionRecurso> version) {
+        return version.map(v -> noModificado(request, v)).orElse(null);
+    }
+
+    static ResponseEntity<ApiResponse> ok(ApiResponse body) {
+        return ResponseEntity.ok().cacheControl(REVALIDAR).body(body);
+    }
+}
@@ -0,0 +1,22 @@
+package com.lecoq.erp.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Evento de un producto que entra o sale del conjunto de stock bajo ({@code stock <= stockMinimo}).
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AlertaStock {
+    private Long productoId;
+    private String nombre;
+    private Integer stock;
+    private Integer stockMinimo;
+    private Boolean stockBajo;
+    private LocalDateTime fecha;
+}
@@ -0,0 +1,29 @@
+package com.lecoq.erp.dto;
+
+import com.lecoq.erp.entity.Distribucion;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Fila reciente para el tablero de despacho: el resumen que se publica más el usuario dueño, que
+ * decide a quién se envía, y la fecha de creación, que distingue una distribución nueva.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CambioDistribucion {
+    private DistribucionResumen resumen;
+    private Long usuarioId;
+    private LocalDateTime fechaCreacion;
+
+    public CambioDistribucion(Long id, Long pedidoId, String numeroPedido, String choferNombre,
+                              String vehiculoPlaca, String direccionEntrega, Distribucion.EstadoDistribucion estado,
+                              LocalDateTime fechaSalida, LocalDateTime fechaEntrega, String usuarioNombre,
+                              Long usuarioId, LocalDateTime fechaCreacion) {
+        this(new DistribucionResumen(id, pedidoId, numeroPedido, choferNombre, vehiculoPlaca, direccionEntrega,
+                estado, fechaSalida, fechaEntrega, usuarioNombre), usuarioId, fechaCreacion);
+    }
+}
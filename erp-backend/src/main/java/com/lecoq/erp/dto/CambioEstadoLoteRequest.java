@@ -0,0 +1,17 @@
+package com.lecoq.erp.dto;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotEmpty;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class CambioEstadoLoteRequest {
+    
+    @NotEmpty(message = "Los ids de pedido son obligatorios")
+    private List<Long> ids;
+    
+    @NotBlank(message = "El estado es obligatorio")
+    private String estado;
+}
@@ -0,0 +1,38 @@
+package com.lecoq.erp.dto;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+
+/**
+ * Posición de una página en un listado ordenado por (fecha DESC, id DESC). Se entrega al
+ * cliente como un token opaco; la siguiente página son las filas estrictamente anteriores
+ * a esta posición, por lo que no hay OFFSET y todas las páginas cuestan lo mismo.
+ */
+public record CursorPaginacion(LocalDateTime fecha, Long id) {
+
+    private static final String SEPARADOR = "|";
+
+    public String codificar() {
+        String valor = fecha + SEPARADOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(valor.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @return el cursor, o {@code null} si el token es nulo o vacío (primera página)
+     * @throws IllegalArgumentException si el token no es un cursor válido
+     */
+    public static CursorPaginacion decodificar(String token) {
+        if (token == null || token.isBlank()) {
+            return null;
+        }
+        try {
+            String valor = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int separador = valor.lastIndexOf(SEPARADOR);
+            return new CursorPaginacion(LocalDateTime.parse(valor.substring(0, separador)),
+                    Long.valueOf(valor.substring(separador + 1)));
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Cursor de paginación inválido", e);
+        }
+    }
+}
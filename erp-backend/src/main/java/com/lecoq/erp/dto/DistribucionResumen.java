@@ -0,0 +1,28 @@
+package com.lecoq.erp.dto;
+
+import com.lecoq.erp.entity.Distribucion;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Vista de listado de una distribución: columnas propias, número del pedido y nombre del
+ * usuario, sin tocar las asociaciones LAZY.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class DistribucionResumen {
+    private Long id;
+    private Long pedidoId;
+    private String numeroPedido;
+    private String choferNombre;
+    private String vehiculoPlaca;
+    private String direccionEntrega;
+    private Distribucion.EstadoDistribucion estado;
+    private LocalDateTime fechaSalida;
+    private LocalDateTime fechaEntrega;
+    private String usuarioNombre;
+}
@@ -0,0 +1,29 @@
+package com.lecoq.erp.dto;
+
+import com.lecoq.erp.entity.Maquilado;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Vista de listado de un maquilado: solo columnas de la cabecera y el nombre del usuario,
+ * sin tocar las asociaciones LAZY.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class MaquiladoResumen {
+    private Long id;
+    private String numeroOrden;
+    private String proveedorNombre;
+    private String proveedorRuc;
+    private BigDecimal costoTotal;
+    private Maquilado.EstadoMaquilado estado;
+    private LocalDateTime fechaOrden;
+    private LocalDateTime fechaEntregaEstimada;
+    private LocalDateTime fechaEntregaReal;
+    private String usuarioNombre;
+}
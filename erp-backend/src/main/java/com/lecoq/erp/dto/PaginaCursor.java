@@ -0,0 +1,34 @@
+package com.lecoq.erp.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.domain.Slice;
+
+import java.util.List;
+import java.util.function.Function;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PaginaCursor<T> {
+
+    public static final int TAMANO_POR_DEFECTO = 50;
+    public static final int TAMANO_MAXIMO = 200;
+
+    private List<T> contenido;
+    private String siguienteCursor;
+    private Boolean hayMas;
+
+    public static <T> PaginaCursor<T> of(Slice<T> slice, Function<T, CursorPaginacion> cursor) {
+        List<T> contenido = slice.getContent();
+        String siguiente = slice.hasNext() && !contenido.isEmpty()
+                ? cursor.apply(contenido.get(contenido.size() - 1)).codificar()
+                : null;
+        return new PaginaCursor<>(contenido, siguiente, slice.hasNext());
+    }
+
+    public static int limitarTamano(int size) {
+        return Math.min(Math.max(size, 1), TAMANO_MAXIMO);
+    }
+}
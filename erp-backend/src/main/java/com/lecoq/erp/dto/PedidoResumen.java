@@ -0,0 +1,28 @@
+package com.lecoq.erp.dto;
+
+import com.lecoq.erp.entity.Pedido;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Vista de listado de un pedido: solo columnas de la cabecera y el nombre del vendedor,
+ * sin tocar las asociaciones LAZY.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PedidoResumen {
+    private Long id;
+    private String numeroPedido;
+    private String clienteNombre;
+    private String clienteRuc;
+    private BigDecimal total;
+    private Pedido.EstadoPedido estado;
+    private LocalDateTime fechaPedido;
+    private LocalDateTime fechaEntregaEstimada;
+    private String usuarioNombre;
+}
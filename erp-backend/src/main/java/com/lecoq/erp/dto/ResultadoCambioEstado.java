@@ -0,0 +1,24 @@
+package com.lecoq.erp.dto;
+
+import com.lecoq.erp.entity.Pedido;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ResultadoCambioEstado {
+    private Long id;
+    private Boolean exito;
+    private Pedido.EstadoPedido estado;
+    private String mensaje;
+    
+    public static ResultadoCambioEstado exito(Long id, Pedido.EstadoPedido estado) {
+        return new ResultadoCambioEstado(id, true, estado, null);
+    }
+    
+    public static ResultadoCambioEstado error(Long id, String mensaje) {
+        return new ResultadoCambioEstado(id, false, null, mensaje);
+    }
+}
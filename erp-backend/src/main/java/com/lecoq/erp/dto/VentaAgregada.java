@@ -0,0 +1,31 @@
+package com.lecoq.erp.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Fila de reporte de ventas: por día ({@code fecha}) o por producto o vendedor ({@code id} y {@code nombre}).
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class VentaAgregada {
+    private LocalDate fecha;
+    private Long id;
+    private String nombre;
+    private Long cantidad;
+    private BigDecimal importe;
+    private Long lineas;
+    
+    public VentaAgregada(LocalDate fecha, Long cantidad, BigDecimal importe, Long lineas) {
+        this(fecha, null, null, cantidad, importe, lineas);
+    }
+    
+    public VentaAgregada(Long id, String nombre, Long cantidad, BigDecimal importe, Long lineas) {
+        this(null, id, nombre, cantidad, importe, lineas);
+    }
+}
@@ -0,0 +1,29 @@
+package com.lecoq.erp.dto;
+
+import org.springframework.util.DigestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.stream.Collectors;
+
+/**
+ * Validadores HTTP de una representación: el ETag resume las versiones, fechas y conteos de las
+ * filas que la componen, y la última modificación es la mayor de esas fechas ({@code -1} si no hay).
+ */
+public record VersionRecurso(String etag, long ultimaModificacion) {
+
+    public static VersionRecurso de(String recurso, Object... componentes) {
+        String valor = recurso + ":" + Arrays.stream(componentes)
+                .map(String::valueOf)
+                .collect(Collectors.joining("|"));
+        long ultima = Arrays.stream(componentes)
+                .filter(LocalDateTime.class::isInstance)
+                .map(LocalDateTime.class::cast)
+                .mapToLong(fecha -> fecha.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli())
+                .max()
+                .orElse(-1);
+        return new VersionRecurso(DigestUtils.md5DigestAsHex(valor.getBytes(StandardCharsets.UTF_8)), ultima);
+    }
+}
@@ -1,5 +1,6 @@
 package com.lecoq.erp.entity;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.*;
 import lombok.AllArgsConstructor;
@@ -16,9 +17,12 @@ import java.math.BigDecimal;
 public class DetalleMaquilado {
     
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "detalles_maquilado_seq")
+    @SequenceGenerator(name = "detalles_maquilado_seq", sequenceName = "detalles_maquilado_seq", allocationSize = 50)
     private Long id;
     
+    // Referencia a la cabecera; no se serializa para evitar el ciclo cabecera -> líneas -> cabecera
+    @JsonIgnore
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "maquilado_id", nullable = false)
     private Maquilado maquilado;
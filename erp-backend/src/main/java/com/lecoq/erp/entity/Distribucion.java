@@ -9,14 +9,21 @@ import lombok.NoArgsConstructor;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "distribuciones")
+@Table(name = "distribuciones", indexes = {
+    @Index(name = "idx_distribucion_fecha_salida", columnList = "fecha_salida, id"),
+    @Index(name = "idx_distribucion_usuario_fecha_salida", columnList = "usuario_id, fecha_salida, id"),
+    @Index(name = "idx_distribucion_estado_fecha_salida", columnList = "estado, fecha_salida, id"),
+    @Index(name = "idx_distribucion_vehiculo_placa", columnList = "vehiculo_placa"),
+    @Index(name = "idx_distribucion_fecha_actualizacion", columnList = "fecha_actualizacion")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 public class Distribucion {
     
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "distribuciones_seq")
+    @SequenceGenerator(name = "distribuciones_seq", sequenceName = "distribuciones_seq", allocationSize = 50)
     private Long id;
     
     @OneToOne(fetch = FetchType.LAZY)
@@ -70,6 +77,10 @@ public class Distribucion {
     @Column(name = "fecha_actualizacion")
     private LocalDateTime fechaActualizacion;
     
+    @Version
+    @Column(nullable = false, columnDefinition = "bigint default 0")
+    private Long version;
+    
     @PrePersist
     protected void onCreate() {
         fechaCreacion = LocalDateTime.now();
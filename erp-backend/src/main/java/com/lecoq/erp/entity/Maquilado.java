@@ -9,16 +9,28 @@ import lombok.NoArgsConstructor;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.UUID;
 
 @Entity
-@Table(name = "maquilados")
+@NamedEntityGraph(name = "Maquilado.detalle",
+    attributeNodes = {
+        @NamedAttributeNode("usuario"),
+        @NamedAttributeNode(value = "detalles", subgraph = "detalles")
+    },
+    subgraphs = @NamedSubgraph(name = "detalles", attributeNodes = @NamedAttributeNode("producto")))
+@Table(name = "maquilados", indexes = {
+    @Index(name = "idx_maquilado_fecha_orden", columnList = "fecha_orden, id"),
+    @Index(name = "idx_maquilado_usuario_fecha_orden", columnList = "usuario_id, fecha_orden, id"),
+    @Index(name = "idx_maquilado_estado_fecha_orden", columnList = "estado, fecha_orden, id")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 public class Maquilado {
     
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "maquilados_seq")
+    @SequenceGenerator(name = "maquilados_seq", sequenceName = "maquilados_seq", allocationSize = 50)
     private Long id;
     
     @Column(name = "numero_orden", unique = true, nullable = false)
@@ -76,6 +88,10 @@ public class Maquilado {
     @Column(name = "fecha_actualizacion")
     private LocalDateTime fechaActualizacion;
     
+    @Version
+    @Column(nullable = false, columnDefinition = "bigint default 0")
+    private Long version;
+    
     @PrePersist
     protected void onCreate() {
         fechaCreacion = LocalDateTime.now();
@@ -83,8 +99,9 @@ public class Maquilado {
         if (fechaOrden == null) {
             fechaOrden = LocalDateTime.now();
         }
+        // Respaldo para inserciones que no pasan por MaquiladoService, fuera del formato de la serie anual
         if (numeroOrden == null) {
-            numeroOrden = "MAQ-" + System.currentTimeMillis();
+            numeroOrden = "MAQ-" + UUID.randomUUID();
         }
     }
     
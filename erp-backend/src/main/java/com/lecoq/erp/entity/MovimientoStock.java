@@ -0,0 +1,47 @@
+package com.lecoq.erp.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Movimiento del kardex. Solo se inserta, nunca se modifica ni se elimina.
+ */
+@Entity
+@Table(name = "movimientos_stock", indexes = {
+    @Index(name = "idx_movimiento_producto_id", columnList = "producto_id, id"),
+    @Index(name = "idx_movimiento_producto_fecha", columnList = "producto_id, fecha")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class MovimientoStock {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Column(name = "producto_id", nullable = false)
+    private Long productoId;
+    
+    @Column(nullable = false)
+    private Integer cantidad;
+    
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 30)
+    private TipoMovimiento tipo;
+    
+    @Column(length = 50)
+    private String referencia;
+    
+    @Column(nullable = false)
+    private LocalDateTime fecha;
+    
+    public enum TipoMovimiento {
+        STOCK_INICIAL, AJUSTE_MANUAL, ACTUALIZACION_PRODUCTO,
+        PEDIDO_CONFIRMADO, PEDIDO_CANCELADO, PEDIDO_ELIMINADO, MAQUILADO_RECIBIDO
+    }
+}
@@ -9,16 +9,30 @@ import lombok.NoArgsConstructor;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.UUID;
 
 @Entity
-@Table(name = "pedidos")
+@NamedEntityGraph(name = "Pedido.detalle",
+    attributeNodes = {
+        @NamedAttributeNode("usuario"),
+        @NamedAttributeNode(value = "detalles", subgraph = "detalles")
+    },
+    subgraphs = @NamedSubgraph(name = "detalles", attributeNodes = @NamedAttributeNode("producto")))
+@Table(name = "pedidos", indexes = {
+    @Index(name = "idx_pedido_fecha_pedido", columnList = "fecha_pedido, id"),
+    @Index(name = "idx_pedido_usuario_fecha_pedido", columnList = "usuario_id, fecha_pedido, id"),
+    @Index(name = "idx_pedido_estado_fecha_pedido", columnList = "estado, fecha_pedido, id")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 public class Pedido {
     
+    // Secuencia con optimizador pooled (en MySQL se respalda en la tabla pedidos_seq): los ids se
+    // asignan sin ir a la base en cada persist y Hibernate puede agrupar los INSERT en lotes
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "pedidos_seq")
+    @SequenceGenerator(name = "pedidos_seq", sequenceName = "pedidos_seq", allocationSize = 50)
     private Long id;
     
     @Column(name = "numero_pedido", unique = true, nullable = false)
@@ -72,6 +86,11 @@ public class Pedido {
     @Column(name = "fecha_actualizacion")
     private LocalDateTime fechaActualizacion;
     
+    // Control de concurrencia optimista: cada UPDATE comprueba e incrementa la versión leída
+    @Version
+    @Column(nullable = false, columnDefinition = "bigint default 0")
+    private Long version;
+    
     @PrePersist
     protected void onCreate() {
         fechaCreacion = LocalDateTime.now();
@@ -79,8 +98,9 @@ public class Pedido {
         if (fechaPedido == null) {
             fechaPedido = LocalDateTime.now();
         }
+        // Respaldo para inserciones que no pasan por PedidoService, fuera del formato de la serie anual
         if (numeroPedido == null) {
-            numeroPedido = "PED-" + System.currentTimeMillis();
+            numeroPedido = "PED-" + UUID.randomUUID();
         }
     }
     
@@ -10,7 +10,9 @@ import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "productos")
+@Table(name = "productos", indexes = {
+    @Index(name = "idx_producto_fecha_actualizacion", columnList = "fecha_actualizacion")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -43,6 +45,11 @@ public class Producto {
     @Min(value = 0, message = "El stock no puede ser negativo")
     private Integer stock = 0;
     
+    // Unidades comprometidas por pedidos pendientes con reserva vigente
+    @Column(name = "stock_reservado", nullable = false)
+    @Min(value = 0, message = "El stock reservado no puede ser negativo")
+    private Integer stockReservado = 0;
+    
     @Column(name = "stock_minimo", nullable = false)
     @Min(value = 0, message = "El stock mínimo no puede ser negativo")
     private Integer stockMinimo = 0;
@@ -56,6 +63,10 @@ public class Producto {
     @Column(name = "fecha_actualizacion")
     private LocalDateTime fechaActualizacion;
     
+    @Version
+    @Column(nullable = false, columnDefinition = "bigint default 0")
+    private Long version;
+    
     @PrePersist
     protected void onCreate() {
         fechaCreacion = LocalDateTime.now();
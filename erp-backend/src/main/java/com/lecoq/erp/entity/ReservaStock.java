@@ -0,0 +1,40 @@
+package com.lecoq.erp.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Reserva temporal de stock para un pedido pendiente. Mientras exista, su cantidad está
+ * sumada en {@link Producto#getStockReservado()}.
+ */
+@Entity
+@Table(name = "reservas_stock", indexes = {
+    @Index(name = "idx_reserva_expiracion", columnList = "fecha_expiracion"),
+    @Index(name = "idx_reserva_pedido", columnList = "pedido_id")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReservaStock {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "reservas_stock_seq")
+    @SequenceGenerator(name = "reservas_stock_seq", sequenceName = "reservas_stock_seq", allocationSize = 50)
+    private Long id;
+    
+    @Column(name = "pedido_id", nullable = false)
+    private Long pedidoId;
+    
+    @Column(name = "producto_id", nullable = false)
+    private Long productoId;
+    
+    @Column(nullable = false)
+    private Integer cantidad;
+    
+    @Column(name = "fecha_expiracion", nullable = false)
+    private LocalDateTime fechaExpiracion;
+}
@@ -0,0 +1,24 @@
+package com.lecoq.erp.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Último valor reservado de una serie de numeración (por ejemplo {@code PED-2025}).
+ */
+@Entity
+@Table(name = "secuencias_documento")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SecuenciaDocumento {
+    
+    @Id
+    @Column(length = 20)
+    private String serie;
+    
+    @Column(nullable = false)
+    private Long valor;
+}
@@ -0,0 +1,37 @@
+package com.lecoq.erp.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Stock de un producto acumulado hasta el movimiento {@code ultimoMovimientoId} inclusive.
+ */
+@Entity
+@Table(name = "snapshots_stock", indexes = {
+    @Index(name = "idx_snapshot_producto_fecha", columnList = "producto_id, fecha")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SnapshotStock {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Column(name = "producto_id", nullable = false)
+    private Long productoId;
+    
+    @Column(nullable = false)
+    private Integer stock;
+    
+    @Column(name = "ultimo_movimiento_id", nullable = false)
+    private Long ultimoMovimientoId;
+    
+    @Column(nullable = false)
+    private LocalDateTime fecha;
+}
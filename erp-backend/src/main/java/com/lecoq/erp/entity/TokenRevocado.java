@@ -0,0 +1,26 @@
+package com.lecoq.erp.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "tokens_revocados")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TokenRevocado {
+    
+    @Id
+    @Column(length = 64)
+    private String jti;
+    
+    @Column(name = "fecha_expiracion", nullable = false)
+    private LocalDateTime fechaExpiracion;
+    
+    @Column(name = "fecha_revocacion", nullable = false)
+    private LocalDateTime fechaRevocacion;
+}
@@ -1,5 +1,6 @@
 package com.lecoq.erp.entity;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.*;
 import lombok.AllArgsConstructor;
@@ -50,6 +51,11 @@ public class Usuario implements UserDetails {
     @Column(nullable = false)
     private Boolean activo = true;
     
+    // Se incrementa para invalidar los tokens emitidos previamente
+    @JsonIgnore
+    @Column(name = "token_version", nullable = false)
+    private Integer tokenVersion = 0;
+    
     @Column(name = "fecha_creacion")
     private LocalDateTime fechaCreacion;
     
@@ -93,6 +99,19 @@ public class Usuario implements UserDetails {
         return activo;
     }
     
+    /**
+     * Principal liviano construido a partir de los claims del token, sin consultar la base de datos.
+     */
+    public static Usuario fromTokenClaims(Long id, String username, Rol rol, Integer tokenVersion) {
+        Usuario usuario = new Usuario();
+        usuario.setId(id);
+        usuario.setUsername(username);
+        usuario.setRol(rol);
+        usuario.setTokenVersion(tokenVersion);
+        usuario.setActivo(true);
+        return usuario;
+    }
+    
     public enum Rol {
         ADMIN, VENTAS, MAQUILA
     }
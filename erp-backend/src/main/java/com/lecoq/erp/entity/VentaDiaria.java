@@ -0,0 +1,48 @@
+package com.lecoq.erp.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Acumulado de ventas por día, producto y vendedor. Se actualiza al entrar o salir un pedido de
+ * los estados que cuentan como venta y puede reconstruirse desde los pedidos.
+ */
+@Entity
+@Table(name = "ventas_diarias",
+    uniqueConstraints = @UniqueConstraint(name = "uk_venta_diaria", columnNames = {"fecha", "producto_id", "usuario_id"}),
+    indexes = {
+        @Index(name = "idx_venta_diaria_producto_fecha", columnList = "producto_id, fecha"),
+        @Index(name = "idx_venta_diaria_usuario_fecha", columnList = "usuario_id, fecha")
+    })
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class VentaDiaria {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Column(nullable = false)
+    private LocalDate fecha;
+    
+    @Column(name = "producto_id", nullable = false)
+    private Long productoId;
+    
+    @Column(name = "usuario_id", nullable = false)
+    private Long usuarioId;
+    
+    @Column(nullable = false)
+    private Long cantidad;
+    
+    @Column(nullable = false, precision = 14, scale = 2)
+    private BigDecimal importe;
+    
+    @Column(nullable = false)
+    private Long lineas;
+}
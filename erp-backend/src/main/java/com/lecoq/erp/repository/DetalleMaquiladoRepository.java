@@ -17,7 +17,7 @@ public interface DetalleMaquiladoRepository extends JpaRepository<DetalleMaquila
     
     List<DetalleMaquilado> findByProducto(Producto producto);
     
-    @Query("SELECT dm FROM DetalleMaquilado dm WHERE dm.maquilado.id = :maquiladoId")
+    @Query("SELECT dm FROM DetalleMaquilado dm JOIN FETCH dm.producto WHERE dm.maquilado.id = :maquiladoId")
     List<DetalleMaquilado> findByMaquiladoId(@Param("maquiladoId") Long maquiladoId);
     
     @Query("SELECT dm FROM DetalleMaquilado dm WHERE dm.producto.id = :productoId")
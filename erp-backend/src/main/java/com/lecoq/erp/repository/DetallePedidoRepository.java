@@ -3,12 +3,17 @@ package com.lecoq.erp.repository;
 import com.lecoq.erp.entity.DetallePedido;
 import com.lecoq.erp.entity.Pedido;
 import com.lecoq.erp.entity.Producto;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.stream.Stream;
 
 @Repository
 public interface DetallePedidoRepository extends JpaRepository<DetallePedido, Long> {
@@ -17,9 +22,24 @@ public interface DetallePedidoRepository extends JpaRepository<DetallePedido, Lo
     
     List<DetallePedido> findByProducto(Producto producto);
     
-    @Query("SELECT dp FROM DetallePedido dp WHERE dp.pedido.id = :pedidoId")
+    @Query("SELECT dp FROM DetallePedido dp JOIN FETCH dp.producto WHERE dp.pedido.id = :pedidoId")
     List<DetallePedido> findByPedidoId(@Param("pedidoId") Long pedidoId);
     
     @Query("SELECT dp FROM DetallePedido dp WHERE dp.producto.id = :productoId")
     List<DetallePedido> findByProductoId(@Param("productoId") Long productoId);
+    
+    /**
+     * Líneas de los pedidos del rango con su cabecera, usuario y producto, agrupadas por pedido.
+     * Con fetch size {@code Integer.MIN_VALUE} el driver de MySQL entrega las filas una a una en
+     * lugar de cargar todo el resultado en memoria; mientras el stream está abierto la conexión
+     * no admite otras consultas, por eso todo lo necesario viene en el JOIN FETCH.
+     */
+    @QueryHints({
+        @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "-2147483648"),
+        @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT dp FROM DetallePedido dp JOIN FETCH dp.pedido p JOIN FETCH p.usuario JOIN FETCH dp.producto " +
+           "WHERE p.fechaPedido BETWEEN :fechaInicio AND :fechaFin ORDER BY p.fechaPedido, p.id, dp.id")
+    Stream<DetallePedido> streamByFechaPedidoBetween(@Param("fechaInicio") LocalDateTime fechaInicio,
+                                                    @Param("fechaFin") LocalDateTime fechaFin);
 }
@@ -1,8 +1,12 @@
 package com.lecoq.erp.repository;
 
+import com.lecoq.erp.dto.CambioDistribucion;
+import com.lecoq.erp.dto.DistribucionResumen;
 import com.lecoq.erp.entity.Distribucion;
 import com.lecoq.erp.entity.Pedido;
 import com.lecoq.erp.entity.Usuario;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -21,8 +25,6 @@ public interface DistribucionRepository extends JpaRepository<Distribucion, Long
     
     List<Distribucion> findByEstado(Distribucion.EstadoDistribucion estado);
     
-    List<Distribucion> findByChoferNombreContainingIgnoreCase(String choferNombre);
-    
     List<Distribucion> findByVehiculoPlaca(String vehiculoPlaca);
     
     @Query("SELECT d FROM Distribucion d WHERE d.fechaSalida BETWEEN :fechaInicio AND :fechaFin ORDER BY d.fechaSalida DESC")
@@ -34,4 +36,42 @@ public interface DistribucionRepository extends JpaRepository<Distribucion, Long
     
     @Query("SELECT d FROM Distribucion d WHERE d.usuario.id = :usuarioId ORDER BY d.fechaSalida DESC")
     List<Distribucion> findByUsuarioId(@Param("usuarioId") Long usuarioId);
+
+    // Cambios recientes para el tablero de despacho: incluye los hechos en otras instancias
+    @Query("SELECT new com.lecoq.erp.dto.CambioDistribucion(d.id, pe.id, pe.numeroPedido, d.choferNombre, " +
+           "d.vehiculoPlaca, d.direccionEntrega, d.estado, d.fechaSalida, d.fechaEntrega, u.nombreCompleto, " +
+           "u.id, d.fechaCreacion) " +
+           "FROM Distribucion d JOIN d.pedido pe JOIN d.usuario u " +
+           "WHERE d.fechaActualizacion >= :desde ORDER BY d.fechaActualizacion, d.id")
+    List<CambioDistribucion> findActualizadasDesde(@Param("desde") LocalDateTime desde);
+
+    // Paginación por cursor (keyset) de resúmenes: una sola consulta con proyección por página,
+    // ordenada por (fechaSalida DESC, id DESC) y sin OFFSET
+
+    @Query("SELECT new com.lecoq.erp.dto.DistribucionResumen(d.id, pe.id, pe.numeroPedido, d.choferNombre, " +
+           "d.vehiculoPlaca, d.direccionEntrega, d.estado, d.fechaSalida, d.fechaEntrega, u.nombreCompleto) " +
+           "FROM Distribucion d JOIN d.pedido pe JOIN d.usuario u " +
+           "ORDER BY d.fechaSalida DESC, d.id DESC")
+    Slice<DistribucionResumen> findPrimeraPagina(Pageable pageable);
+
+    @Query("SELECT new com.lecoq.erp.dto.DistribucionResumen(d.id, pe.id, pe.numeroPedido, d.choferNombre, " +
+           "d.vehiculoPlaca, d.direccionEntrega, d.estado, d.fechaSalida, d.fechaEntrega, u.nombreCompleto) " +
+           "FROM Distribucion d JOIN d.pedido pe JOIN d.usuario u " +
+           "WHERE d.fechaSalida < :fecha OR (d.fechaSalida = :fecha AND d.id < :id) " +
+           "ORDER BY d.fechaSalida DESC, d.id DESC")
+    Slice<DistribucionResumen> findPaginaDespuesDe(@Param("fecha") LocalDateTime fecha, @Param("id") Long id, Pageable pageable);
+
+    @Query("SELECT new com.lecoq.erp.dto.DistribucionResumen(d.id, pe.id, pe.numeroPedido, d.choferNombre, " +
+           "d.vehiculoPlaca, d.direccionEntrega, d.estado, d.fechaSalida, d.fechaEntrega, u.nombreCompleto) " +
+           "FROM Distribucion d JOIN d.pedido pe JOIN d.usuario u " +
+           "WHERE u.id = :usuarioId ORDER BY d.fechaSalida DESC, d.id DESC")
+    Slice<DistribucionResumen> findPrimeraPaginaByUsuarioId(@Param("usuarioId") Long usuarioId, Pageable pageable);
+
+    @Query("SELECT new com.lecoq.erp.dto.DistribucionResumen(d.id, pe.id, pe.numeroPedido, d.choferNombre, " +
+           "d.vehiculoPlaca, d.direccionEntrega, d.estado, d.fechaSalida, d.fechaEntrega, u.nombreCompleto) " +
+           "FROM Distribucion d JOIN d.pedido pe JOIN d.usuario u " +
+           "WHERE u.id = :usuarioId AND (d.fechaSalida < :fecha OR (d.fechaSalida = :fecha AND d.id < :id)) " +
+           "ORDER BY d.fechaSalida DESC, d.id DESC")
+    Slice<DistribucionResumen> findPaginaByUsuarioIdDespuesDe(@Param("usuarioId") Long usuarioId, @Param("fecha") LocalDateTime fecha,
+                                                              @Param("id") Long id, Pageable pageable);
 }
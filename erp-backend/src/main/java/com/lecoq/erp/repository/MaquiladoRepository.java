@@ -1,8 +1,14 @@
 package com.lecoq.erp.repository;
 
+import com.lecoq.erp.dto.MaquiladoResumen;
 import com.lecoq.erp.entity.Maquilado;
 import com.lecoq.erp.entity.Usuario;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -20,8 +26,6 @@ public interface MaquiladoRepository extends JpaRepository<Maquilado, Long> {
     
     List<Maquilado> findByEstado(Maquilado.EstadoMaquilado estado);
     
-    List<Maquilado> findByProveedorNombreContainingIgnoreCase(String proveedorNombre);
-    
     @Query("SELECT m FROM Maquilado m WHERE m.fechaOrden BETWEEN :fechaInicio AND :fechaFin ORDER BY m.fechaOrden DESC")
     List<Maquilado> findByFechaOrdenBetween(@Param("fechaInicio") LocalDateTime fechaInicio, 
                                            @Param("fechaFin") LocalDateTime fechaFin);
@@ -31,4 +35,44 @@ public interface MaquiladoRepository extends JpaRepository<Maquilado, Long> {
     
     @Query("SELECT m FROM Maquilado m WHERE m.usuario.id = :usuarioId ORDER BY m.fechaOrden DESC")
     List<Maquilado> findByUsuarioId(@Param("usuarioId") Long usuarioId);
+
+    // Los cambios en las líneas no tocan la cabecera: se fuerza el incremento de versión del maquilado
+    @Lock(LockModeType.OPTIMISTIC_FORCE_INCREMENT)
+    @Query("SELECT m FROM Maquilado m WHERE m.id = :id")
+    Optional<Maquilado> findByIdIncrementandoVersion(@Param("id") Long id);
+
+    // Cabecera, usuario, líneas y productos en una sola consulta para la vista de detalle
+    @EntityGraph("Maquilado.detalle")
+    @Query("SELECT m FROM Maquilado m WHERE m.id = :id")
+    Optional<Maquilado> findDetalleById(@Param("id") Long id);
+
+    // Paginación por cursor (keyset) de resúmenes: una sola consulta con proyección por página,
+    // ordenada por (fechaOrden DESC, id DESC) y sin OFFSET
+
+    @Query("SELECT new com.lecoq.erp.dto.MaquiladoResumen(m.id, m.numeroOrden, m.proveedorNombre, m.proveedorRuc, " +
+           "m.costoTotal, m.estado, m.fechaOrden, m.fechaEntregaEstimada, m.fechaEntregaReal, u.nombreCompleto) " +
+           "FROM Maquilado m JOIN m.usuario u " +
+           "ORDER BY m.fechaOrden DESC, m.id DESC")
+    Slice<MaquiladoResumen> findPrimeraPagina(Pageable pageable);
+
+    @Query("SELECT new com.lecoq.erp.dto.MaquiladoResumen(m.id, m.numeroOrden, m.proveedorNombre, m.proveedorRuc, " +
+           "m.costoTotal, m.estado, m.fechaOrden, m.fechaEntregaEstimada, m.fechaEntregaReal, u.nombreCompleto) " +
+           "FROM Maquilado m JOIN m.usuario u " +
+           "WHERE m.fechaOrden < :fecha OR (m.fechaOrden = :fecha AND m.id < :id) " +
+           "ORDER BY m.fechaOrden DESC, m.id DESC")
+    Slice<MaquiladoResumen> findPaginaDespuesDe(@Param("fecha") LocalDateTime fecha, @Param("id") Long id, Pageable pageable);
+
+    @Query("SELECT new com.lecoq.erp.dto.MaquiladoResumen(m.id, m.numeroOrden, m.proveedorNombre, m.proveedorRuc, " +
+           "m.costoTotal, m.estado, m.fechaOrden, m.fechaEntregaEstimada, m.fechaEntregaReal, u.nombreCompleto) " +
+           "FROM Maquilado m JOIN m.usuario u " +
+           "WHERE u.id = :usuarioId ORDER BY m.fechaOrden DESC, m.id DESC")
+    Slice<MaquiladoResumen> findPrimeraPaginaByUsuarioId(@Param("usuarioId") Long usuarioId, Pageable pageable);
+
+    @Query("SELECT new com.lecoq.erp.dto.MaquiladoResumen(m.id, m.numeroOrden, m.proveedorNombre, m.proveedorRuc, " +
+           "m.costoTotal, m.estado, m.fechaOrden, m.fechaEntregaEstimada, m.fechaEntregaReal, u.nombreCompleto) " +
+           "FROM Maquilado m JOIN m.usuario u " +
+           "WHERE u.id = :usuarioId AND (m.fechaOrden < :fecha OR (m.fechaOrden = :fecha AND m.id < :id)) " +
+           "ORDER BY m.fechaOrden DESC, m.id DESC")
+    Slice<MaquiladoResumen> findPaginaByUsuarioIdDespuesDe(@Param("usuarioId") Long usuarioId, @Param("fecha") LocalDateTime fecha,
+                                                           @Param("id") Long id, Pageable pageable);
 }
@@ -0,0 +1,47 @@
+package com.lecoq.erp.repository;
+
+import com.lecoq.erp.entity.MovimientoStock;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface MovimientoStockRepository extends JpaRepository<MovimientoStock, Long> {
+    
+    @Query("SELECT m FROM MovimientoStock m WHERE m.productoId = :productoId " +
+           "AND m.fecha BETWEEN :desde AND :hasta ORDER BY m.id DESC")
+    Page<MovimientoStock> findHistorial(@Param("productoId") Long productoId,
+                                        @Param("desde") LocalDateTime desde,
+                                        @Param("hasta") LocalDateTime hasta,
+                                        Pageable pageable);
+    
+    @Query("SELECT COALESCE(SUM(m.cantidad), 0) FROM MovimientoStock m WHERE m.productoId = :productoId " +
+           "AND m.id > :desdeId AND m.fecha <= :hasta")
+    long sumCantidadDesde(@Param("productoId") Long productoId,
+                          @Param("desdeId") Long desdeId,
+                          @Param("hasta") LocalDateTime hasta);
+    
+    @Query("SELECT m.productoId, SUM(m.cantidad) FROM MovimientoStock m " +
+           "WHERE m.id > :desdeId AND m.id <= :hastaId GROUP BY m.productoId")
+    List<Object[]> sumCantidadPorProducto(@Param("desdeId") Long desdeId, @Param("hastaId") Long hastaId);
+    
+    @Query("SELECT COALESCE(MAX(m.id), 0) FROM MovimientoStock m")
+    long findMaxId();
+    
+    // Recorre la clave primaria hacia atrás desde el final: solo lee los movimientos más recientes que el corte
+    @Query(value = "SELECT COALESCE((SELECT m.id FROM movimientos_stock m WHERE m.id > :desdeId " +
+                   "AND m.fecha <= :corte ORDER BY m.id DESC LIMIT 1), 0)", nativeQuery = true)
+    long findUltimoIdHasta(@Param("desdeId") Long desdeId, @Param("corte") LocalDateTime corte);
+    
+    // Lectura con bloqueo: espera a que se confirmen o reviertan los movimientos del rango aún abiertos
+    @Query(value = "SELECT m.producto_id, SUM(m.cantidad) FROM movimientos_stock m " +
+                   "WHERE m.id > :desdeId AND m.id <= :hastaId GROUP BY m.producto_id LOCK IN SHARE MODE",
+           nativeQuery = true)
+    List<Object[]> sumCantidadPorProductoConfirmados(@Param("desdeId") Long desdeId, @Param("hastaId") Long hastaId);
+}
@@ -1,13 +1,18 @@
 package com.lecoq.erp.repository;
 
+import com.lecoq.erp.dto.PedidoResumen;
 import com.lecoq.erp.entity.Pedido;
 import com.lecoq.erp.entity.Usuario;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -20,8 +25,6 @@ public interface PedidoRepository extends JpaRepository<Pedido, Long> {
     
     List<Pedido> findByEstado(Pedido.EstadoPedido estado);
     
-    List<Pedido> findByClienteNombreContainingIgnoreCase(String clienteNombre);
-    
     @Query("SELECT p FROM Pedido p WHERE p.fechaPedido BETWEEN :fechaInicio AND :fechaFin ORDER BY p.fechaPedido DESC")
     List<Pedido> findPedidosByFechaPedidoBetween(@Param("fechaInicio") LocalDateTime fechaInicio, 
                                                 @Param("fechaFin") LocalDateTime fechaFin);
@@ -31,4 +34,39 @@ public interface PedidoRepository extends JpaRepository<Pedido, Long> {
     
     @Query("SELECT p FROM Pedido p WHERE p.usuario.id = :usuarioId ORDER BY p.fechaPedido DESC")
     List<Pedido> findByUsuarioId(@Param("usuarioId") Long usuarioId);
+
+    // Cabecera, usuario, líneas y productos en una sola consulta para la vista de detalle
+    @EntityGraph("Pedido.detalle")
+    @Query("SELECT p FROM Pedido p WHERE p.id = :id")
+    Optional<Pedido> findDetalleById(@Param("id") Long id);
+
+    // Pedidos con sus líneas (sin productos) para los cambios de estado por lote
+    @Query("SELECT DISTINCT p FROM Pedido p LEFT JOIN FETCH p.detalles WHERE p.id IN :ids")
+    List<Pedido> findConDetallesByIdIn(@Param("ids") Collection<Long> ids);
+
+    // Paginación por cursor (keyset) de resúmenes: una sola consulta con proyección por página,
+    // ordenada por (fechaPedido DESC, id DESC) y sin OFFSET
+
+    @Query("SELECT new com.lecoq.erp.dto.PedidoResumen(p.id, p.numeroPedido, p.clienteNombre, p.clienteRuc, p.total, " +
+           "p.estado, p.fechaPedido, p.fechaEntregaEstimada, u.nombreCompleto) FROM Pedido p JOIN p.usuario u " +
+           "ORDER BY p.fechaPedido DESC, p.id DESC")
+    Slice<PedidoResumen> findPrimeraPagina(Pageable pageable);
+
+    @Query("SELECT new com.lecoq.erp.dto.PedidoResumen(p.id, p.numeroPedido, p.clienteNombre, p.clienteRuc, p.total, " +
+           "p.estado, p.fechaPedido, p.fechaEntregaEstimada, u.nombreCompleto) FROM Pedido p JOIN p.usuario u " +
+           "WHERE p.fechaPedido < :fecha OR (p.fechaPedido = :fecha AND p.id < :id) " +
+           "ORDER BY p.fechaPedido DESC, p.id DESC")
+    Slice<PedidoResumen> findPaginaDespuesDe(@Param("fecha") LocalDateTime fecha, @Param("id") Long id, Pageable pageable);
+
+    @Query("SELECT new com.lecoq.erp.dto.PedidoResumen(p.id, p.numeroPedido, p.clienteNombre, p.clienteRuc, p.total, " +
+           "p.estado, p.fechaPedido, p.fechaEntregaEstimada, u.nombreCompleto) FROM Pedido p JOIN p.usuario u " +
+           "WHERE u.id = :usuarioId ORDER BY p.fechaPedido DESC, p.id DESC")
+    Slice<PedidoResumen> findPrimeraPaginaByUsuarioId(@Param("usuarioId") Long usuarioId, Pageable pageable);
+
+    @Query("SELECT new com.lecoq.erp.dto.PedidoResumen(p.id, p.numeroPedido, p.clienteNombre, p.clienteRuc, p.total, " +
+           "p.estado, p.fechaPedido, p.fechaEntregaEstimada, u.nombreCompleto) FROM Pedido p JOIN p.usuario u " +
+           "WHERE u.id = :usuarioId AND (p.fechaPedido < :fecha OR (p.fechaPedido = :fecha AND p.id < :id)) " +
+           "ORDER BY p.fechaPedido DESC, p.id DESC")
+    Slice<PedidoResumen> findPaginaByUsuarioIdDespuesDe(@Param("usuarioId") Long usuarioId, @Param("fecha") LocalDateTime fecha,
+                                                        @Param("id") Long id, Pageable pageable);
 }
@@ -2,23 +2,60 @@ package com.lecoq.erp.repository;
 
 import com.lecoq.erp.entity.Producto;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
-public interface ProductoRepository extends JpaRepository<Producto, Long> {
+public interface ProductoRepository extends JpaRepository<Producto, Long>, ProductoRepositoryCustom {
     
     List<Producto> findByActivoTrue();
     
-    List<Producto> findByNombreContainingIgnoreCase(String nombre);
-    
-    @Query("SELECT p FROM Producto p WHERE p.activo = true AND p.stock <= p.stockMinimo")
-    List<Producto> findProductosConStockBajo();
-    
     @Query("SELECT p FROM Producto p WHERE p.activo = true AND p.stock > 0")
     List<Producto> findProductosConStock();
     
     List<Producto> findByActivoTrueOrderByNombreAsc();
+    
+    /**
+     * Firma del catálogo: cambia con cualquier alta (conteo, id máximo), baja (conteo) o
+     * actualización (suma de versiones) confirmada, en cualquier instancia.
+     */
+    @Query("SELECT COUNT(p), MAX(p.id), SUM(p.version) FROM Producto p")
+    List<Object[]> findFirmaCatalogo();
+
+    @Query("SELECT p.id FROM Producto p WHERE p.fechaActualizacion >= :desde")
+    List<Long> findIdsActualizadosDesde(@Param("desde") LocalDateTime desde);
+
+    /**
+     * Valores vigentes en la base como instancias no administradas: no se ven afectados por una
+     * copia anterior a un UPDATE masivo que la transacción tenga en su contexto de persistencia.
+     */
+    @Query("SELECT new com.lecoq.erp.entity.Producto(p.id, p.nombre, p.descripcion, p.presentacion, p.precio, " +
+           "p.stock, p.stockReservado, p.stockMinimo, p.activo, p.fechaCreacion, p.fechaActualizacion, p.version) " +
+           "FROM Producto p WHERE p.id IN :ids")
+    List<Producto> findVigentesByIdIn(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Toda la tabla con la misma proyección, sin cargar entidades en el contexto de persistencia.
+     */
+    @Query("SELECT new com.lecoq.erp.entity.Producto(p.id, p.nombre, p.descripcion, p.presentacion, p.precio, " +
+           "p.stock, p.stockReservado, p.stockMinimo, p.activo, p.fechaCreacion, p.fechaActualizacion, p.version) " +
+           "FROM Producto p")
+    List<Producto> findVigentes();
+    
+    /**
+     * Ajusta el stock de forma atómica solo si el resultado no queda negativo ni invade el
+     * stock reservado por pedidos pendientes.
+     *
+     * @return filas afectadas: 0 si el producto no existe o el stock es insuficiente
+     */
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE Producto p SET p.stock = p.stock + :delta, p.fechaActualizacion = :ahora, " +
+           "p.version = p.version + 1 WHERE p.id = :id AND (:delta >= 0 OR p.stock + :delta >= p.stockReservado)")
+    int ajustarStock(@Param("id") Long id, @Param("delta") int delta, @Param("ahora") LocalDateTime ahora);
 }
@@ -0,0 +1,26 @@
+package com.lecoq.erp.repository;
+
+import java.time.LocalDateTime;
+import java.util.SortedMap;
+
+public interface ProductoRepositoryCustom {
+    
+    /**
+     * Aplica varios ajustes de stock en un solo UPDATE. Cada fila solo se modifica si su stock
+     * resultante no queda negativo ni por debajo del stock reservado.
+     *
+     * @param deltas ajuste por id de producto, ordenado por id
+     * @return filas afectadas; menor que {@code deltas.size()} si algún producto no existe o no tiene stock
+     */
+    int ajustarStockLote(SortedMap<Long, Integer> deltas, LocalDateTime ahora);
+    
+    /**
+     * Reserva stock para varios productos en un solo UPDATE; cada fila solo se reserva si su
+     * stock disponible (stock - reservado) alcanza.
+     *
+     * @return filas afectadas; menor que {@code cantidades.size()} si algún producto no alcanza
+     */
+    int reservarStockLote(SortedMap<Long, Integer> cantidades, LocalDateTime ahora);
+    
+    int liberarStockReservadoLote(SortedMap<Long, Integer> cantidades, LocalDateTime ahora);
+}
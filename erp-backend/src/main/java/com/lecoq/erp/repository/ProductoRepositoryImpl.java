@@ -0,0 +1,76 @@
+package com.lecoq.erp.repository;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.Query;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.SortedMap;
+
+public class ProductoRepositoryImpl implements ProductoRepositoryCustom {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    // InnoDB bloquea las filas recorriendo la PK en orden ascendente, así que dos lotes
+    // concurrentes siempre toman los bloqueos en el mismo orden y no pueden interbloquearse.
+
+    @Override
+    public int ajustarStockLote(SortedMap<Long, Integer> deltas, LocalDateTime ahora) {
+        // Un descuento no puede invadir el stock reservado por pedidos pendientes
+        return ejecutarLote(deltas, ahora,
+                "stock = stock + {delta}",
+                "({delta} >= 0 OR stock + {delta} >= stock_reservado)");
+    }
+
+    @Override
+    public int reservarStockLote(SortedMap<Long, Integer> cantidades, LocalDateTime ahora) {
+        return ejecutarLote(cantidades, ahora,
+                "stock_reservado = stock_reservado + {delta}",
+                "stock - stock_reservado >= {delta}");
+    }
+
+    @Override
+    public int liberarStockReservadoLote(SortedMap<Long, Integer> cantidades, LocalDateTime ahora) {
+        return ejecutarLote(cantidades, ahora,
+                "stock_reservado = GREATEST(stock_reservado - {delta}, 0)",
+                null);
+    }
+
+    /**
+     * UPDATE productos SET {set} WHERE id IN (...) AND {condicion}, donde {delta} se reemplaza por
+     * CASE id WHEN ?1 THEN ?2 ... END. Los parámetros ordinales se reutilizan en cada aparición.
+     * También incrementa la versión, para que una edición que leyó el stock anterior no lo sobrescriba.
+     */
+    private int ejecutarLote(SortedMap<Long, Integer> deltas, LocalDateTime ahora, String set, String condicion) {
+        if (deltas.isEmpty()) {
+            return 0;
+        }
+
+        StringBuilder delta = new StringBuilder("CASE id");
+        StringBuilder ids = new StringBuilder();
+        int position = 1;
+        for (int i = 0; i < deltas.size(); i++) {
+            delta.append(" WHEN ?").append(position).append(" THEN ?").append(position + 1);
+            ids.append(i == 0 ? "?" : ", ?").append(position);
+            position += 2;
+        }
+        delta.append(" END");
+        int posicionFecha = position;
+
+        String sql = "UPDATE productos SET " + set.replace("{delta}", delta) +
+                ", fecha_actualizacion = ?" + posicionFecha + ", version = version + 1" +
+                " WHERE id IN (" + ids + ")" +
+                (condicion != null ? " AND " + condicion.replace("{delta}", delta) : "");
+
+        Query query = entityManager.createNativeQuery(sql);
+        position = 1;
+        for (Map.Entry<Long, Integer> entry : deltas.entrySet()) {
+            query.setParameter(position++, entry.getKey());
+            query.setParameter(position++, entry.getValue());
+        }
+        query.setParameter(posicionFecha, ahora);
+        return query.executeUpdate();
+    }
+}
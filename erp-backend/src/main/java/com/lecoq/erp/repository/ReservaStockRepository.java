@@ -0,0 +1,37 @@
+package com.lecoq.erp.repository;
+
+import com.lecoq.erp.entity.ReservaStock;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface ReservaStockRepository extends JpaRepository<ReservaStock, Long> {
+    
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT r FROM ReservaStock r WHERE r.pedidoId = :pedidoId")
+    List<ReservaStock> findByPedidoIdForUpdate(@Param("pedidoId") Long pedidoId);
+    
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT r FROM ReservaStock r WHERE r.pedidoId IN :pedidoIds")
+    List<ReservaStock> findByPedidoIdInForUpdate(@Param("pedidoIds") Collection<Long> pedidoIds);
+    
+    /**
+     * Lote de reservas vencidas, recorrido por el índice de fecha de expiración. SKIP LOCKED
+     * permite que varias instancias procesen lotes distintos sin bloquearse.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "jakarta.persistence.lock.timeout", value = "-2"))
+    @Query("SELECT r FROM ReservaStock r WHERE r.fechaExpiracion <= :ahora ORDER BY r.fechaExpiracion")
+    List<ReservaStock> findVencidas(@Param("ahora") LocalDateTime ahora, Pageable pageable);
+}
@@ -0,0 +1,25 @@
+package com.lecoq.erp.repository;
+
+import com.lecoq.erp.entity.SecuenciaDocumento;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface SecuenciaDocumentoRepository extends JpaRepository<SecuenciaDocumento, String> {
+    
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT s FROM SecuenciaDocumento s WHERE s.serie = :serie")
+    Optional<SecuenciaDocumento> findBySerieForUpdate(@Param("serie") String serie);
+    
+    // INSERT IGNORE: si otra instancia crea la serie a la vez, gana una y la otra no falla
+    @Modifying
+    @Query(value = "INSERT IGNORE INTO secuencias_documento (serie, valor) VALUES (:serie, 0)", nativeQuery = true)
+    int crearSiNoExiste(@Param("serie") String serie);
+}
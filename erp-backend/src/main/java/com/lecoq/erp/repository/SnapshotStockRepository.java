@@ -0,0 +1,24 @@
+package com.lecoq.erp.repository;
+
+import com.lecoq.erp.entity.SnapshotStock;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface SnapshotStockRepository extends JpaRepository<SnapshotStock, Long> {
+    
+    Optional<SnapshotStock> findFirstByProductoIdAndFechaLessThanEqualOrderByFechaDescIdDesc(Long productoId,
+                                                                                          LocalDateTime fecha);
+    
+    @Query("SELECT s FROM SnapshotStock s WHERE s.id IN " +
+           "(SELECT MAX(s2.id) FROM SnapshotStock s2 GROUP BY s2.productoId)")
+    List<SnapshotStock> findUltimos();
+    
+    @Query("SELECT COALESCE(MAX(s.ultimoMovimientoId), 0) FROM SnapshotStock s")
+    long findMaxUltimoMovimientoId();
+}
@@ -0,0 +1,24 @@
+package com.lecoq.erp.repository;
+
+import com.lecoq.erp.entity.TokenRevocado;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface TokenRevocadoRepository extends JpaRepository<TokenRevocado, String> {
+    
+    List<TokenRevocado> findByFechaExpiracionAfter(LocalDateTime fecha);
+    
+    @Query("SELECT t FROM TokenRevocado t WHERE t.fechaRevocacion >= :desde AND t.fechaExpiracion > :ahora")
+    List<TokenRevocado> findRevocadosDesde(@Param("desde") LocalDateTime desde, @Param("ahora") LocalDateTime ahora);
+    
+    @Modifying
+    @Query("DELETE FROM TokenRevocado t WHERE t.fechaExpiracion <= :fecha")
+    int deleteExpirados(@Param("fecha") LocalDateTime fecha);
+}
@@ -25,4 +25,7 @@ public interface UsuarioRepository extends JpaRepository<Usuario, Long> {
     
     @Query("SELECT u FROM Usuario u WHERE u.activo = true AND u.rol = :rol")
     List<Usuario> findActiveUsersByRol(Usuario.Rol rol);
+    
+    @Query("SELECT u.id, u.tokenVersion, u.activo FROM Usuario u")
+    List<Object[]> findTokenVersions();
 }
@@ -0,0 +1,29 @@
+package com.lecoq.erp.repository;
+
+import com.lecoq.erp.dto.VentaAgregada;
+import com.lecoq.erp.entity.VentaDiaria;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Repository
+public interface VentaDiariaRepository extends JpaRepository<VentaDiaria, Long> {
+    
+    @Query("SELECT new com.lecoq.erp.dto.VentaAgregada(v.fecha, SUM(v.cantidad), SUM(v.importe), SUM(v.lineas)) " +
+           "FROM VentaDiaria v WHERE v.fecha BETWEEN :desde AND :hasta GROUP BY v.fecha ORDER BY v.fecha")
+    List<VentaAgregada> sumarPorDia(@Param("desde") LocalDate desde, @Param("hasta") LocalDate hasta);
+    
+    @Query("SELECT new com.lecoq.erp.dto.VentaAgregada(p.id, p.nombre, SUM(v.cantidad), SUM(v.importe), SUM(v.lineas)) " +
+           "FROM VentaDiaria v JOIN Producto p ON p.id = v.productoId " +
+           "WHERE v.fecha BETWEEN :desde AND :hasta GROUP BY p.id, p.nombre ORDER BY SUM(v.importe) DESC")
+    List<VentaAgregada> sumarPorProducto(@Param("desde") LocalDate desde, @Param("hasta") LocalDate hasta);
+    
+    @Query("SELECT new com.lecoq.erp.dto.VentaAgregada(u.id, u.nombreCompleto, SUM(v.cantidad), SUM(v.importe), SUM(v.lineas)) " +
+           "FROM VentaDiaria v JOIN Usuario u ON u.id = v.usuarioId " +
+           "WHERE v.fecha BETWEEN :desde AND :hasta GROUP BY u.id, u.nombreCompleto ORDER BY SUM(v.importe) DESC")
+    List<VentaAgregada> sumarPorUsuario(@Param("desde") LocalDate desde, @Param("hasta") LocalDate hasta);
+}
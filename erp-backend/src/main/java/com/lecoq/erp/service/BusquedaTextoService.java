@@ -0,0 +1,176 @@
+package com.lecoq.erp.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Búsqueda por nombre de productos, clientes de pedidos, proveedores de maquilados y choferes de
+ * distribuciones sobre índices de trigramas en memoria, sin {@code LIKE '%x%'} contra la base.
+ * Los índices se construyen al arrancar y los servicios los actualizan al confirmar cada cambio.
+ * Cada {@code app.busqueda.reconstruccion-interval} se reconstruyen desde la base para incorporar
+ * lo escrito por otras instancias; los cambios confirmados durante la reconstrucción se reaplican
+ * sobre el índice nuevo antes de reemplazar al anterior.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class BusquedaTextoService {
+
+    public enum Campo {
+        PRODUCTO("SELECT id, nombre FROM productos"),
+        CLIENTE("SELECT id, cliente_nombre FROM pedidos"),
+        PROVEEDOR("SELECT id, proveedor_nombre FROM maquilados"),
+        CHOFER("SELECT id, chofer_nombre FROM distribuciones");
+
+        private final String consultaCarga;
+
+        Campo(String consultaCarga) {
+            this.consultaCarga = consultaCarga;
+        }
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final Map<Campo, Entrada> indices = crearIndices();
+    private final AtomicLong busquedas = new AtomicLong();
+    private final AtomicLong nanosBusqueda = new AtomicLong();
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void cargar() {
+        reconstruir();
+        indices.forEach((campo, entrada) ->
+                log.info("Índice de búsqueda {} cargado: {} registros", campo, entrada.actual.documentos()));
+    }
+
+    @Scheduled(fixedDelayString = "${app.busqueda.reconstruccion-interval:600000}",
+               initialDelayString = "${app.busqueda.reconstruccion-interval:600000}")
+    public void reconstruir() {
+        for (Campo campo : Campo.values()) {
+            Entrada entrada = indices.get(campo);
+            entrada.iniciarReconstruccion();
+            IndiceTrigramas nuevo = new IndiceTrigramas();
+            try {
+                jdbcTemplate.query(campo.consultaCarga, rs -> {
+                    nuevo.indexar(rs.getLong(1), rs.getString(2));
+                });
+            } catch (RuntimeException e) {
+                entrada.cancelarReconstruccion();
+                log.error("Error reconstruyendo el índice de búsqueda {}: {}", campo, e.getMessage());
+                continue;
+            }
+            entrada.reemplazar(nuevo);
+        }
+    }
+
+    /**
+     * Ids cuyo texto contiene {@code consulta}, sin distinguir tildes ni mayúsculas, ordenados por relevancia.
+     */
+    public List<Long> buscar(Campo campo, String consulta, int limite) {
+        long inicio = System.nanoTime();
+        try {
+            return indices.get(campo).actual.buscar(consulta, limite);
+        } finally {
+            nanosBusqueda.addAndGet(System.nanoTime() - inicio);
+            busquedas.incrementAndGet();
+        }
+    }
+
+    public void indexar(Campo campo, Long id, String texto) {
+        alConfirmar(() -> indices.get(campo).aplicar(indice -> indice.indexar(id, texto)));
+    }
+
+    public void eliminar(Campo campo, Long id) {
+        alConfirmar(() -> indices.get(campo).aplicar(indice -> indice.eliminar(id)));
+    }
+
+    /**
+     * Devuelve las entidades en el orden de {@code ids}, descartando las que ya no existan.
+     */
+    public static <T> List<T> enOrden(List<Long> ids, List<T> entidades, Function<T, Long> id) {
+        Map<Long, T> porId = entidades.stream().collect(Collectors.toMap(id, e -> e));
+        return ids.stream().map(porId::get).filter(Objects::nonNull).toList();
+    }
+
+    public Map<String, Object> getEstadisticas() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        indices.forEach((campo, entrada) -> {
+            Map<String, Object> indice = new LinkedHashMap<>();
+            indice.put("registros", entrada.actual.documentos());
+            indice.put("trigramas", entrada.actual.trigramasDistintos());
+            stats.put(campo.name().toLowerCase(), indice);
+        });
+        long total = busquedas.get();
+        stats.put("busquedas", total);
+        stats.put("tiempoMedioMicros", total == 0 ? 0.0 : nanosBusqueda.get() / 1000.0 / total);
+        return stats;
+    }
+
+    private static Map<Campo, Entrada> crearIndices() {
+        Map<Campo, Entrada> indices = new EnumMap<>(Campo.class);
+        for (Campo campo : Campo.values()) {
+            indices.put(campo, new Entrada());
+        }
+        return indices;
+    }
+
+    // Solo se indexan cambios de transacciones confirmadas
+    private static void alConfirmar(Runnable cambio) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    cambio.run();
+                }
+            });
+        } else {
+            cambio.run();
+        }
+    }
+
+    private static final class Entrada {
+
+        private volatile IndiceTrigramas actual = new IndiceTrigramas();
+
+        // Cambios aplicados mientras se reconstruye; null si no hay reconstrucción en curso
+        private List<Consumer<IndiceTrigramas>> durante;
+
+        synchronized void aplicar(Consumer<IndiceTrigramas> cambio) {
+            cambio.accept(actual);
+            if (durante != null) {
+                durante.add(cambio);
+            }
+        }
+
+        synchronized void iniciarReconstruccion() {
+            durante = new ArrayList<>();
+        }
+
+        synchronized void cancelarReconstruccion() {
+            durante = null;
+        }
+
+        synchronized void reemplazar(IndiceTrigramas nuevo) {
+            durante.forEach(cambio -> cambio.accept(nuevo));
+            durante = null;
+            actual = nuevo;
+        }
+    }
+}
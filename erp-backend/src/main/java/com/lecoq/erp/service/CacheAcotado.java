@@ -0,0 +1,96 @@
+package com.lecoq.erp.service;
+
+import java.util.Comparator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+/**
+ * Mapa concurrente de tamaño máximo cuyas entradas vencen en el instante fijado al guardarlas.
+ * Al llenarse descarta las vencidas y, si no alcanza, las más próximas a vencer hasta dejar libre
+ * una décima parte, para no recorrer el mapa en cada inserción. Lo comparten
+ * {@link com.lecoq.erp.config.JwtTokenCache} y {@link CatalogoProductoCache}.
+ */
+public class CacheAcotado<K, V> {
+
+    private final int maxSize;
+    private final Map<K, Entrada<V>> entradas = new ConcurrentHashMap<>();
+    private final AtomicLong desalojos = new AtomicLong();
+
+    public CacheAcotado(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * @return el valor guardado, o {@code null} si no está o ya venció
+     */
+    public V get(K clave) {
+        Entrada<V> entrada = entradas.get(clave);
+        if (entrada == null) {
+            return null;
+        }
+        if (entrada.expiresAt() <= System.currentTimeMillis()) {
+            entradas.remove(clave, entrada);
+            return null;
+        }
+        return entrada.valor();
+    }
+
+    public void put(K clave, V valor, long expiresAt) {
+        if (entradas.size() >= maxSize) {
+            makeRoom();
+        }
+        entradas.put(clave, new Entrada<>(valor, expiresAt));
+    }
+
+    public void remove(K clave) {
+        entradas.remove(clave);
+    }
+
+    public void removeIf(Predicate<V> condicion) {
+        entradas.values().removeIf(entrada -> condicion.test(entrada.valor()));
+    }
+
+    public void clear() {
+        entradas.clear();
+    }
+
+    public int size() {
+        return entradas.size();
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public long getDesalojos() {
+        return desalojos.get();
+    }
+
+    private synchronized void makeRoom() {
+        // Otro hilo pudo haber hecho lugar mientras se esperaba el lock
+        if (entradas.size() < maxSize) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        entradas.values().removeIf(entrada -> entrada.expiresAt() <= now);
+
+        int toEvict = entradas.size() - maxSize + Math.max(1, maxSize / 10);
+        if (toEvict <= 0) {
+            return;
+        }
+        entradas.entrySet().stream()
+                .sorted(Comparator.comparingLong(e -> e.getValue().expiresAt()))
+                .limit(toEvict)
+                .toList()
+                .forEach(e -> {
+                    if (entradas.remove(e.getKey(), e.getValue())) {
+                        desalojos.incrementAndGet();
+                    }
+                });
+    }
+
+    private record Entrada<V>(V valor, long expiresAt) {
+    }
+}
@@ -0,0 +1,235 @@
+package com.lecoq.erp.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Suscriptores de Server-Sent Events de un mismo flujo. Quien publica (normalmente al confirmar
+ * una transacción) solo deja el evento en la cola acotada de cada suscriptor; unos pocos hilos del
+ * canal vacían esas colas, de a un suscriptor por vez, así que cada cliente recibe los eventos en
+ * el orden en que se publicaron y un cliente lento solo retrasa los suyos. Un suscriptor se da de
+ * baja cuando falla al recibir, cuando su cola se llena o cuando un envío lleva más de
+ * {@value #LIMITE_ENVIO_MS} ms (se revisa en cada latido); el hilo que quedó bloqueado en ese
+ * envío se libera cuando el contenedor cierra la conexión, mientras los demás siguen enviando.
+ * Cada suscriptor puede filtrar los eventos por su ámbito (por ejemplo, el usuario dueño del registro).
+ * Un suscriptor inactivo no ocupa hilos: solo su conexión asíncrona y una entrada en el mapa.
+ */
+@Slf4j
+public class CanalSse {
+
+    private static final int HILOS_ENVIO = 4;
+    private static final long LIMITE_ENVIO_MS = 10000;
+
+    private final String nombre;
+    private final long timeout;
+    private final int capacidadCola;
+    private final Map<SseEmitter, Suscriptor> suscriptores = new ConcurrentHashMap<>();
+    private final ExecutorService envios;
+
+    private final AtomicLong enviados = new AtomicLong();
+    private final AtomicLong descartados = new AtomicLong();
+    private final AtomicLong bajas = new AtomicLong();
+    private final AtomicLong lentos = new AtomicLong();
+
+    /**
+     * @param capacidadCola eventos pendientes por suscriptor; al superarla el suscriptor se da de baja
+     */
+    public CanalSse(String nombre, long timeout, int capacidadCola) {
+        this.nombre = nombre;
+        this.timeout = timeout;
+        this.capacidadCola = capacidadCola;
+        AtomicInteger hilos = new AtomicInteger();
+        // Hay a lo sumo una tarea por suscriptor, así que la cola del pool queda acotada por ellos
+        this.envios = Executors.newFixedThreadPool(HILOS_ENVIO, r -> {
+            Thread t = new Thread(r, "sse-" + nombre + "-" + hilos.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    public SseEmitter suscribir() {
+        return suscribir(ambito -> true);
+    }
+
+    /**
+     * @param filtro recibe el ámbito de cada evento publicado y decide si se envía a este suscriptor
+     */
+    public SseEmitter suscribir(Predicate<Object> filtro) {
+        SseEmitter emitter = new SseEmitter(timeout);
+        suscriptores.put(emitter, new Suscriptor(emitter, filtro, capacidadCola));
+        emitter.onCompletion(() -> suscriptores.remove(emitter));
+        emitter.onTimeout(emitter::complete);
+        emitter.onError(e -> suscriptores.remove(emitter));
+        return emitter;
+    }
+
+    /**
+     * Envía un evento solo a {@code emitter}, después de los ya publicados al canal.
+     */
+    public void enviar(SseEmitter emitter, String evento, Object datos) {
+        enviar(emitter, evento, null, datos);
+    }
+
+    public void enviar(SseEmitter emitter, String evento, String id, Object datos) {
+        Suscriptor suscriptor = suscriptores.get(emitter);
+        if (suscriptor != null) {
+            encolar(suscriptor, () -> evento(evento, id, datos));
+        }
+    }
+
+    public void publicar(String evento, Object datos) {
+        publicar(evento, null, datos, null);
+    }
+
+    /**
+     * Envía el evento a los suscriptores cuyo filtro acepta {@code ambito}. Con {@code id}, el
+     * cliente lo devuelve en {@code Last-Event-ID} al reconectarse.
+     */
+    public void publicar(String evento, String id, Object datos, Object ambito) {
+        if (suscriptores.isEmpty()) {
+            return;
+        }
+        // El builder acumula estado al enviarse, por eso se crea uno por destinatario
+        Supplier<SseEmitter.SseEventBuilder> builder = () -> evento(evento, id, datos);
+        for (Suscriptor suscriptor : suscriptores.values()) {
+            if (suscriptor.filtro.test(ambito)) {
+                encolar(suscriptor, builder);
+            }
+        }
+    }
+
+    /**
+     * Comentario vacío para que proxies y balanceadores no cierren las conexiones inactivas. De
+     * paso da de baja a los suscriptores con un envío trabado.
+     */
+    public void latido() {
+        long limite = System.currentTimeMillis() - LIMITE_ENVIO_MS;
+        for (Suscriptor suscriptor : suscriptores.values()) {
+            long desde = suscriptor.enviandoDesde;
+            if (desde != 0 && desde < limite) {
+                darDeBajaLento(suscriptor, "envío trabado");
+            } else {
+                encolar(suscriptor, () -> SseEmitter.event().comment(""));
+            }
+        }
+    }
+
+    public void cerrar() {
+        envios.shutdownNow();
+        suscriptores.keySet().forEach(SseEmitter::complete);
+        suscriptores.clear();
+    }
+
+    public Map<String, Object> getEstadisticas() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("suscriptores", suscriptores.size());
+        stats.put("eventosEnviados", enviados.get());
+        stats.put("eventosDescartados", descartados.get());
+        stats.put("enCola", suscriptores.values().stream().mapToInt(s -> s.pendientes.size()).sum());
+        stats.put("bajas", bajas.get());
+        stats.put("bajasPorLentitud", lentos.get());
+        return stats;
+    }
+
+    private void encolar(Suscriptor suscriptor, Supplier<SseEmitter.SseEventBuilder> evento) {
+        if (!suscriptor.pendientes.offer(evento)) {
+            descartados.incrementAndGet();
+            darDeBajaLento(suscriptor, "cola llena");
+            return;
+        }
+        programar(suscriptor);
+    }
+
+    private void programar(Suscriptor suscriptor) {
+        if (suscriptor.programado.compareAndSet(false, true)) {
+            try {
+                envios.execute(() -> vaciar(suscriptor));
+            } catch (RejectedExecutionException e) {
+                // Canal cerrado
+                suscriptor.programado.set(false);
+            }
+        }
+    }
+
+    private void vaciar(Suscriptor suscriptor) {
+        Supplier<SseEmitter.SseEventBuilder> evento;
+        while ((evento = suscriptor.pendientes.poll()) != null) {
+            if (!enviar(suscriptor, evento.get())) {
+                suscriptor.pendientes.clear();
+                break;
+            }
+        }
+        suscriptor.programado.set(false);
+        // Un evento encolado después del último poll pero antes de liberar la marca
+        if (!suscriptor.pendientes.isEmpty()) {
+            programar(suscriptor);
+        }
+    }
+
+    private static SseEmitter.SseEventBuilder evento(String nombre, String id, Object datos) {
+        SseEmitter.SseEventBuilder evento = SseEmitter.event().name(nombre).data(datos);
+        return id == null ? evento : evento.id(id);
+    }
+
+    private boolean enviar(Suscriptor suscriptor, SseEmitter.SseEventBuilder evento) {
+        SseEmitter emitter = suscriptor.emitter;
+        if (!suscriptores.containsKey(emitter)) {
+            return false;
+        }
+        suscriptor.enviandoDesde = System.currentTimeMillis();
+        try {
+            emitter.send(evento);
+            enviados.incrementAndGet();
+            return true;
+        } catch (IOException | IllegalStateException e) {
+            // Cliente desconectado: se libera la conexión sin esperar al timeout
+            if (suscriptores.remove(emitter, suscriptor)) {
+                bajas.incrementAndGet();
+                emitter.completeWithError(e);
+            }
+            return false;
+        } finally {
+            suscriptor.enviandoDesde = 0;
+        }
+    }
+
+    private void darDeBajaLento(Suscriptor suscriptor, String motivo) {
+        if (suscriptores.remove(suscriptor.emitter, suscriptor)) {
+            bajas.incrementAndGet();
+            lentos.incrementAndGet();
+            suscriptor.pendientes.clear();
+            log.warn("Suscriptor SSE {} dado de baja: {}", nombre, motivo);
+            suscriptor.emitter.completeWithError(new IOException("Cliente SSE lento: " + motivo));
+        }
+    }
+
+    private static final class Suscriptor {
+        private final SseEmitter emitter;
+        private final Predicate<Object> filtro;
+        private final BlockingQueue<Supplier<SseEmitter.SseEventBuilder>> pendientes;
+        private final AtomicBoolean programado = new AtomicBoolean();
+        // Inicio del envío en curso, o 0 si no hay ninguno
+        private volatile long enviandoDesde;
+
+        private Suscriptor(SseEmitter emitter, Predicate<Object> filtro, int capacidad) {
+            this.emitter = emitter;
+            this.filtro = filtro;
+            this.pendientes = new LinkedBlockingQueue<>(capacidad);
+        }
+    }
+}
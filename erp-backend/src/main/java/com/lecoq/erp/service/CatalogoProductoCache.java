@@ -0,0 +1,230 @@
+package com.lecoq.erp.service;
+
+import com.lecoq.erp.entity.Producto;
+import com.lecoq.erp.repository.ProductoRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Cache del catálogo de productos: lista de activos, lista con stock y productos por id, con
+ * tamaño máximo y TTL. {@link ProductoService} invalida las entradas afectadas al confirmarse
+ * cada escritura (incluidos los ajustes de stock y reservas), de modo que en esta instancia
+ * ninguna lectura posterior al commit devuelve el stock anterior. Los cambios confirmados en
+ * otras instancias se detectan cada {@code app.productos.cache.sync-interval} comparando la firma
+ * del catálogo (conteo, id máximo y suma de versiones): si cambió, se descartan los productos
+ * actualizados desde la sincronización anterior (con {@code app.productos.cache.sync-margen} de
+ * margen por transacciones largas y relojes) y las listas; si hubo bajas, todo. Así el stock de
+ * otra instancia deja de servirse como mucho un intervalo después de su commit, no al vencer el TTL.
+ * Los validadores HTTP del catálogo se calculan sobre lo que devuelve este cache. Una carga que
+ * empezó antes de una invalidación no se guarda. Dentro de una transacción se lee siempre de la
+ * base, para no exponer ni guardar cambios sin confirmar.
+ */
+@Component
+@RequiredArgsConstructor
+public class CatalogoProductoCache {
+
+    private final ProductoRepository productoRepository;
+
+    @Value("${app.productos.cache.max-size:5000}")
+    private int maxSize;
+
+    @Value("${app.productos.cache.ttl:300000}")
+    private long ttl;
+
+    @Value("${app.productos.cache.sync-margen:60000}")
+    private long margenSync;
+
+    private CacheAcotado<Long, Producto> porId;
+    private volatile Entrada<List<Producto>> activos;
+    private volatile Entrada<List<Producto>> conStock;
+
+    // Se incrementa en cada invalidación; una carga solo se guarda si no cambió mientras tanto
+    private final AtomicLong generacion = new AtomicLong();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong invalidaciones = new AtomicLong();
+    private final AtomicLong invalidacionesRemotas = new AtomicLong();
+
+    // Firma leída en la sincronización anterior y cuándo se leyó; solo los usa el job
+    private Object[] firma;
+    private LocalDateTime ultimaSync;
+
+    @PostConstruct
+    public void init() {
+        porId = new CacheAcotado<>(maxSize);
+    }
+
+    public List<Producto> activos(Supplier<List<Producto>> cargar) {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            return cargar.get();
+        }
+        Entrada<List<Producto>> entrada = activos;
+        if (vigente(entrada)) {
+            return entrada.valor();
+        }
+        long leida = generacion.get();
+        List<Producto> productos = List.copyOf(cargar.get());
+        guardar(leida, nueva(productos), true);
+        return productos;
+    }
+
+    public List<Producto> conStock(Supplier<List<Producto>> cargar) {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            return cargar.get();
+        }
+        Entrada<List<Producto>> entrada = conStock;
+        if (vigente(entrada)) {
+            return entrada.valor();
+        }
+        long leida = generacion.get();
+        List<Producto> productos = List.copyOf(cargar.get());
+        guardar(leida, nueva(productos), false);
+        return productos;
+    }
+
+    public Optional<Producto> porId(Long id, Supplier<Optional<Producto>> cargar) {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            return cargar.get();
+        }
+        Producto cacheado = porId.get(id);
+        if (cacheado != null) {
+            hits.incrementAndGet();
+            return Optional.of(cacheado);
+        }
+        misses.incrementAndGet();
+        long leida = generacion.get();
+        Optional<Producto> producto = cargar.get();
+        if (producto.isPresent() && generacion.get() == leida) {
+            porId.put(id, producto.get(), System.currentTimeMillis() + ttl);
+            // Una invalidación entre la comprobación y el put no debe dejar el valor cargado
+            if (generacion.get() != leida) {
+                porId.remove(id);
+            }
+        }
+        return producto;
+    }
+
+    /**
+     * Descarta lo que otras instancias cambiaron desde la sincronización anterior. Con la firma
+     * igual no hay nada que leer: una sola consulta de agregación por intervalo.
+     */
+    @Scheduled(fixedDelayString = "${app.productos.cache.sync-interval:1000}")
+    public void sincronizar() {
+        LocalDateTime inicio = LocalDateTime.now();
+        Object[] actual = productoRepository.findFirmaCatalogo().get(0);
+        Object[] anterior = firma;
+        if (anterior != null && !Arrays.equals(anterior, actual)) {
+            long antes = ((Number) anterior[0]).longValue();
+            long ahora = ((Number) actual[0]).longValue();
+            if (ahora < antes) {
+                // Hubo bajas: los productos borrados no aparecen en ninguna consulta por fecha
+                descartarTodo();
+            } else {
+                descartar(productoRepository.findIdsActualizadosDesde(
+                        ultimaSync.minus(Duration.ofMillis(margenSync))));
+            }
+            invalidacionesRemotas.incrementAndGet();
+        }
+        firma = actual;
+        ultimaSync = inicio;
+    }
+
+    /**
+     * Descarta los productos indicados y las listas al confirmarse la transacción en curso
+     * (o de inmediato si no hay ninguna). Las listas incluyen el stock de todos los productos.
+     */
+    public void invalidar(Collection<Long> ids) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    descartar(ids);
+                }
+            });
+        } else {
+            descartar(ids);
+        }
+    }
+
+    public Map<String, Object> getEstadisticas() {
+        long h = hits.get();
+        long m = misses.get();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("tamano", porId.size());
+        stats.put("tamanoMaximo", porId.getMaxSize());
+        stats.put("aciertos", h);
+        stats.put("fallos", m);
+        stats.put("desalojos", porId.getDesalojos());
+        stats.put("invalidaciones", invalidaciones.get());
+        stats.put("invalidacionesPorSincronizacion", invalidacionesRemotas.get());
+        stats.put("tasaAciertos", h + m == 0 ? 0.0 : (double) h / (h + m));
+        return stats;
+    }
+
+    private void descartar(Collection<Long> ids) {
+        generacion.incrementAndGet();
+        ids.forEach(porId::remove);
+        activos = null;
+        conStock = null;
+        invalidaciones.incrementAndGet();
+    }
+
+    private void descartarTodo() {
+        generacion.incrementAndGet();
+        porId.clear();
+        activos = null;
+        conStock = null;
+        invalidaciones.incrementAndGet();
+    }
+
+    private void guardar(long leida, Entrada<List<Producto>> entrada, boolean esActivos) {
+        if (generacion.get() != leida) {
+            return;
+        }
+        if (esActivos) {
+            activos = entrada;
+        } else {
+            conStock = entrada;
+        }
+        if (generacion.get() != leida) {
+            if (esActivos && activos == entrada) {
+                activos = null;
+            } else if (!esActivos && conStock == entrada) {
+                conStock = null;
+            }
+        }
+    }
+
+    private boolean vigente(Entrada<?> entrada) {
+        if (entrada != null && entrada.expiresAt() > System.currentTimeMillis()) {
+            hits.incrementAndGet();
+            return true;
+        }
+        misses.incrementAndGet();
+        return false;
+    }
+
+    private <T> Entrada<T> nueva(T valor) {
+        return new Entrada<>(valor, System.currentTimeMillis() + ttl);
+    }
+
+    private record Entrada<T>(T valor, long expiresAt) {
+    }
+}
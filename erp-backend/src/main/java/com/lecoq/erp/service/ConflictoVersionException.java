@@ -0,0 +1,34 @@
+package com.lecoq.erp.service;
+
+import lombok.Getter;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Modificación rechazada porque el registro cambió desde que se leyó. {@code versionActual}
+ * es la versión vigente en la base de datos ({@code null} si el registro ya no existe); el
+ * cliente debe releer el recurso y repetir la operación sobre esa versión.
+ */
+@Getter
+public class ConflictoVersionException extends RuntimeException {
+
+    private final String entidad;
+    private final Long id;
+    private final Long versionActual;
+
+    public ConflictoVersionException(String entidad, Long id, Long versionActual) {
+        super(entidad + " " + id + " fue modificado por otra operación, recargue e intente de nuevo");
+        this.entidad = entidad;
+        this.id = id;
+        this.versionActual = versionActual;
+    }
+
+    public Map<String, Object> getDetalle() {
+        Map<String, Object> detalle = new LinkedHashMap<>();
+        detalle.put("entidad", entidad);
+        detalle.put("id", id);
+        detalle.put("versionActual", versionActual);
+        return detalle;
+    }
+}
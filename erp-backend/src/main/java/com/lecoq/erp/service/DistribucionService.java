@@ -1,11 +1,16 @@
 package com.lecoq.erp.service;
 
+import com.lecoq.erp.dto.CursorPaginacion;
+import com.lecoq.erp.dto.DistribucionResumen;
 import com.lecoq.erp.entity.Distribucion;
 import com.lecoq.erp.entity.Pedido;
 import com.lecoq.erp.entity.Usuario;
 import com.lecoq.erp.repository.DistribucionRepository;
 import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
@@ -20,6 +25,9 @@ public class DistribucionService {
     private final DistribucionRepository distribucionRepository;
     private final PedidoService pedidoService;
     private final UsuarioService usuarioService;
+    private final ReintentoOptimistaService reintentoOptimistaService;
+    private final BusquedaTextoService busquedaTextoService;
+    private final TableroDistribucionService tableroDistribucionService;
 
     public List<Distribucion> findAll() {
         return distribucionRepository.findAll();
@@ -41,8 +49,9 @@ public class DistribucionService {
         return distribucionRepository.findByEstado(estado);
     }
 
-    public List<Distribucion> findByChoferNombre(String choferNombre) {
-        return distribucionRepository.findByChoferNombreContainingIgnoreCase(choferNombre);
+    public List<Distribucion> findByChoferNombre(String choferNombre, int limite) {
+        List<Long> ids = busquedaTextoService.buscar(BusquedaTextoService.Campo.CHOFER, choferNombre, limite);
+        return BusquedaTextoService.enOrden(ids, distribucionRepository.findAllById(ids), Distribucion::getId);
     }
 
     public List<Distribucion> findByVehiculoPlaca(String vehiculoPlaca) {
@@ -53,6 +62,23 @@ public class DistribucionService {
         return distribucionRepository.findByUsuarioId(usuarioId);
     }
 
+    /**
+     * Página de resúmenes de distribuciones ordenada por fecha e id descendentes. {@code usuarioId} nulo devuelve
+     * los de todos los usuarios y {@code cursor} nulo devuelve la primera página.
+     */
+    @Transactional(readOnly = true)
+    public Slice<DistribucionResumen> findPagina(Long usuarioId, CursorPaginacion cursor, int size) {
+        PageRequest pagina = PageRequest.of(0, size);
+        if (usuarioId == null) {
+            return cursor == null
+                    ? distribucionRepository.findPrimeraPagina(pagina)
+                    : distribucionRepository.findPaginaDespuesDe(cursor.fecha(), cursor.id(), pagina);
+        }
+        return cursor == null
+                ? distribucionRepository.findPrimeraPaginaByUsuarioId(usuarioId, pagina)
+                : distribucionRepository.findPaginaByUsuarioIdDespuesDe(usuarioId, cursor.fecha(), cursor.id(), pagina);
+    }
+
     public List<Distribucion> findByFechaSalidaBetween(LocalDateTime fechaInicio, LocalDateTime fechaFin) {
         return distribucionRepository.findByFechaSalidaBetween(fechaInicio, fechaFin);
     }
@@ -84,12 +110,21 @@ public class DistribucionService {
         // Cambiar estado del pedido a EN_PREPARACION
         pedidoService.cambiarEstado(pedidoId, Pedido.EstadoPedido.EN_PREPARACION);
 
-        return distribucionRepository.save(distribucion);
+        Distribucion nueva = distribucionRepository.save(distribucion);
+        busquedaTextoService.indexar(BusquedaTextoService.Campo.CHOFER, nueva.getId(), nueva.getChoferNombre());
+        tableroDistribucionService.creada(nueva);
+        return nueva;
     }
 
+    @Transactional(propagation = Propagation.SUPPORTS)
     public Distribucion update(Long id, Distribucion distribucion) {
+        return reintentoOptimistaService.sinReintento(Distribucion.class, id, () -> actualizar(id, distribucion));
+    }
+
+    private Distribucion actualizar(Long id, Distribucion distribucion) {
         Distribucion existente = distribucionRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Distribución no encontrada"));
+        reintentoOptimistaService.verificarVersion(Distribucion.class, id, distribucion.getVersion(), existente.getVersion());
 
         existente.setChoferNombre(distribucion.getChoferNombre());
         existente.setChoferTelefono(distribucion.getChoferTelefono());
@@ -99,10 +134,20 @@ public class DistribucionService {
         existente.setDireccionEntrega(distribucion.getDireccionEntrega());
         existente.setObservaciones(distribucion.getObservaciones());
 
+        busquedaTextoService.indexar(BusquedaTextoService.Campo.CHOFER, id, existente.getChoferNombre());
         return distribucionRepository.save(existente);
     }
 
+    /**
+     * El cambio de la distribución y el de su pedido se confirman juntos; un conflicto en
+     * cualquiera de los dos repite ambos sobre el estado vigente.
+     */
+    @Transactional(propagation = Propagation.SUPPORTS)
     public Distribucion cambiarEstado(Long id, Distribucion.EstadoDistribucion nuevoEstado) {
+        return reintentoOptimistaService.conReintento(Distribucion.class, id, () -> aplicarCambioEstado(id, nuevoEstado));
+    }
+
+    private Distribucion aplicarCambioEstado(Long id, Distribucion.EstadoDistribucion nuevoEstado) {
         Distribucion distribucion = distribucionRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Distribución no encontrada"));
 
@@ -128,7 +173,9 @@ public class DistribucionService {
                 break;
         }
 
-        return distribucionRepository.save(distribucion);
+        Distribucion guardada = distribucionRepository.save(distribucion);
+        tableroDistribucionService.estadoCambiado(guardada);
+        return guardada;
     }
 
     public void deleteById(Long id) {
@@ -141,16 +188,20 @@ public class DistribucionService {
         }
 
         distribucionRepository.deleteById(id);
+        busquedaTextoService.eliminar(BusquedaTextoService.Campo.CHOFER, id);
     }
 
+    @Transactional(propagation = Propagation.SUPPORTS)
     public void marcarComoEntregado(Long id) {
         cambiarEstado(id, Distribucion.EstadoDistribucion.ENTREGADO);
     }
 
+    @Transactional(propagation = Propagation.SUPPORTS)
     public void marcarComoEnRuta(Long id) {
         cambiarEstado(id, Distribucion.EstadoDistribucion.EN_RUTA);
     }
 
+    @Transactional(propagation = Propagation.SUPPORTS)
     public void marcarComoFallido(Long id) {
         cambiarEstado(id, Distribucion.EstadoDistribucion.FALLIDO);
     }
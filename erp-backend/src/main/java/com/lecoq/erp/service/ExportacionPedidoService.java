@@ -0,0 +1,148 @@
+package com.lecoq.erp.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.lecoq.erp.entity.DetallePedido;
+import com.lecoq.erp.entity.Pedido;
+import com.lecoq.erp.repository.DetallePedidoRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Exportación de pedidos con sus líneas escribiendo directo en la respuesta. Se lee con un
+ * cursor de solo avance y se vacía el contexto de persistencia cada {@link #FILAS_POR_CLEAR}
+ * filas, así la memoria no depende de la cantidad de pedidos exportados.
+ */
+@Service
+@RequiredArgsConstructor
+public class ExportacionPedidoService {
+
+    static final int FILAS_POR_CLEAR = 1000;
+
+    private static final String CABECERA_CSV = "numero_pedido,fecha_pedido,estado,cliente_nombre,cliente_ruc," +
+            "total,usuario,producto_id,producto_nombre,cantidad,precio_unitario,subtotal";
+
+    private final DetallePedidoRepository detallePedidoRepository;
+    private final ObjectMapper objectMapper;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    public enum Formato {
+        CSV, NDJSON
+    }
+
+    @Transactional(readOnly = true)
+    public void exportar(LocalDateTime fechaInicio, LocalDateTime fechaFin, Formato formato, OutputStream salida) {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(salida, StandardCharsets.UTF_8));
+        try (Stream<DetallePedido> lineas = detallePedidoRepository.streamByFechaPedidoBetween(fechaInicio, fechaFin)) {
+            if (formato == Formato.CSV) {
+                escribirCsv(lineas.iterator(), writer);
+            } else {
+                escribirNdjson(lineas.iterator(), writer);
+            }
+            writer.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void escribirCsv(Iterator<DetallePedido> lineas, Writer writer) throws IOException {
+        writer.write(CABECERA_CSV);
+        writer.write('\n');
+        int filas = 0;
+        while (lineas.hasNext()) {
+            DetallePedido detalle = lineas.next();
+            Pedido pedido = detalle.getPedido();
+            writer.write(String.join(",",
+                    csv(pedido.getNumeroPedido()),
+                    csv(pedido.getFechaPedido()),
+                    csv(pedido.getEstado()),
+                    csv(pedido.getClienteNombre()),
+                    csv(pedido.getClienteRuc()),
+                    csv(pedido.getTotal()),
+                    csv(pedido.getUsuario().getNombreCompleto()),
+                    csv(detalle.getProducto().getId()),
+                    csv(detalle.getProducto().getNombre()),
+                    csv(detalle.getCantidad()),
+                    csv(detalle.getPrecioUnitario()),
+                    csv(detalle.getSubtotal())));
+            writer.write('\n');
+            if (++filas % FILAS_POR_CLEAR == 0) {
+                entityManager.clear();
+            }
+        }
+    }
+
+    private void escribirNdjson(Iterator<DetallePedido> lineas, Writer writer) throws IOException {
+        // Las filas llegan ordenadas por pedido: cada pedido se escribe al aparecer el siguiente
+        Long pedidoActual = null;
+        Map<String, Object> registro = null;
+        List<Map<String, Object>> detalles = null;
+        int filas = 0;
+        while (lineas.hasNext()) {
+            DetallePedido detalle = lineas.next();
+            Pedido pedido = detalle.getPedido();
+            if (!pedido.getId().equals(pedidoActual)) {
+                escribirJson(registro, writer);
+                pedidoActual = pedido.getId();
+                detalles = new ArrayList<>();
+                registro = new LinkedHashMap<>();
+                registro.put("numeroPedido", pedido.getNumeroPedido());
+                registro.put("fechaPedido", pedido.getFechaPedido());
+                registro.put("estado", pedido.getEstado());
+                registro.put("clienteNombre", pedido.getClienteNombre());
+                registro.put("clienteRuc", pedido.getClienteRuc());
+                registro.put("total", pedido.getTotal());
+                registro.put("usuario", pedido.getUsuario().getNombreCompleto());
+                registro.put("detalles", detalles);
+            }
+            Map<String, Object> linea = new LinkedHashMap<>();
+            linea.put("productoId", detalle.getProducto().getId());
+            linea.put("productoNombre", detalle.getProducto().getNombre());
+            linea.put("cantidad", detalle.getCantidad());
+            linea.put("precioUnitario", detalle.getPrecioUnitario());
+            linea.put("subtotal", detalle.getSubtotal());
+            detalles.add(linea);
+            if (++filas % FILAS_POR_CLEAR == 0) {
+                entityManager.clear();
+            }
+        }
+        escribirJson(registro, writer);
+    }
+
+    private void escribirJson(Map<String, Object> registro, Writer writer) throws IOException {
+        if (registro != null) {
+            writer.write(objectMapper.writeValueAsString(registro));
+            writer.write('\n');
+        }
+    }
+
+    private static String csv(Object valor) {
+        if (valor == null) {
+            return "";
+        }
+        String texto = valor.toString();
+        if (texto.indexOf(',') < 0 && texto.indexOf('"') < 0 && texto.indexOf('\n') < 0 && texto.indexOf('\r') < 0) {
+            return texto;
+        }
+        return '"' + texto.replace("\"", "\"\"") + '"';
+    }
+}
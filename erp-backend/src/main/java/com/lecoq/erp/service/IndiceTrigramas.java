@@ -0,0 +1,153 @@
+package com.lecoq.erp.service;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * Índice invertido de trigramas sobre textos cortos (nombres) identificados por id. Los textos se
+ * comparan sin tildes ni mayúsculas, así que "jose" encuentra "José Peña". Una búsqueda devuelve
+ * los ids cuyo texto contiene la consulta, igual que {@code LIKE '%x%'}, ordenados por relevancia:
+ * coincidencia exacta, prefijo, inicio de palabra y luego cualquier posición; a igual rango, el
+ * texto más corto primero. Las lecturas no bloquean; las escrituras se serializan.
+ */
+public class IndiceTrigramas {
+
+    private static final Pattern DIACRITICOS = Pattern.compile("\\p{M}+");
+    private static final Pattern ESPACIOS = Pattern.compile("\\s+");
+
+    private static final Comparator<Coincidencia> RELEVANCIA = Comparator
+            .comparingInt(Coincidencia::rango)
+            .thenComparingInt(c -> c.texto().length())
+            .thenComparing(Coincidencia::texto)
+            .thenComparing(Coincidencia::id);
+
+    private final Map<String, Set<Long>> trigramas = new ConcurrentHashMap<>();
+    private final Map<Long, String> textos = new ConcurrentHashMap<>();
+
+    public synchronized void indexar(Long id, String texto) {
+        if (texto == null) {
+            eliminar(id);
+            return;
+        }
+        String normalizado = normalizar(texto);
+        String anterior = textos.put(id, normalizado);
+        if (normalizado.equals(anterior)) {
+            return;
+        }
+        if (anterior != null) {
+            quitar(id, anterior);
+        }
+        for (String trigrama : trigramas(normalizado)) {
+            trigramas.computeIfAbsent(trigrama, k -> ConcurrentHashMap.newKeySet()).add(id);
+        }
+    }
+
+    public synchronized void eliminar(Long id) {
+        String anterior = textos.remove(id);
+        if (anterior != null) {
+            quitar(id, anterior);
+        }
+    }
+
+    public List<Long> buscar(String consulta, int limite) {
+        String normalizada = normalizar(consulta);
+        if (normalizada.isEmpty() || limite <= 0) {
+            return List.of();
+        }
+
+        // Basta recorrer la lista más corta: cada candidato se verifica contra su texto
+        Collection<Long> candidatos;
+        if (normalizada.length() < 3) {
+            candidatos = textos.keySet();
+        } else {
+            Set<Long> menor = null;
+            for (String trigrama : trigramas(normalizada)) {
+                Set<Long> ids = trigramas.get(trigrama);
+                if (ids == null) {
+                    return List.of();
+                }
+                if (menor == null || ids.size() < menor.size()) {
+                    menor = ids;
+                }
+            }
+            candidatos = menor;
+        }
+
+        // Montículo acotado con el peor resultado en la raíz
+        PriorityQueue<Coincidencia> mejores = new PriorityQueue<>(limite + 1, RELEVANCIA.reversed());
+        for (Long id : candidatos) {
+            String texto = textos.get(id);
+            if (texto == null) {
+                continue;
+            }
+            int posicion = texto.indexOf(normalizada);
+            if (posicion < 0) {
+                continue;
+            }
+            mejores.add(new Coincidencia(id, texto, rango(texto, normalizada, posicion)));
+            if (mejores.size() > limite) {
+                mejores.poll();
+            }
+        }
+
+        List<Coincidencia> ordenadas = new ArrayList<>(mejores);
+        ordenadas.sort(RELEVANCIA);
+        return ordenadas.stream().map(Coincidencia::id).toList();
+    }
+
+    public int documentos() {
+        return textos.size();
+    }
+
+    public int trigramasDistintos() {
+        return trigramas.size();
+    }
+
+    static String normalizar(String texto) {
+        if (texto == null) {
+            return "";
+        }
+        String sinTildes = DIACRITICOS.matcher(Normalizer.normalize(texto, Normalizer.Form.NFD)).replaceAll("");
+        return ESPACIOS.matcher(sinTildes.toLowerCase(Locale.ROOT).trim()).replaceAll(" ");
+    }
+
+    private void quitar(Long id, String texto) {
+        for (String trigrama : trigramas(texto)) {
+            Set<Long> ids = trigramas.get(trigrama);
+            if (ids != null) {
+                ids.remove(id);
+                if (ids.isEmpty()) {
+                    trigramas.remove(trigrama, ids);
+                }
+            }
+        }
+    }
+
+    private static Set<String> trigramas(String texto) {
+        Set<String> resultado = new HashSet<>();
+        for (int i = 0; i + 3 <= texto.length(); i++) {
+            resultado.add(texto.substring(i, i + 3));
+        }
+        return resultado;
+    }
+
+    private static int rango(String texto, String consulta, int posicion) {
+        if (posicion == 0) {
+            return texto.length() == consulta.length() ? 0 : 1;
+        }
+        return texto.contains(" " + consulta) ? 2 : 3;
+    }
+
+    private record Coincidencia(Long id, String texto, int rango) {
+    }
+}
@@ -0,0 +1,268 @@
+package com.lecoq.erp.service;
+
+import com.lecoq.erp.entity.MovimientoStock;
+import com.lecoq.erp.entity.Producto;
+import com.lecoq.erp.entity.SnapshotStock;
+import com.lecoq.erp.repository.MovimientoStockRepository;
+import com.lecoq.erp.repository.ProductoRepository;
+import com.lecoq.erp.repository.SnapshotStockRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * Kardex de movimientos de stock. Los movimientos de una transacción se acumulan en memoria y
+ * se insertan justo antes del commit, todos en un único batch JDBC sobre la misma conexión: un
+ * round trip por transacción sin importar cuántos ajustes haga, y el kardex y
+ * {@code productos.stock} se confirman o se revierten juntos. Los snapshots
+ * periódicos permiten calcular el stock en una fecha leyendo un snapshot más los movimientos
+ * posteriores. Los toma una sola instancia a la vez (bloqueo con nombre de MySQL) y solo hasta
+ * movimientos confirmados: un id AUTO_INCREMENT menor que la marca de otra transacción aún
+ * abierta no queda fuera para siempre.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class KardexService {
+
+    private static final String BLOQUEO_SNAPSHOTS = "erp-kardex-snapshots";
+    private static final String INSERT_MOVIMIENTO =
+            "INSERT INTO movimientos_stock (producto_id, cantidad, tipo, referencia, fecha) VALUES (?, ?, ?, ?, ?)";
+
+    private final MovimientoStockRepository movimientoStockRepository;
+    private final SnapshotStockRepository snapshotStockRepository;
+    private final ProductoRepository productoRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    // Antigüedad mínima de los movimientos incluidos en un snapshot (ms)
+    @Value("${app.kardex.snapshot-margen:60000}")
+    private long margenSnapshot;
+
+    public void registrar(Long productoId, int cantidad, MovimientoStock.TipoMovimiento tipo, String referencia) {
+        registrar(Map.of(productoId, cantidad), tipo, referencia);
+    }
+
+    public void registrar(Map<Long, Integer> deltas, MovimientoStock.TipoMovimiento tipo, String referencia) {
+        List<MovimientoStock> movimientos = new ArrayList<>(deltas.size());
+        agregarMovimientos(movimientos, deltas, tipo, referencia, LocalDateTime.now());
+        insertar(movimientos);
+    }
+
+    /**
+     * Movimientos de varios documentos, cada uno con su referencia, en un único batch.
+     */
+    public void registrar(Map<String, Map<Long, Integer>> deltasPorReferencia, MovimientoStock.TipoMovimiento tipo) {
+        List<MovimientoStock> movimientos = new ArrayList<>();
+        LocalDateTime fecha = LocalDateTime.now();
+        deltasPorReferencia.forEach((referencia, deltas) ->
+                agregarMovimientos(movimientos, deltas, tipo, referencia, fecha));
+        insertar(movimientos);
+    }
+
+    /**
+     * Crea el snapshot base de los productos que aún no tienen uno, de modo que el stock
+     * existente antes del kardex quede contabilizado.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void inicializarSnapshots() {
+        conBloqueo(() -> transactionTemplate.executeWithoutResult(status -> crearSnapshotsBase()));
+    }
+
+    /**
+     * Acumula en un snapshot por producto los movimientos desde el último snapshot. La marca es el
+     * último movimiento con al menos {@code app.kardex.snapshot-margen} de antigüedad, y la suma se
+     * lee con bloqueo compartido en READ COMMITTED: espera a las transacciones que aún tienen
+     * movimientos sin confirmar dentro del rango, sin bloquear los huecos donde se insertan los nuevos.
+     */
+    @Scheduled(cron = "${app.kardex.snapshot-cron:0 0 * * * *}")
+    public void tomarSnapshots() {
+        TransactionTemplate leidoConfirmado = new TransactionTemplate(transactionTemplate.getTransactionManager());
+        leidoConfirmado.setIsolationLevel(TransactionDefinition.ISOLATION_READ_COMMITTED);
+        if (!conBloqueo(() -> leidoConfirmado.executeWithoutResult(status -> acumularSnapshots()))) {
+            log.debug("Snapshots de stock en curso en otra instancia");
+        }
+    }
+
+    private void crearSnapshotsBase() {
+        Set<Long> conSnapshot = new HashSet<>();
+        snapshotStockRepository.findUltimos().forEach(s -> conSnapshot.add(s.getProductoId()));
+
+        Map<Long, Long> movimientos = sumarPorProducto(0L, movimientoStockRepository.findMaxId());
+        List<SnapshotStock> base = new ArrayList<>();
+        for (Producto producto : productoRepository.findAll()) {
+            if (conSnapshot.contains(producto.getId())) {
+                continue;
+            }
+            long stockBase = producto.getStock() - movimientos.getOrDefault(producto.getId(), 0L);
+            LocalDateTime fecha = producto.getFechaCreacion() != null ? producto.getFechaCreacion() : LocalDateTime.now();
+            base.add(new SnapshotStock(null, producto.getId(), (int) stockBase, 0L, fecha));
+        }
+        snapshotStockRepository.saveAll(base);
+        if (!base.isEmpty()) {
+            log.info("Snapshots base de stock creados: {}", base.size());
+        }
+    }
+
+    private void acumularSnapshots() {
+        long desde = snapshotStockRepository.findMaxUltimoMovimientoId();
+        LocalDateTime corte = LocalDateTime.now().minus(Duration.ofMillis(margenSnapshot));
+        long hasta = movimientoStockRepository.findUltimoIdHasta(desde, corte);
+        if (hasta <= desde) {
+            return;
+        }
+
+        Map<Long, SnapshotStock> ultimos = new HashMap<>();
+        snapshotStockRepository.findUltimos().forEach(s -> ultimos.put(s.getProductoId(), s));
+
+        LocalDateTime ahora = LocalDateTime.now();
+        List<SnapshotStock> nuevos = new ArrayList<>();
+        Map<Long, Long> sumas = new HashMap<>();
+        for (Object[] fila : movimientoStockRepository.sumCantidadPorProductoConfirmados(desde, hasta)) {
+            sumas.put(((Number) fila[0]).longValue(), ((Number) fila[1]).longValue());
+        }
+        sumas.forEach((productoId, suma) -> {
+            SnapshotStock ultimo = ultimos.get(productoId);
+            long stock = (ultimo != null ? ultimo.getStock() : 0) + suma;
+            nuevos.add(new SnapshotStock(null, productoId, (int) stock, hasta, ahora));
+        });
+        snapshotStockRepository.saveAll(nuevos);
+        log.info("Snapshots de stock tomados: {} productos hasta el movimiento {}", nuevos.size(), hasta);
+    }
+
+    @Transactional(readOnly = true)
+    public int stockEn(Long productoId, LocalDateTime fecha) {
+        Optional<SnapshotStock> snapshot = snapshotStockRepository
+                .findFirstByProductoIdAndFechaLessThanEqualOrderByFechaDescIdDesc(productoId, fecha);
+        long base = snapshot.map(SnapshotStock::getStock).orElse(0);
+        long desdeId = snapshot.map(SnapshotStock::getUltimoMovimientoId).orElse(0L);
+        return (int) (base + movimientoStockRepository.sumCantidadDesde(productoId, desdeId, fecha));
+    }
+
+    @Transactional(readOnly = true)
+    public Page<MovimientoStock> historial(Long productoId, LocalDateTime desde, LocalDateTime hasta, Pageable pageable) {
+        return movimientoStockRepository.findHistorial(productoId, desde, hasta, pageable);
+    }
+
+    private Map<Long, Long> sumarPorProducto(long desdeId, long hastaId) {
+        Map<Long, Long> sumas = new HashMap<>();
+        for (Object[] fila : movimientoStockRepository.sumCantidadPorProducto(desdeId, hastaId)) {
+            sumas.put((Long) fila[0], ((Number) fila[1]).longValue());
+        }
+        return sumas;
+    }
+
+    /**
+     * Ejecuta {@code tarea} solo si esta instancia obtiene el bloqueo. El bloqueo se toma en una
+     * conexión propia, fuera de la transacción de la tarea: se libera después del commit, y si la
+     * instancia cae, al cerrarse la conexión.
+     */
+    private boolean conBloqueo(Runnable tarea) {
+        Boolean ejecutada = jdbcTemplate.execute((ConnectionCallback<Boolean>) con -> {
+            try (PreparedStatement ps = con.prepareStatement("SELECT GET_LOCK(?, 0)")) {
+                ps.setString(1, BLOQUEO_SNAPSHOTS);
+                try (ResultSet rs = ps.executeQuery()) {
+                    if (!rs.next() || rs.getInt(1) != 1) {
+                        return false;
+                    }
+                }
+            }
+            try {
+                tarea.run();
+                return true;
+            } finally {
+                try (PreparedStatement ps = con.prepareStatement("SELECT RELEASE_LOCK(?)")) {
+                    ps.setString(1, BLOQUEO_SNAPSHOTS);
+                    ps.executeQuery();
+                }
+            }
+        });
+        return Boolean.TRUE.equals(ejecutada);
+    }
+
+    private static void agregarMovimientos(List<MovimientoStock> movimientos, Map<Long, Integer> deltas,
+                                           MovimientoStock.TipoMovimiento tipo, String referencia, LocalDateTime fecha) {
+        deltas.forEach((productoId, cantidad) -> {
+            if (cantidad != 0) {
+                movimientos.add(new MovimientoStock(null, productoId, cantidad, tipo, referencia, fecha));
+            }
+        });
+    }
+
+    /**
+     * Dentro de una transacción, agrega los movimientos al lote que se inserta en
+     * {@code beforeCommit}; sin transacción, los inserta de inmediato.
+     */
+    private void insertar(List<MovimientoStock> movimientos) {
+        if (movimientos.isEmpty()) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isActualTransactionActive()
+                || !TransactionSynchronizationManager.isSynchronizationActive()) {
+            insertarLote(movimientos);
+            return;
+        }
+        // Las sincronizaciones son de la transacción en curso: una REQUIRES_NEW tiene su propio lote
+        LotePendiente lote = TransactionSynchronizationManager.getSynchronizations().stream()
+                .filter(LotePendiente.class::isInstance)
+                .map(LotePendiente.class::cast)
+                .filter(pendiente -> pendiente.servicio == this)
+                .findFirst()
+                .orElseGet(() -> {
+                    LotePendiente nuevo = new LotePendiente(this);
+                    TransactionSynchronizationManager.registerSynchronization(nuevo);
+                    return nuevo;
+                });
+        lote.movimientos.addAll(movimientos);
+    }
+
+    // Usa la conexión de la transacción en curso: si esta se revierte, los movimientos también
+    private void insertarLote(List<MovimientoStock> movimientos) {
+        jdbcTemplate.batchUpdate(INSERT_MOVIMIENTO, movimientos, movimientos.size(), (ps, m) -> {
+            ps.setLong(1, m.getProductoId());
+            ps.setInt(2, m.getCantidad());
+            ps.setString(3, m.getTipo().name());
+            ps.setString(4, m.getReferencia());
+            ps.setTimestamp(5, Timestamp.valueOf(m.getFecha()));
+        });
+    }
+
+    // Clase y no record: se guarda en un Set de sincronizaciones y su lista cambia después
+    private static final class LotePendiente implements TransactionSynchronization {
+
+        private final KardexService servicio;
+        private final List<MovimientoStock> movimientos = new ArrayList<>();
+
+        private LotePendiente(KardexService servicio) {
+            this.servicio = servicio;
+        }
+
+        @Override
+        public void beforeCommit(boolean readOnly) {
+            if (!movimientos.isEmpty()) {
+                servicio.insertarLote(movimientos);
+                movimientos.clear();
+            }
+        }
+    }
+}
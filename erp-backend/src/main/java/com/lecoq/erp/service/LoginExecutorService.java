@@ -0,0 +1,133 @@
+package com.lecoq.erp.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.AuthenticationException;
+import org.springframework.stereotype.Service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Ejecuta la verificación BCrypt del login en un pool acotado, separado de los hilos de Tomcat.
+ * Si la cola está llena el intento se rechaza de inmediato en lugar de encolarse sin límite.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class LoginExecutorService {
+
+    private final AuthenticationManager authenticationManager;
+
+    @Value("${app.auth.executor.threads:0}")
+    private int threads;
+
+    @Value("${app.auth.executor.queue-capacity:50}")
+    private int queueCapacity;
+
+    @Value("${app.auth.executor.timeout:10000}")
+    private long timeout;
+
+    @Value("${app.auth.executor.retry-after:2}")
+    private long retryAfterSeconds;
+
+    private ThreadPoolExecutor executor;
+
+    private final AtomicLong verificaciones = new AtomicLong();
+    private final AtomicLong rechazos = new AtomicLong();
+    private final AtomicLong tiempoTotalNanos = new AtomicLong();
+    private final AtomicLong tiempoMaximoNanos = new AtomicLong();
+    private final AtomicLong esperaTotalNanos = new AtomicLong();
+
+    @PostConstruct
+    void init() {
+        int poolSize = threads > 0 ? threads : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        AtomicInteger contador = new AtomicInteger();
+        executor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                r -> {
+                    Thread t = new Thread(r, "login-bcrypt-" + contador.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        log.info("Pool de verificación de login: {} hilos, cola de {}", poolSize, queueCapacity);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * @throws LoginRechazadoException si el pool está saturado o la verificación excede el timeout
+     * @throws AuthenticationException si las credenciales no son válidas
+     */
+    public Authentication authenticate(String username, String password) {
+        long encolado = System.nanoTime();
+        Future<Authentication> future;
+        try {
+            future = executor.submit(() -> {
+                long inicio = System.nanoTime();
+                esperaTotalNanos.addAndGet(inicio - encolado);
+                try {
+                    return authenticationManager.authenticate(
+                            new UsernamePasswordAuthenticationToken(username, password));
+                } finally {
+                    registrarTiempo(System.nanoTime() - inicio);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rechazos.incrementAndGet();
+            throw new LoginRechazadoException("Servicio de autenticación saturado, intente más tarde", retryAfterSeconds);
+        }
+
+        try {
+            return future.get(timeout, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            rechazos.incrementAndGet();
+            throw new LoginRechazadoException("Tiempo de autenticación excedido, intente más tarde", retryAfterSeconds);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            future.cancel(true);
+            throw new RuntimeException("Autenticación interrumpida");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new RuntimeException(cause);
+        }
+    }
+
+    public Map<String, Object> getEstadisticas() {
+        long total = verificaciones.get();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("hilos", executor.getMaximumPoolSize());
+        stats.put("activos", executor.getActiveCount());
+        stats.put("enCola", executor.getQueue().size());
+        stats.put("capacidadCola", queueCapacity);
+        stats.put("verificaciones", total);
+        stats.put("rechazos", rechazos.get());
+        stats.put("latenciaPromedioMs", total == 0 ? 0.0 : tiempoTotalNanos.get() / 1_000_000.0 / total);
+        stats.put("latenciaMaximaMs", tiempoMaximoNanos.get() / 1_000_000.0);
+        stats.put("esperaPromedioMs", total == 0 ? 0.0 : esperaTotalNanos.get() / 1_000_000.0 / total);
+        return stats;
+    }
+
+    private void registrarTiempo(long nanos) {
+        verificaciones.incrementAndGet();
+        tiempoTotalNanos.addAndGet(nanos);
+        tiempoMaximoNanos.accumulateAndGet(nanos, Math::max);
+    }
+}
@@ -0,0 +1,18 @@
+package com.lecoq.erp.service;
+
+import lombok.Getter;
+
+/**
+ * Intento de login rechazado sin verificar la contraseña, por límite de intentos o por
+ * saturación del pool de verificación. El cliente debe reintentar pasados {@code retryAfterSeconds}.
+ */
+@Getter
+public class LoginRechazadoException extends RuntimeException {
+
+    private final long retryAfterSeconds;
+
+    public LoginRechazadoException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+}
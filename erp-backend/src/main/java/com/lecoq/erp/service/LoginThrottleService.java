@@ -0,0 +1,156 @@
+package com.lecoq.erp.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Limita los intentos de login con un token bucket por IP, que se cobra en cada intento, y otro
+ * por username, que solo se cobra cuando la contraseña no coincide: quien conoce un username no
+ * puede bloquear la cuenta con intentos que no sean fallidos, y un login exitoso no gasta nada.
+ * La IP es la del cliente resuelta a partir de los encabezados de los proxies de confianza
+ * ({@code server.forward-headers-strategy}); el bucket de IP está dimensionado para que toda una
+ * planta detrás de un mismo NAT pueda entrar a la vez al inicio del turno. Los buckets
+ * llenos equivalen a no tener bucket y se purgan cada {@code app.auth.throttle.purge-interval},
+ * fuera del hilo de la petición: rotar usernames no convierte cada intento en un recorrido del mapa.
+ */
+@Service
+public class LoginThrottleService {
+
+    @Value("${app.auth.throttle.username.capacity:5}")
+    private int usernameCapacity;
+
+    @Value("${app.auth.throttle.username.per-minute:5}")
+    private int usernamePerMinute;
+
+    @Value("${app.auth.throttle.ip.capacity:1000}")
+    private int ipCapacity;
+
+    @Value("${app.auth.throttle.ip.per-minute:500}")
+    private int ipPerMinute;
+
+    private final Map<String, TokenBucket> usernameBuckets = new ConcurrentHashMap<>();
+    private final Map<String, TokenBucket> ipBuckets = new ConcurrentHashMap<>();
+    private final AtomicLong rechazos = new AtomicLong();
+    private final AtomicLong purgados = new AtomicLong();
+
+    /**
+     * Consume un intento de la IP y verifica, sin consumir, que el username no agotó sus fallos.
+     *
+     * @throws LoginRechazadoException si alguno de los dos superó su límite
+     */
+    public void checkIntento(String username, String ip) {
+        long esperaIp = consume(ipBuckets, ip, ipCapacity, ipPerMinute);
+        long esperaUsuario = esperaIp > 0 ? 0 : espera(usernameBuckets, clave(username));
+
+        long espera = Math.max(esperaIp, esperaUsuario);
+        if (espera > 0) {
+            rechazos.incrementAndGet();
+            throw new LoginRechazadoException("Demasiados intentos de login, intente más tarde", espera);
+        }
+    }
+
+    /**
+     * Cobra un intento fallido (credenciales inválidas) al username.
+     */
+    public void registrarFallo(String username) {
+        consume(usernameBuckets, clave(username), usernameCapacity, usernamePerMinute);
+    }
+
+    @Scheduled(fixedDelayString = "${app.auth.throttle.purge-interval:60000}")
+    public void purgar() {
+        int antes = usernameBuckets.size() + ipBuckets.size();
+        purgarLlenos(usernameBuckets);
+        purgarLlenos(ipBuckets);
+        purgados.addAndGet(antes - usernameBuckets.size() - ipBuckets.size());
+    }
+
+    public Map<String, Object> getEstadisticas() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("bucketsUsername", usernameBuckets.size());
+        stats.put("bucketsIp", ipBuckets.size());
+        stats.put("rechazos", rechazos.get());
+        stats.put("purgados", purgados.get());
+        return stats;
+    }
+
+    /**
+     * @return 0 si se consumió un token, o los segundos hasta que haya uno disponible
+     */
+    private long consume(Map<String, TokenBucket> buckets, String key, int capacity, int perMinute) {
+        // Dentro de compute: la purga no puede quitar el bucket entre la lectura y el consumo
+        long[] espera = new long[1];
+        buckets.compute(key, (k, bucket) -> {
+            TokenBucket actual = bucket != null ? bucket : new TokenBucket(capacity, perMinute);
+            espera[0] = actual.tryConsume(System.nanoTime());
+            return actual;
+        });
+        return espera[0];
+    }
+
+    // Sin bucket no hubo fallos recientes: no se crea uno por cada username consultado
+    private static long espera(Map<String, TokenBucket> buckets, String key) {
+        TokenBucket bucket = buckets.get(key);
+        return bucket == null ? 0 : bucket.espera(System.nanoTime());
+    }
+
+    private static String clave(String username) {
+        return username == null ? "" : username.toLowerCase(Locale.ROOT);
+    }
+
+    private static void purgarLlenos(Map<String, TokenBucket> buckets) {
+        for (String key : buckets.keySet()) {
+            buckets.computeIfPresent(key, (k, bucket) -> bucket.isFull(System.nanoTime()) ? null : bucket);
+        }
+    }
+
+    private static final class TokenBucket {
+
+        private final int capacity;
+        private final double tokensPerNano;
+        private double tokens;
+        private long lastRefill;
+
+        TokenBucket(int capacity, int perMinute) {
+            this.capacity = capacity;
+            this.tokensPerNano = perMinute / 60_000_000_000.0;
+            this.tokens = capacity;
+            this.lastRefill = System.nanoTime();
+        }
+
+        synchronized long tryConsume(long now) {
+            refill(now);
+            if (tokens >= 1) {
+                tokens -= 1;
+                return 0;
+            }
+            return segundosHastaUnToken();
+        }
+
+        private long segundosHastaUnToken() {
+            double nanosFaltantes = (1 - tokens) / tokensPerNano;
+            return Math.max(1, (long) Math.ceil(nanosFaltantes / 1_000_000_000.0));
+        }
+
+        synchronized long espera(long now) {
+            refill(now);
+            return tokens >= 1 ? 0 : segundosHastaUnToken();
+        }
+
+        synchronized boolean isFull(long now) {
+            refill(now);
+            return tokens >= capacity;
+        }
+
+        private void refill(long now) {
+            tokens = Math.min(capacity, tokens + (now - lastRefill) * tokensPerNano);
+            lastRefill = now;
+        }
+    }
+}
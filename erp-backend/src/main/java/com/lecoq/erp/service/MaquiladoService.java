@@ -1,19 +1,27 @@
 package com.lecoq.erp.service;
 
+import com.lecoq.erp.dto.CursorPaginacion;
+import com.lecoq.erp.dto.MaquiladoResumen;
 import com.lecoq.erp.entity.DetalleMaquilado;
 import com.lecoq.erp.entity.Maquilado;
+import com.lecoq.erp.entity.MovimientoStock;
 import com.lecoq.erp.entity.Producto;
 import com.lecoq.erp.entity.Usuario;
 import com.lecoq.erp.repository.DetalleMaquiladoRepository;
 import com.lecoq.erp.repository.MaquiladoRepository;
 import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
@@ -24,13 +32,17 @@ public class MaquiladoService {
     private final DetalleMaquiladoRepository detalleMaquiladoRepository;
     private final ProductoService productoService;
     private final UsuarioService usuarioService;
+    private final NumeradorDocumentoService numeradorDocumentoService;
+    private final ReintentoOptimistaService reintentoOptimistaService;
+    private final BusquedaTextoService busquedaTextoService;
 
     public List<Maquilado> findAll() {
         return maquiladoRepository.findAll();
     }
 
+    @Transactional(readOnly = true)
     public Optional<Maquilado> findById(Long id) {
-        return maquiladoRepository.findById(id);
+        return maquiladoRepository.findDetalleById(id);
     }
 
     public Optional<Maquilado> findByNumeroOrden(String numeroOrden) {
@@ -45,14 +57,32 @@ public class MaquiladoService {
         return maquiladoRepository.findByEstado(estado);
     }
 
-    public List<Maquilado> findByProveedorNombre(String proveedorNombre) {
-        return maquiladoRepository.findByProveedorNombreContainingIgnoreCase(proveedorNombre);
+    public List<Maquilado> findByProveedorNombre(String proveedorNombre, int limite) {
+        List<Long> ids = busquedaTextoService.buscar(BusquedaTextoService.Campo.PROVEEDOR, proveedorNombre, limite);
+        return BusquedaTextoService.enOrden(ids, maquiladoRepository.findAllById(ids), Maquilado::getId);
     }
 
     public List<Maquilado> findByUsuarioId(Long usuarioId) {
         return maquiladoRepository.findByUsuarioId(usuarioId);
     }
 
+    /**
+     * Página de resúmenes de maquilados ordenada por fecha e id descendentes. {@code usuarioId} nulo devuelve
+     * los de todos los usuarios y {@code cursor} nulo devuelve la primera página.
+     */
+    @Transactional(readOnly = true)
+    public Slice<MaquiladoResumen> findPagina(Long usuarioId, CursorPaginacion cursor, int size) {
+        PageRequest pagina = PageRequest.of(0, size);
+        if (usuarioId == null) {
+            return cursor == null
+                    ? maquiladoRepository.findPrimeraPagina(pagina)
+                    : maquiladoRepository.findPaginaDespuesDe(cursor.fecha(), cursor.id(), pagina);
+        }
+        return cursor == null
+                ? maquiladoRepository.findPrimeraPaginaByUsuarioId(usuarioId, pagina)
+                : maquiladoRepository.findPaginaByUsuarioIdDespuesDe(usuarioId, cursor.fecha(), cursor.id(), pagina);
+    }
+
     public List<Maquilado> findByFechaOrdenBetween(LocalDateTime fechaInicio, LocalDateTime fechaFin) {
         return maquiladoRepository.findByFechaOrdenBetween(fechaInicio, fechaFin);
     }
@@ -66,13 +96,23 @@ public class MaquiladoService {
                 .orElseThrow(() -> new RuntimeException("Usuario no encontrado"));
 
         maquilado.setUsuario(usuario);
+        if (maquilado.getNumeroOrden() == null) {
+            maquilado.setNumeroOrden(numeradorDocumentoService.siguiente(NumeradorDocumentoService.MAQUILADO));
+        } else {
+            numeradorDocumentoService.validarNumeroExterno(NumeradorDocumentoService.MAQUILADO, maquilado.getNumeroOrden());
+        }
         
+        // Cargar todos los productos referenciados en una sola consulta
+        Map<Long, Producto> productos = productoService.findAllByIdAsMap(
+                maquilado.getDetalles().stream().map(d -> d.getProducto().getId()).toList());
+
         // Calcular costo total
         BigDecimal costoTotal = BigDecimal.ZERO;
         for (DetalleMaquilado detalle : maquilado.getDetalles()) {
-            // Obtener producto actualizado
-            Producto producto = productoService.findById(detalle.getProducto().getId())
-                    .orElseThrow(() -> new RuntimeException("Producto no encontrado"));
+            Producto producto = productos.get(detalle.getProducto().getId());
+            if (producto == null) {
+                throw new RuntimeException("Producto no encontrado");
+            }
             
             detalle.setProducto(producto);
             detalle.setMaquilado(maquilado);
@@ -83,12 +123,20 @@ public class MaquiladoService {
         }
         
         maquilado.setCostoTotal(costoTotal);
-        return maquiladoRepository.save(maquilado);
+        Maquilado nuevo = maquiladoRepository.save(maquilado);
+        busquedaTextoService.indexar(BusquedaTextoService.Campo.PROVEEDOR, nuevo.getId(), nuevo.getProveedorNombre());
+        return nuevo;
     }
 
+    @Transactional(propagation = Propagation.SUPPORTS)
     public Maquilado update(Long id, Maquilado maquilado) {
+        return reintentoOptimistaService.sinReintento(Maquilado.class, id, () -> actualizar(id, maquilado));
+    }
+
+    private Maquilado actualizar(Long id, Maquilado maquilado) {
         Maquilado existente = maquiladoRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Maquilado no encontrado"));
+        reintentoOptimistaService.verificarVersion(Maquilado.class, id, maquilado.getVersion(), existente.getVersion());
 
         existente.setProveedorNombre(maquilado.getProveedorNombre());
         existente.setProveedorRuc(maquilado.getProveedorRuc());
@@ -97,10 +145,16 @@ public class MaquiladoService {
         existente.setFechaEntregaEstimada(maquilado.getFechaEntregaEstimada());
         existente.setObservaciones(maquilado.getObservaciones());
 
+        busquedaTextoService.indexar(BusquedaTextoService.Campo.PROVEEDOR, id, existente.getProveedorNombre());
         return maquiladoRepository.save(existente);
     }
 
+    @Transactional(propagation = Propagation.SUPPORTS)
     public Maquilado cambiarEstado(Long id, Maquilado.EstadoMaquilado nuevoEstado) {
+        return reintentoOptimistaService.conReintento(Maquilado.class, id, () -> aplicarCambioEstado(id, nuevoEstado));
+    }
+
+    private Maquilado aplicarCambioEstado(Long id, Maquilado.EstadoMaquilado nuevoEstado) {
         Maquilado maquilado = maquiladoRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Maquilado no encontrado"));
 
@@ -114,7 +168,16 @@ public class MaquiladoService {
         return maquiladoRepository.save(maquilado);
     }
 
+    /**
+     * Se puede reintentar: cada intento vuelve a validar el estado, así que el stock solo se
+     * ingresa una vez aunque otra petición reciba el mismo maquilado en paralelo.
+     */
+    @Transactional(propagation = Propagation.SUPPORTS)
     public Maquilado recibirMaquilado(Long id) {
+        return reintentoOptimistaService.conReintento(Maquilado.class, id, () -> recibir(id));
+    }
+
+    private Maquilado recibir(Long id) {
         Maquilado maquilado = maquiladoRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Maquilado no encontrado"));
 
@@ -123,18 +186,25 @@ public class MaquiladoService {
         }
 
         // Actualizar stock de productos
-        for (DetalleMaquilado detalle : maquilado.getDetalles()) {
-            if (detalle.getCantidadRecibida() > 0) {
-                productoService.incrementarStock(detalle.getProducto().getId(), detalle.getCantidadRecibida());
-            }
-        }
+        Map<Long, Integer> recibidos = maquilado.getDetalles().stream()
+                .filter(d -> d.getCantidadRecibida() > 0)
+                .collect(Collectors.toMap(d -> d.getProducto().getId(),
+                        DetalleMaquilado::getCantidadRecibida, Integer::sum));
+        productoService.ajustarStockLote(recibidos,
+                MovimientoStock.TipoMovimiento.MAQUILADO_RECIBIDO, maquilado.getNumeroOrden());
 
         maquilado.setEstado(Maquilado.EstadoMaquilado.RECIBIDO);
         return maquiladoRepository.save(maquilado);
     }
 
+    @Transactional(propagation = Propagation.SUPPORTS)
     public Maquilado actualizarCantidadesRecibidas(Long id, List<DetalleMaquilado> detallesActualizados) {
-        Maquilado maquilado = maquiladoRepository.findById(id)
+        return reintentoOptimistaService.conReintento(Maquilado.class, id,
+                () -> aplicarCantidadesRecibidas(id, detallesActualizados));
+    }
+
+    private Maquilado aplicarCantidadesRecibidas(Long id, List<DetalleMaquilado> detallesActualizados) {
+        Maquilado maquilado = maquiladoRepository.findByIdIncrementandoVersion(id)
                 .orElseThrow(() -> new RuntimeException("Maquilado no encontrado"));
 
         if (maquilado.getEstado() != Maquilado.EstadoMaquilado.FINALIZADO) {
@@ -166,20 +236,24 @@ public class MaquiladoService {
         }
 
         maquiladoRepository.deleteById(id);
+        busquedaTextoService.eliminar(BusquedaTextoService.Campo.PROVEEDOR, id);
     }
 
     public List<DetalleMaquilado> findDetallesByMaquiladoId(Long maquiladoId) {
         return detalleMaquiladoRepository.findByMaquiladoId(maquiladoId);
     }
 
+    @Transactional(propagation = Propagation.SUPPORTS)
     public void marcarComoEnProceso(Long id) {
         cambiarEstado(id, Maquilado.EstadoMaquilado.EN_PROCESO);
     }
 
+    @Transactional(propagation = Propagation.SUPPORTS)
     public void marcarComoFinalizado(Long id) {
         cambiarEstado(id, Maquilado.EstadoMaquilado.FINALIZADO);
     }
 
+    @Transactional(propagation = Propagation.SUPPORTS)
     public void marcarComoCancelado(Long id) {
         cambiarEstado(id, Maquilado.EstadoMaquilado.CANCELADO);
     }
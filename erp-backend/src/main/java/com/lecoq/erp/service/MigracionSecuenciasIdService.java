@@ -0,0 +1,51 @@
+package com.lecoq.erp.service;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+
+/**
+ * Ajusta las tablas de secuencia de ids a las filas existentes. Las tablas creadas por
+ * {@code ddl-auto} arrancan en 1, lo que chocaría con los ids AUTO_INCREMENT previos; antes de
+ * cualquier INSERT se adelanta cada secuencia más allá del máximo id. Es idempotente y solo
+ * hace avanzar las secuencias.
+ */
+@Service
+@DependsOn("entityManagerFactory")
+@RequiredArgsConstructor
+@Slf4j
+public class MigracionSecuenciasIdService {
+
+    // Debe coincidir con el allocationSize de los @SequenceGenerator
+    static final int TAMANO_ASIGNACION = 50;
+
+    private static final Map<String, String> SECUENCIAS = Map.of(
+            "pedidos_seq", "pedidos",
+            "detalles_pedido_seq", "detalles_pedido",
+            "maquilados_seq", "maquilados",
+            "detalles_maquilado_seq", "detalles_maquilado",
+            "distribuciones_seq", "distribuciones",
+            "reservas_stock_seq", "reservas_stock");
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @PostConstruct
+    void ajustarSecuencias() {
+        SECUENCIAS.forEach((secuencia, tabla) -> {
+            // El optimizador pooled usa (next_val - TAMANO_ASIGNACION, next_val], por eso el margen
+            int ajustadas = jdbcTemplate.update(
+                    "UPDATE " + secuencia + " SET next_val = " +
+                    "(SELECT COALESCE(MAX(id), 0) + ? + 1 FROM " + tabla + ") " +
+                    "WHERE next_val <= (SELECT COALESCE(MAX(id), 0) + ? FROM " + tabla + ")",
+                    TAMANO_ASIGNACION, TAMANO_ASIGNACION);
+            if (ajustadas > 0) {
+                log.info("Secuencia {} adelantada sobre los ids existentes de {}", secuencia, tabla);
+            }
+        });
+    }
+}
@@ -0,0 +1,116 @@
+package com.lecoq.erp.service;
+
+import com.lecoq.erp.entity.SecuenciaDocumento;
+import com.lecoq.erp.repository.SecuenciaDocumentoRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Year;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * Numeración de documentos por serie anual ({@code PED-2025-000123}). Cada instancia reserva
+ * en la base de datos bloques de {@code app.numeracion.tamano-bloque} valores y los entrega
+ * desde memoria sin bloqueo; solo se vuelve a la base al agotar el bloque. Los valores de un
+ * bloque no usado (por ejemplo al reiniciar) se pierden: la serie admite huecos, nunca repetidos.
+ * Un número enviado por el cliente no puede tener el formato de la serie, porque chocaría con
+ * uno que el numerador entregue después.
+ */
+@Service
+@Slf4j
+public class NumeradorDocumentoService {
+
+    public static final String PEDIDO = "PED";
+    public static final String MAQUILADO = "MAQ";
+
+    private final SecuenciaDocumentoRepository secuenciaDocumentoRepository;
+    private final TransactionTemplate nuevaTransaccion;
+
+    @Value("${app.numeracion.tamano-bloque:100}")
+    private int tamanoBloque;
+
+    private final Map<String, Bloque> bloques = new ConcurrentHashMap<>();
+    private final AtomicLong reservas = new AtomicLong();
+
+    public NumeradorDocumentoService(SecuenciaDocumentoRepository secuenciaDocumentoRepository,
+                                     PlatformTransactionManager transactionManager) {
+        this.secuenciaDocumentoRepository = secuenciaDocumentoRepository;
+        // El bloque se confirma aparte: el bloqueo de la fila dura solo la reserva y no se
+        // reutilizan números aunque la transacción del documento haga rollback
+        this.nuevaTransaccion = new TransactionTemplate(transactionManager);
+        this.nuevaTransaccion.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    public String siguiente(String prefijo) {
+        String serie = prefijo + "-" + Year.now().getValue();
+        while (true) {
+            Bloque bloque = bloques.get(serie);
+            if (bloque != null) {
+                long valor = bloque.siguiente.getAndIncrement();
+                if (valor <= bloque.fin) {
+                    return String.format("%s-%06d", serie, valor);
+                }
+            }
+            renovar(serie, bloque);
+        }
+    }
+
+    /**
+     * @throws RuntimeException si {@code numero} tiene el formato reservado {@code <prefijo>-AAAA-N}
+     */
+    public void validarNumeroExterno(String prefijo, String numero) {
+        if (numero != null && Pattern.matches(Pattern.quote(prefijo) + "-\\d{4}-\\d+", numero)) {
+            throw new RuntimeException("El formato " + prefijo + "-AAAA-NNNNNN está reservado para la numeración automática");
+        }
+    }
+
+    public Map<String, Object> getEstadisticas() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("tamanoBloque", tamanoBloque);
+        stats.put("bloquesReservados", reservas.get());
+        Map<String, Long> disponibles = new LinkedHashMap<>();
+        bloques.forEach((serie, bloque) ->
+                disponibles.put(serie, Math.max(0, bloque.fin - bloque.siguiente.get() + 1)));
+        stats.put("disponiblesPorSerie", disponibles);
+        return stats;
+    }
+
+    private synchronized void renovar(String serie, Bloque agotado) {
+        // Otro hilo pudo haber renovado mientras se esperaba el monitor
+        if (bloques.get(serie) != agotado) {
+            return;
+        }
+        long fin = nuevaTransaccion.execute(status -> reservarBloque(serie));
+        bloques.put(serie, new Bloque(fin - tamanoBloque + 1, fin));
+        reservas.incrementAndGet();
+        log.debug("Bloque reservado para {}: {}-{}", serie, fin - tamanoBloque + 1, fin);
+    }
+
+    private long reservarBloque(String serie) {
+        SecuenciaDocumento secuencia = secuenciaDocumentoRepository.findBySerieForUpdate(serie)
+                .orElseGet(() -> {
+                    secuenciaDocumentoRepository.crearSiNoExiste(serie);
+                    return secuenciaDocumentoRepository.findBySerieForUpdate(serie).orElseThrow();
+                });
+        secuencia.setValor(secuencia.getValor() + tamanoBloque);
+        return secuencia.getValor();
+    }
+
+    private static final class Bloque {
+        private final AtomicLong siguiente;
+        private final long fin;
+
+        private Bloque(long inicio, long fin) {
+            this.siguiente = new AtomicLong(inicio);
+            this.fin = fin;
+        }
+    }
+}
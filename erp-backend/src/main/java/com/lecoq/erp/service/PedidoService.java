@@ -1,22 +1,38 @@
 package com.lecoq.erp.service;
 
+import com.lecoq.erp.dto.CursorPaginacion;
+import com.lecoq.erp.dto.PedidoResumen;
+import com.lecoq.erp.dto.ResultadoCambioEstado;
 import com.lecoq.erp.entity.DetallePedido;
+import com.lecoq.erp.entity.MovimientoStock;
 import com.lecoq.erp.entity.Pedido;
 import com.lecoq.erp.entity.Producto;
 import com.lecoq.erp.entity.Usuario;
 import com.lecoq.erp.repository.DetallePedidoRepository;
 import com.lecoq.erp.repository.PedidoRepository;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
+@Slf4j
 @Transactional
 public class PedidoService {
 
@@ -24,13 +40,23 @@ public class PedidoService {
     private final DetallePedidoRepository detallePedidoRepository;
     private final ProductoService productoService;
     private final UsuarioService usuarioService;
+    private final ReservaStockService reservaStockService;
+    private final NumeradorDocumentoService numeradorDocumentoService;
+    private final TransactionTemplate transactionTemplate;
+    private final VentaDiariaService ventaDiariaService;
+    private final ReintentoOptimistaService reintentoOptimistaService;
+    private final BusquedaTextoService busquedaTextoService;
+
+    @Value("${app.pedidos.cambio-estado.tamano-lote:200}")
+    private int tamanoLoteCambioEstado;
 
     public List<Pedido> findAll() {
         return pedidoRepository.findAll();
     }
 
+    @Transactional(readOnly = true)
     public Optional<Pedido> findById(Long id) {
-        return pedidoRepository.findById(id);
+        return pedidoRepository.findDetalleById(id);
     }
 
     public Optional<Pedido> findByNumeroPedido(String numeroPedido) {
@@ -45,14 +71,32 @@ public class PedidoService {
         return pedidoRepository.findByEstado(estado);
     }
 
-    public List<Pedido> findByClienteNombre(String clienteNombre) {
-        return pedidoRepository.findByClienteNombreContainingIgnoreCase(clienteNombre);
+    public List<Pedido> findByClienteNombre(String clienteNombre, int limite) {
+        List<Long> ids = busquedaTextoService.buscar(BusquedaTextoService.Campo.CLIENTE, clienteNombre, limite);
+        return BusquedaTextoService.enOrden(ids, pedidoRepository.findAllById(ids), Pedido::getId);
     }
 
     public List<Pedido> findByUsuarioId(Long usuarioId) {
         return pedidoRepository.findByUsuarioId(usuarioId);
     }
 
+    /**
+     * Página de resúmenes de pedidos ordenada por fecha e id descendentes. {@code usuarioId} nulo devuelve
+     * los de todos los usuarios y {@code cursor} nulo devuelve la primera página.
+     */
+    @Transactional(readOnly = true)
+    public Slice<PedidoResumen> findPagina(Long usuarioId, CursorPaginacion cursor, int size) {
+        PageRequest pagina = PageRequest.of(0, size);
+        if (usuarioId == null) {
+            return cursor == null
+                    ? pedidoRepository.findPrimeraPagina(pagina)
+                    : pedidoRepository.findPaginaDespuesDe(cursor.fecha(), cursor.id(), pagina);
+        }
+        return cursor == null
+                ? pedidoRepository.findPrimeraPaginaByUsuarioId(usuarioId, pagina)
+                : pedidoRepository.findPaginaByUsuarioIdDespuesDe(usuarioId, cursor.fecha(), cursor.id(), pagina);
+    }
+
     public List<Pedido> findByFechaPedidoBetween(LocalDateTime fechaInicio, LocalDateTime fechaFin) {
         return pedidoRepository.findPedidosByFechaPedidoBetween(fechaInicio, fechaFin);
     }
@@ -66,19 +110,32 @@ public class PedidoService {
                 .orElseThrow(() -> new RuntimeException("Usuario no encontrado"));
 
         pedido.setUsuario(usuario);
+        // Todo pedido nace pendiente: la reserva de stock y el reporte de ventas dependen de los
+        // cambios de estado posteriores, así que no se acepta un estado enviado por el cliente
+        pedido.setEstado(Pedido.EstadoPedido.PENDIENTE);
+        if (pedido.getNumeroPedido() == null) {
+            pedido.setNumeroPedido(numeradorDocumentoService.siguiente(NumeradorDocumentoService.PEDIDO));
+        } else {
+            numeradorDocumentoService.validarNumeroExterno(NumeradorDocumentoService.PEDIDO, pedido.getNumeroPedido());
+        }
         
+        // Cargar todos los productos referenciados en una sola consulta
+        Map<Long, Producto> productos = productoService.findAllByIdAsMap(
+                pedido.getDetalles().stream().map(d -> d.getProducto().getId()).toList());
+        Map<Long, Integer> requeridos = deltasStock(pedido, 1);
+
         // Calcular total
         BigDecimal total = BigDecimal.ZERO;
         for (DetallePedido detalle : pedido.getDetalles()) {
-            // Validar stock disponible
-            if (!productoService.validarStock(detalle.getProducto().getId(), detalle.getCantidad())) {
-                throw new RuntimeException("Stock insuficiente para el producto: " + 
-                    detalle.getProducto().getNombre());
+            Producto producto = productos.get(detalle.getProducto().getId());
+            if (producto == null) {
+                throw new RuntimeException("Producto no encontrado");
+            }
+
+            // Validar stock disponible (sumando las líneas repetidas del mismo producto)
+            if (producto.getStock() - producto.getStockReservado() < requeridos.get(producto.getId())) {
+                throw new RuntimeException("Stock insuficiente para el producto: " + producto.getNombre());
             }
-            
-            // Obtener producto actualizado para precio
-            Producto producto = productoService.findById(detalle.getProducto().getId())
-                    .orElseThrow(() -> new RuntimeException("Producto no encontrado"));
             
             detalle.setProducto(producto);
             detalle.setPrecioUnitario(producto.getPrecio());
@@ -90,12 +147,27 @@ public class PedidoService {
         }
         
         pedido.setTotal(total);
-        return pedidoRepository.save(pedido);
+        Pedido nuevo = pedidoRepository.save(pedido);
+
+        // Reserva el stock mientras el pedido esté pendiente
+        reservaStockService.reservar(nuevo.getId(), deltasStock(nuevo, 1));
+        busquedaTextoService.indexar(BusquedaTextoService.Campo.CLIENTE, nuevo.getId(), nuevo.getClienteNombre());
+        return nuevo;
     }
 
+    /**
+     * Aplica la edición del cliente sin reintentar: si {@code pedido.version} no es la vigente,
+     * o el pedido cambió mientras se guardaba, se lanza {@link ConflictoVersionException}.
+     */
+    @Transactional(propagation = Propagation.SUPPORTS)
     public Pedido update(Long id, Pedido pedido) {
+        return reintentoOptimistaService.sinReintento(Pedido.class, id, () -> actualizar(id, pedido));
+    }
+
+    private Pedido actualizar(Long id, Pedido pedido) {
         Pedido existente = pedidoRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Pedido no encontrado"));
+        reintentoOptimistaService.verificarVersion(Pedido.class, id, pedido.getVersion(), existente.getVersion());
 
         existente.setClienteNombre(pedido.getClienteNombre());
         existente.setClienteRuc(pedido.getClienteRuc());
@@ -104,52 +176,150 @@ public class PedidoService {
         existente.setFechaEntregaEstimada(pedido.getFechaEntregaEstimada());
         existente.setObservaciones(pedido.getObservaciones());
 
+        busquedaTextoService.indexar(BusquedaTextoService.Campo.CLIENTE, id, existente.getClienteNombre());
         return pedidoRepository.save(existente);
     }
 
+    /**
+     * Se reintenta ante conflictos de versión: cada intento relee el estado anterior, de modo que
+     * reservas, stock y ventas solo se ajustan según la transición que realmente se confirma.
+     * Dentro de una transacción existente (por ejemplo desde una distribución) se ejecuta una vez
+     * y el reintento corresponde a quien la abrió.
+     */
+    @Transactional(propagation = Propagation.SUPPORTS)
     public Pedido cambiarEstado(Long id, Pedido.EstadoPedido nuevoEstado) {
+        return reintentoOptimistaService.conReintento(Pedido.class, id, () -> aplicarCambioEstado(id, nuevoEstado));
+    }
+
+    private Pedido aplicarCambioEstado(Long id, Pedido.EstadoPedido nuevoEstado) {
         Pedido pedido = pedidoRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Pedido no encontrado"));
 
         Pedido.EstadoPedido estadoAnterior = pedido.getEstado();
         pedido.setEstado(nuevoEstado);
 
+        // Al salir de PENDIENTE la reserva deja de ser necesaria
+        if (estadoAnterior == Pedido.EstadoPedido.PENDIENTE && nuevoEstado != Pedido.EstadoPedido.PENDIENTE) {
+            reservaStockService.liberar(id);
+        }
+
         // Si se confirma el pedido, reducir stock
         if (nuevoEstado == Pedido.EstadoPedido.CONFIRMADO && 
             estadoAnterior == Pedido.EstadoPedido.PENDIENTE) {
-            
-            for (DetallePedido detalle : pedido.getDetalles()) {
-                productoService.reducirStock(detalle.getProducto().getId(), detalle.getCantidad());
-            }
+            productoService.ajustarStockLote(deltasStock(pedido, -1),
+                    MovimientoStock.TipoMovimiento.PEDIDO_CONFIRMADO, pedido.getNumeroPedido());
         }
 
         // Si se cancela un pedido confirmado, restaurar stock
         if (nuevoEstado == Pedido.EstadoPedido.CANCELADO && 
             estadoAnterior == Pedido.EstadoPedido.CONFIRMADO) {
-            
-            for (DetallePedido detalle : pedido.getDetalles()) {
-                productoService.incrementarStock(detalle.getProducto().getId(), detalle.getCantidad());
-            }
+            productoService.ajustarStockLote(deltasStock(pedido, 1),
+                    MovimientoStock.TipoMovimiento.PEDIDO_CANCELADO, pedido.getNumeroPedido());
         }
 
+        ventaDiariaService.registrarCambioEstado(pedido, estadoAnterior, nuevoEstado);
         return pedidoRepository.save(pedido);
     }
 
+    /**
+     * Cambia el estado de varios pedidos. Se procesan en lotes de {@code app.pedidos.cambio-estado.tamano-lote},
+     * cada uno en su propia transacción: una consulta carga los pedidos con sus líneas, las reservas
+     * se liberan juntas y los ajustes de stock de todo el lote se aplican en un solo UPDATE. Si el
+     * lote no puede aplicarse completo (por ejemplo, falta stock de un producto), se revierte y sus
+     * pedidos se procesan uno a uno para informar el resultado de cada id.
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public List<ResultadoCambioEstado> cambiarEstadoLote(List<Long> ids, Pedido.EstadoPedido nuevoEstado) {
+        List<Long> unicos = new ArrayList<>(new LinkedHashSet<>(ids));
+        List<ResultadoCambioEstado> resultados = new ArrayList<>(unicos.size());
+        for (int inicio = 0; inicio < unicos.size(); inicio += tamanoLoteCambioEstado) {
+            List<Long> lote = unicos.subList(inicio, Math.min(inicio + tamanoLoteCambioEstado, unicos.size()));
+            try {
+                resultados.addAll(transactionTemplate.execute(status -> cambiarEstadoLoteEnTransaccion(lote, nuevoEstado)));
+            } catch (RuntimeException e) {
+                log.warn("Lote de cambio de estado revertido, se procesa pedido por pedido: {}", e.getMessage());
+                for (Long id : lote) {
+                    resultados.add(cambiarEstadoIndividual(id, nuevoEstado));
+                }
+            }
+        }
+        return resultados;
+    }
+
+    private List<ResultadoCambioEstado> cambiarEstadoLoteEnTransaccion(List<Long> ids, Pedido.EstadoPedido nuevoEstado) {
+        Map<Long, Pedido> pedidos = pedidoRepository.findConDetallesByIdIn(ids).stream()
+                .collect(Collectors.toMap(Pedido::getId, p -> p));
+
+        List<Long> pendientes = new ArrayList<>();
+        Map<String, Map<Long, Integer>> confirmados = new HashMap<>();
+        Map<String, Map<Long, Integer>> cancelados = new HashMap<>();
+        Map<Pedido.EstadoPedido, List<Pedido>> porEstadoAnterior = new HashMap<>();
+        List<ResultadoCambioEstado> resultados = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            Pedido pedido = pedidos.get(id);
+            if (pedido == null) {
+                resultados.add(ResultadoCambioEstado.error(id, "Pedido no encontrado"));
+                continue;
+            }
+            Pedido.EstadoPedido estadoAnterior = pedido.getEstado();
+            if (estadoAnterior == Pedido.EstadoPedido.PENDIENTE && nuevoEstado != Pedido.EstadoPedido.PENDIENTE) {
+                pendientes.add(id);
+            }
+            if (nuevoEstado == Pedido.EstadoPedido.CONFIRMADO && estadoAnterior == Pedido.EstadoPedido.PENDIENTE) {
+                confirmados.put(pedido.getNumeroPedido(), deltasStock(pedido, -1));
+            }
+            if (nuevoEstado == Pedido.EstadoPedido.CANCELADO && estadoAnterior == Pedido.EstadoPedido.CONFIRMADO) {
+                cancelados.put(pedido.getNumeroPedido(), deltasStock(pedido, 1));
+            }
+            porEstadoAnterior.computeIfAbsent(estadoAnterior, e -> new ArrayList<>()).add(pedido);
+            pedido.setEstado(nuevoEstado);
+            resultados.add(ResultadoCambioEstado.exito(id, nuevoEstado));
+        }
+
+        // Mismo orden que cambiarEstado: primero se libera la reserva y luego se descuenta el stock
+        reservaStockService.liberarLote(pendientes);
+        productoService.ajustarStockLote(confirmados, MovimientoStock.TipoMovimiento.PEDIDO_CONFIRMADO);
+        productoService.ajustarStockLote(cancelados, MovimientoStock.TipoMovimiento.PEDIDO_CANCELADO);
+        porEstadoAnterior.forEach((estadoAnterior, lote) ->
+                ventaDiariaService.registrarCambiosEstado(lote, estadoAnterior, nuevoEstado));
+        return resultados;
+    }
+
+    private ResultadoCambioEstado cambiarEstadoIndividual(Long id, Pedido.EstadoPedido nuevoEstado) {
+        try {
+            cambiarEstado(id, nuevoEstado);
+            return ResultadoCambioEstado.exito(id, nuevoEstado);
+        } catch (RuntimeException e) {
+            return ResultadoCambioEstado.error(id, e.getMessage());
+        }
+    }
+
     public void deleteById(Long id) {
         Pedido pedido = pedidoRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Pedido no encontrado"));
 
+        if (pedido.getEstado() == Pedido.EstadoPedido.PENDIENTE) {
+            reservaStockService.liberar(id);
+        }
+
         // Si el pedido está confirmado, restaurar stock antes de eliminar
         if (pedido.getEstado() == Pedido.EstadoPedido.CONFIRMADO) {
-            for (DetallePedido detalle : pedido.getDetalles()) {
-                productoService.incrementarStock(detalle.getProducto().getId(), detalle.getCantidad());
-            }
+            productoService.ajustarStockLote(deltasStock(pedido, 1),
+                    MovimientoStock.TipoMovimiento.PEDIDO_ELIMINADO, pedido.getNumeroPedido());
         }
 
+        ventaDiariaService.registrarEliminacion(pedido);
         pedidoRepository.deleteById(id);
+        busquedaTextoService.eliminar(BusquedaTextoService.Campo.CLIENTE, id);
     }
 
     public List<DetallePedido> findDetallesByPedidoId(Long pedidoId) {
         return detallePedidoRepository.findByPedidoId(pedidoId);
     }
+
+    private Map<Long, Integer> deltasStock(Pedido pedido, int signo) {
+        return pedido.getDetalles().stream()
+                .collect(Collectors.toMap(d -> d.getProducto().getId(),
+                        d -> signo * d.getCantidad(), Integer::sum));
+    }
 }
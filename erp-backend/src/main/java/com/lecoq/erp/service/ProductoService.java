@@ -1,13 +1,21 @@
 package com.lecoq.erp.service;
 
+import com.lecoq.erp.entity.MovimientoStock;
 import com.lecoq.erp.entity.Producto;
 import com.lecoq.erp.repository.ProductoRepository;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.SortedMap;
+import java.util.TreeMap;
 
 @Service
 @RequiredArgsConstructor
@@ -15,6 +23,11 @@ import java.util.Optional;
 public class ProductoService {
 
     private final ProductoRepository productoRepository;
+    private final KardexService kardexService;
+    private final ReintentoOptimistaService reintentoOptimistaService;
+    private final BusquedaTextoService busquedaTextoService;
+    private final CatalogoProductoCache catalogoProductoCache;
+    private final StockBajoService stockBajoService;
 
     public List<Producto> findAll() {
         return productoRepository.findAll();
@@ -24,78 +37,192 @@ public class ProductoService {
         return productoRepository.findByActivoTrue();
     }
 
+    // Fuera de una transacción se sirven desde cache sin abrir una
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
     public List<Producto> findAllActiveOrderByName() {
-        return productoRepository.findByActivoTrueOrderByNombreAsc();
+        return catalogoProductoCache.activos(productoRepository::findByActivoTrueOrderByNombreAsc);
     }
 
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
     public Optional<Producto> findById(Long id) {
-        return productoRepository.findById(id);
+        return catalogoProductoCache.porId(id, () -> productoRepository.findById(id));
     }
 
-    public List<Producto> findByNombre(String nombre) {
-        return productoRepository.findByNombreContainingIgnoreCase(nombre);
+    public Map<Long, Producto> findAllByIdAsMap(Collection<Long> ids) {
+        Map<Long, Producto> productos = new HashMap<>();
+        productoRepository.findAllById(ids).forEach(p -> productos.put(p.getId(), p));
+        return productos;
     }
 
+    public List<Producto> findByNombre(String nombre, int limite) {
+        List<Long> ids = busquedaTextoService.buscar(BusquedaTextoService.Campo.PRODUCTO, nombre, limite);
+        return BusquedaTextoService.enOrden(ids, productoRepository.findAllById(ids), Producto::getId);
+    }
+
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
     public List<Producto> findProductosConStockBajo() {
-        return productoRepository.findProductosConStockBajo();
+        return stockBajoService.productos();
     }
 
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
     public List<Producto> findProductosConStock() {
-        return productoRepository.findProductosConStock();
+        return catalogoProductoCache.conStock(productoRepository::findProductosConStock);
     }
 
     public Producto save(Producto producto) {
-        return productoRepository.save(producto);
+        Producto guardado = productoRepository.save(producto);
+        busquedaTextoService.indexar(BusquedaTextoService.Campo.PRODUCTO, guardado.getId(), guardado.getNombre());
+        productosModificados(List.of(guardado.getId()));
+        return guardado;
     }
 
     public Producto create(Producto producto) {
-        return productoRepository.save(producto);
+        producto.setStockReservado(0);
+        Producto nuevo = productoRepository.save(producto);
+        kardexService.registrar(nuevo.getId(), nuevo.getStock(), MovimientoStock.TipoMovimiento.STOCK_INICIAL, null);
+        busquedaTextoService.indexar(BusquedaTextoService.Campo.PRODUCTO, nuevo.getId(), nuevo.getNombre());
+        productosModificados(List.of(nuevo.getId()));
+        return nuevo;
     }
 
+    /**
+     * Aplica la edición del cliente sin reintentar: si {@code producto.version} no es la vigente,
+     * o el stock cambió mientras se guardaba, se lanza {@link ConflictoVersionException}.
+     */
+    @Transactional(propagation = Propagation.SUPPORTS)
     public Producto update(Long id, Producto producto) {
+        return reintentoOptimistaService.sinReintento(Producto.class, id, () -> actualizar(id, producto));
+    }
+
+    private Producto actualizar(Long id, Producto producto) {
         Producto existente = productoRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Producto no encontrado"));
+        reintentoOptimistaService.verificarVersion(Producto.class, id, producto.getVersion(), existente.getVersion());
 
         existente.setNombre(producto.getNombre());
         existente.setDescripcion(producto.getDescripcion());
         existente.setPresentacion(producto.getPresentacion());
         existente.setPrecio(producto.getPrecio());
+        if (producto.getStock() < existente.getStockReservado()) {
+            throw new RuntimeException("El stock no puede ser menor al stock reservado por pedidos pendientes ("
+                    + existente.getStockReservado() + ")");
+        }
+        kardexService.registrar(id, producto.getStock() - existente.getStock(),
+                MovimientoStock.TipoMovimiento.ACTUALIZACION_PRODUCTO, null);
         existente.setStock(producto.getStock());
         existente.setStockMinimo(producto.getStockMinimo());
         existente.setActivo(producto.getActivo());
 
+        busquedaTextoService.indexar(BusquedaTextoService.Campo.PRODUCTO, id, existente.getNombre());
+        productosModificados(List.of(id));
         return productoRepository.save(existente);
     }
 
     public void deleteById(Long id) {
         productoRepository.deleteById(id);
+        busquedaTextoService.eliminar(BusquedaTextoService.Campo.PRODUCTO, id);
+        productosModificados(List.of(id));
     }
 
+    @Transactional(propagation = Propagation.SUPPORTS)
     public void deactivate(Long id) {
-        Producto producto = productoRepository.findById(id)
-                .orElseThrow(() -> new RuntimeException("Producto no encontrado"));
-        producto.setActivo(false);
-        productoRepository.save(producto);
+        reintentoOptimistaService.conReintento(Producto.class, id, () -> cambiarActivo(id, false));
     }
 
+    @Transactional(propagation = Propagation.SUPPORTS)
     public void activate(Long id) {
+        reintentoOptimistaService.conReintento(Producto.class, id, () -> cambiarActivo(id, true));
+    }
+
+    private Producto cambiarActivo(Long id, boolean activo) {
         Producto producto = productoRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Producto no encontrado"));
-        producto.setActivo(true);
-        productoRepository.save(producto);
+        producto.setActivo(activo);
+        productosModificados(List.of(id));
+        return productoRepository.save(producto);
     }
 
     public void actualizarStock(Long productoId, Integer cantidad) {
-        Producto producto = productoRepository.findById(productoId)
-                .orElseThrow(() -> new RuntimeException("Producto no encontrado"));
-        
-        int nuevoStock = producto.getStock() + cantidad;
-        if (nuevoStock < 0) {
+        actualizarStock(productoId, cantidad, MovimientoStock.TipoMovimiento.AJUSTE_MANUAL, null);
+    }
+
+    public void actualizarStock(Long productoId, Integer cantidad,
+                                MovimientoStock.TipoMovimiento tipo, String referencia) {
+        // UPDATE condicional: sin lectura previa, no hay actualizaciones perdidas ni sobreventa
+        int filas = productoRepository.ajustarStock(productoId, cantidad, LocalDateTime.now());
+        if (filas == 0) {
+            Producto producto = productoRepository.findById(productoId)
+                    .orElseThrow(() -> new RuntimeException("Producto no encontrado"));
             throw new RuntimeException("Stock insuficiente para el producto: " + producto.getNombre());
         }
-        
-        producto.setStock(nuevoStock);
-        productoRepository.save(producto);
+        kardexService.registrar(productoId, cantidad, tipo, referencia);
+        productosModificados(List.of(productoId));
+    }
+
+    /**
+     * Aplica los ajustes de stock de varios productos en un solo UPDATE, todo o nada.
+     * Los productos repetidos se acumulan; si alguno quedaría con stock negativo no se aplica ninguno.
+     */
+    public void ajustarStockLote(Map<Long, Integer> deltas,
+                                 MovimientoStock.TipoMovimiento tipo, String referencia) {
+        SortedMap<Long, Integer> agregados = agregar(deltas);
+        if (agregados.isEmpty()) {
+            return;
+        }
+
+        int filas = productoRepository.ajustarStockLote(agregados, LocalDateTime.now());
+        if (filas != agregados.size()) {
+            // Se descarta el lote completo: la excepción revierte las filas ya actualizadas
+            throw new RuntimeException(describirFallo(agregados, true));
+        }
+        kardexService.registrar(agregados, tipo, referencia);
+        productosModificados(agregados.keySet());
+    }
+
+    /**
+     * Como {@link #ajustarStockLote(Map, MovimientoStock.TipoMovimiento, String)} pero con los ajustes de
+     * varios documentos: se aplican todos en un solo UPDATE y el kardex conserva la referencia de cada uno.
+     */
+    public void ajustarStockLote(Map<String, Map<Long, Integer>> deltasPorReferencia,
+                                 MovimientoStock.TipoMovimiento tipo) {
+        Map<Long, Integer> todos = new HashMap<>();
+        deltasPorReferencia.values().forEach(deltas ->
+                deltas.forEach((id, cantidad) -> todos.merge(id, cantidad, Integer::sum)));
+        SortedMap<Long, Integer> agregados = agregar(todos);
+        if (agregados.isEmpty()) {
+            return;
+        }
+
+        int filas = productoRepository.ajustarStockLote(agregados, LocalDateTime.now());
+        if (filas != agregados.size()) {
+            throw new RuntimeException(describirFallo(agregados, true));
+        }
+        kardexService.registrar(deltasPorReferencia, tipo);
+        productosModificados(agregados.keySet());
+    }
+
+    /**
+     * Suma las cantidades al stock reservado de cada producto, todo o nada, solo si el stock
+     * disponible (stock - reservado) alcanza.
+     */
+    public void reservarStockLote(Map<Long, Integer> cantidades) {
+        SortedMap<Long, Integer> agregados = agregar(cantidades);
+        if (agregados.isEmpty()) {
+            return;
+        }
+        int filas = productoRepository.reservarStockLote(agregados, LocalDateTime.now());
+        if (filas != agregados.size()) {
+            throw new RuntimeException(describirFallo(agregados, false));
+        }
+        catalogoProductoCache.invalidar(agregados.keySet());
+    }
+
+    public void liberarStockReservadoLote(Map<Long, Integer> cantidades) {
+        SortedMap<Long, Integer> agregados = agregar(cantidades);
+        if (!agregados.isEmpty()) {
+            productoRepository.liberarStockReservadoLote(agregados, LocalDateTime.now());
+            catalogoProductoCache.invalidar(agregados.keySet());
+        }
     }
 
     public void reducirStock(Long productoId, Integer cantidad) {
@@ -106,9 +233,38 @@ public class ProductoService {
         actualizarStock(productoId, cantidad);
     }
 
+    // Las reservas no cambian el stock, así que solo invalidan la cache del catálogo
+    private void productosModificados(Collection<Long> ids) {
+        catalogoProductoCache.invalidar(ids);
+        stockBajoService.verificar(ids);
+    }
+
+    private static SortedMap<Long, Integer> agregar(Map<Long, Integer> cantidades) {
+        SortedMap<Long, Integer> agregados = new TreeMap<>();
+        cantidades.forEach((id, cantidad) -> agregados.merge(id, cantidad, Integer::sum));
+        agregados.values().removeIf(cantidad -> cantidad == 0);
+        return agregados;
+    }
+
+    private String describirFallo(SortedMap<Long, Integer> deltas, boolean ajuste) {
+        Map<Long, Producto> productos = new TreeMap<>();
+        productoRepository.findAllById(deltas.keySet()).forEach(p -> productos.put(p.getId(), p));
+        for (Map.Entry<Long, Integer> entry : deltas.entrySet()) {
+            Producto producto = productos.get(entry.getKey());
+            if (producto == null) {
+                return "Producto no encontrado";
+            }
+            int requerido = ajuste ? -entry.getValue() : entry.getValue();
+            if (requerido > 0 && producto.getStock() - producto.getStockReservado() < requerido) {
+                return "Stock insuficiente para el producto: " + producto.getNombre();
+            }
+        }
+        return "No se pudo actualizar el stock, intente nuevamente";
+    }
+
     public boolean validarStock(Long productoId, Integer cantidadRequerida) {
         Producto producto = productoRepository.findById(productoId)
                 .orElseThrow(() -> new RuntimeException("Producto no encontrado"));
-        return producto.getStock() >= cantidadRequerida;
+        return producto.getStock() - producto.getStockReservado() >= cantidadRequerida;
     }
 }
@@ -0,0 +1,129 @@
+package com.lecoq.erp.service;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.OptimisticLockException;
+import jakarta.persistence.PersistenceContext;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Ejecuta operaciones sobre entidades versionadas ({@code @Version}) resolviendo los conflictos
+ * de concurrencia optimista. Cada intento corre en su propia transacción; las operaciones
+ * idempotentes se reintentan hasta {@code app.reintentos.max-intentos} veces con espera
+ * exponencial con jitter completo, y el resto se ejecuta una sola vez. Si el conflicto persiste
+ * se lanza {@link ConflictoVersionException} con la versión vigente del registro.
+ */
+@Service
+@Slf4j
+public class ReintentoOptimistaService {
+
+    private final TransactionTemplate transactionTemplate;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Value("${app.reintentos.max-intentos:3}")
+    private int maxIntentos;
+
+    @Value("${app.reintentos.backoff-inicial:20}")
+    private long backoffInicial;
+
+    @Value("${app.reintentos.backoff-maximo:500}")
+    private long backoffMaximo;
+
+    private final AtomicLong conflictos = new AtomicLong();
+    private final AtomicLong reintentos = new AtomicLong();
+    private final AtomicLong rechazados = new AtomicLong();
+
+    public ReintentoOptimistaService(PlatformTransactionManager transactionManager) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Para operaciones idempotentes: cada intento relee el estado vigente, por lo que repetirla
+     * tras un conflicto produce el mismo resultado que si se hubiera ejecutado sola.
+     */
+    public <T> T conReintento(Class<?> entidad, Long id, Supplier<T> operacion) {
+        return ejecutar(entidad, id, operacion, maxIntentos);
+    }
+
+    /**
+     * Para operaciones que aplican datos leídos por el cliente: un conflicto no se reintenta
+     * porque sobrescribiría cambios que el cliente no ha visto.
+     */
+    public <T> T sinReintento(Class<?> entidad, Long id, Supplier<T> operacion) {
+        return ejecutar(entidad, id, operacion, 1);
+    }
+
+    /**
+     * Rechaza la operación si el cliente envió la versión sobre la que trabajó y ya no es la vigente.
+     */
+    public void verificarVersion(Class<?> entidad, Long id, Long versionCliente, Long versionActual) {
+        if (versionCliente != null && !Objects.equals(versionCliente, versionActual)) {
+            conflictos.incrementAndGet();
+            rechazados.incrementAndGet();
+            throw new ConflictoVersionException(entidad.getSimpleName(), id, versionActual);
+        }
+    }
+
+    public Map<String, Object> getEstadisticas() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("maxIntentos", maxIntentos);
+        stats.put("conflictos", conflictos.get());
+        stats.put("reintentos", reintentos.get());
+        stats.put("rechazados", rechazados.get());
+        return stats;
+    }
+
+    private <T> T ejecutar(Class<?> entidad, Long id, Supplier<T> operacion, int intentos) {
+        // Dentro de una transacción ajena no se puede reintentar: el conflicto lo resuelve quien la abrió
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            return operacion.get();
+        }
+        for (int intento = 1; ; intento++) {
+            try {
+                return transactionTemplate.execute(status -> operacion.get());
+            } catch (OptimisticLockingFailureException | OptimisticLockException e) {
+                conflictos.incrementAndGet();
+                if (intento >= intentos) {
+                    rechazados.incrementAndGet();
+                    throw new ConflictoVersionException(entidad.getSimpleName(), id, versionActual(entidad, id));
+                }
+                reintentos.incrementAndGet();
+                log.debug("Conflicto de versión en {} {}, intento {} de {}", entidad.getSimpleName(), id, intento, intentos);
+                esperar(intento);
+            }
+        }
+    }
+
+    private void esperar(int intento) {
+        long techo = Math.min(backoffMaximo, backoffInicial << Math.min(intento - 1, 20));
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(techo + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Reintento interrumpido", e);
+        }
+    }
+
+    private Long versionActual(Class<?> entidad, Long id) {
+        return transactionTemplate.execute(status -> entityManager
+                .createQuery("SELECT e.version FROM " + entidad.getSimpleName() + " e WHERE e.id = :id", Long.class)
+                .setParameter("id", id)
+                .getResultStream()
+                .findFirst()
+                .orElse(null));
+    }
+}
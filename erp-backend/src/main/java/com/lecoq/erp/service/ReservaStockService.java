@@ -0,0 +1,101 @@
+package com.lecoq.erp.service;
+
+import com.lecoq.erp.entity.ReservaStock;
+import com.lecoq.erp.repository.ReservaStockRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reservas temporales de stock para pedidos pendientes. Se liberan al confirmar, cancelar o
+ * eliminar el pedido, o al vencer el TTL configurado.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ReservaStockService {
+
+    private static final int TAMANO_LOTE = 500;
+
+    private final ReservaStockRepository reservaStockRepository;
+    private final ProductoService productoService;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${app.reservas.ttl-minutos:120}")
+    private long ttlMinutos;
+
+    @Transactional
+    public void reservar(Long pedidoId, Map<Long, Integer> cantidades) {
+        productoService.reservarStockLote(cantidades);
+
+        LocalDateTime expiracion = LocalDateTime.now().plusMinutes(ttlMinutos);
+        Map<Long, Integer> agregadas = new HashMap<>();
+        cantidades.forEach((productoId, cantidad) -> agregadas.merge(productoId, cantidad, Integer::sum));
+
+        List<ReservaStock> reservas = new ArrayList<>();
+        agregadas.forEach((productoId, cantidad) ->
+                reservas.add(new ReservaStock(null, pedidoId, productoId, cantidad, expiracion)));
+        reservaStockRepository.saveAll(reservas);
+    }
+
+    @Transactional
+    public void liberar(Long pedidoId) {
+        // FOR UPDATE: si el job de vencimiento ya tomó estas reservas, se espera y no se liberan dos veces
+        liberar(reservaStockRepository.findByPedidoIdForUpdate(pedidoId));
+    }
+
+    @Transactional
+    public void liberarLote(Collection<Long> pedidoIds) {
+        if (!pedidoIds.isEmpty()) {
+            liberar(reservaStockRepository.findByPedidoIdInForUpdate(pedidoIds));
+        }
+    }
+
+    /**
+     * Libera las reservas vencidas en lotes acotados, cada uno en su propia transacción. La consulta
+     * usa el índice de fecha de expiración, así que el costo depende solo de las reservas vencidas.
+     */
+    @Scheduled(fixedDelayString = "${app.reservas.expiracion-interval:30000}")
+    public void liberarVencidas() {
+        int total = 0;
+        int liberadas;
+        do {
+            Integer lote = transactionTemplate.execute(status -> {
+                List<ReservaStock> vencidas = reservaStockRepository.findVencidas(
+                        LocalDateTime.now(), PageRequest.of(0, TAMANO_LOTE));
+                liberar(vencidas);
+                return vencidas.size();
+            });
+            liberadas = lote != null ? lote : 0;
+            total += liberadas;
+        } while (liberadas == TAMANO_LOTE);
+
+        if (total > 0) {
+            log.info("Reservas de stock vencidas liberadas: {}", total);
+        }
+    }
+
+    private void liberar(List<ReservaStock> reservas) {
+        if (reservas.isEmpty()) {
+            return;
+        }
+        Map<Long, Integer> cantidades = new HashMap<>();
+        for (ReservaStock reserva : reservas) {
+            cantidades.merge(reserva.getProductoId(), reserva.getCantidad(), Integer::sum);
+        }
+        productoService.liberarStockReservadoLote(cantidades);
+        reservaStockRepository.deleteAllInBatch(reservas);
+    }
+}
@@ -0,0 +1,278 @@
+package com.lecoq.erp.service;
+
+import com.lecoq.erp.dto.AlertaStock;
+import com.lecoq.erp.dto.VersionRecurso;
+import com.lecoq.erp.entity.Producto;
+import com.lecoq.erp.repository.ProductoRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Conjunto en memoria de los productos activos con stock bajo ({@code stock <= stockMinimo}), una
+ * comparación entre columnas que ningún índice resuelve. {@link ProductoService} lo verifica en
+ * cada transacción que modifica productos y el resultado se aplica al confirmarse; cuando un
+ * producto cruza el umbral se publica un evento a los suscriptores SSE. Cada estado guarda la
+ * versión del producto, así que una transacción que confirma tarde no pisa uno más reciente.
+ * Se carga al arrancar y se reconcilia con la base cada {@code app.stock-bajo.reconciliacion-interval}
+ * para incorporar los cambios hechos por otras instancias.
+ * <p>
+ * El conjunto publicado se edita en su lugar: un producto listado solo se reemplaza cuando cambia
+ * algo de lo que muestra la alerta (nombre, presentación, stock o mínimo), y la reconciliación lo
+ * reconstruye una única vez al final.
+ */
+@Service
+@Slf4j
+public class StockBajoService {
+
+    public static final String EVENTO_ESTADO = "estado";
+    public static final String EVENTO_STOCK_BAJO = "stock-bajo";
+    public static final String EVENTO_STOCK_NORMAL = "stock-normal";
+
+    // Versión de un producto eliminado: ningún estado posterior lo vuelve a agregar
+    private static final long ELIMINADO = Long.MAX_VALUE;
+
+    private static final Comparator<Producto> ORDEN =
+            Comparator.comparing(Producto::getNombre).thenComparing(Producto::getId);
+
+    private final ProductoRepository productoRepository;
+    private final CanalSse canal;
+
+    // Último estado aplicado de cada producto; solo los de stock bajo conservan el producto
+    private final Map<Long, Estado> estados = new ConcurrentHashMap<>();
+    private volatile List<Producto> stockBajo = List.of();
+    private volatile VersionRecurso version;
+
+    private final String instancia = UUID.randomUUID().toString();
+    private final AtomicLong secuencia = new AtomicLong();
+    private final AtomicLong revision = new AtomicLong();
+    private final AtomicLong cruces = new AtomicLong();
+
+    public StockBajoService(ProductoRepository productoRepository,
+                            @Value("${app.stock-bajo.sse.timeout:1800000}") long timeoutSse,
+                            @Value("${app.stock-bajo.sse.capacidad-cola:1000}") int capacidadCola) {
+        this.productoRepository = productoRepository;
+        this.canal = new CanalSse("stock-bajo", timeoutSse, capacidadCola);
+        this.version = VersionRecurso.de("stock-bajo", instancia, revision.get());
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void cargar() {
+        reconciliar();
+        log.info("Conjunto de stock bajo cargado: {} productos", stockBajo.size());
+    }
+
+    @Scheduled(fixedDelayString = "${app.stock-bajo.reconciliacion-interval:300000}",
+               initialDelayString = "${app.stock-bajo.reconciliacion-interval:300000}")
+    public void reconciliar() {
+        long inicio = secuencia.get();
+        reconciliar(productoRepository.findVigentes(), inicio);
+    }
+
+    @Scheduled(fixedDelayString = "${app.stock-bajo.sse.latido:30000}")
+    public void latido() {
+        canal.latido();
+    }
+
+    @PreDestroy
+    void cerrar() {
+        canal.cerrar();
+    }
+
+    public List<Producto> productos() {
+        return stockBajo;
+    }
+
+    public VersionRecurso version() {
+        return version;
+    }
+
+    /**
+     * El primer evento ({@value #EVENTO_ESTADO}) trae el conjunto completo; los siguientes, cada
+     * producto que entra ({@value #EVENTO_STOCK_BAJO}) o sale ({@value #EVENTO_STOCK_NORMAL}).
+     */
+    public synchronized SseEmitter suscribir() {
+        // Con el lock, ningún cruce queda entre el conjunto enviado y los eventos siguientes
+        SseEmitter emitter = canal.suscribir();
+        canal.enviar(emitter, EVENTO_ESTADO, stockBajo);
+        return emitter;
+    }
+
+    /**
+     * Lee el estado vigente de {@code ids} dentro de la transacción en curso (incluidos sus UPDATE
+     * masivos) y lo aplica al confirmarse. Los ids que ya no existen se dan por eliminados.
+     */
+    public void verificar(Collection<Long> ids) {
+        List<Producto> vigentes = productoRepository.findVigentesByIdIn(ids);
+        Set<Long> eliminados = new HashSet<>(ids);
+        vigentes.forEach(producto -> eliminados.remove(producto.getId()));
+
+        Runnable cambio = () -> {
+            vigentes.forEach(this::aplicar);
+            eliminados.forEach(this::eliminar);
+        };
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    cambio.run();
+                }
+            });
+        } else {
+            cambio.run();
+        }
+    }
+
+    public Map<String, Object> getEstadisticas() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("productosStockBajo", stockBajo.size());
+        stats.put("productosSeguidos", estados.size());
+        stats.put("cruces", cruces.get());
+        stats.put("sse", canal.getEstadisticas());
+        return stats;
+    }
+
+    /**
+     * Aplica una lectura completa de la tabla. Los ids que no aparecen se dan por eliminados, salvo
+     * que algo los haya actualizado durante la lectura; las marcas de eliminación anteriores a la
+     * lectura y confirmadas por ella se descartan, porque ya ningún estado atrasado puede llegar.
+     */
+    private synchronized void reconciliar(List<Producto> vigentes, long inicio) {
+        Set<Long> existentes = new HashSet<>();
+        boolean cambio = false;
+        for (Producto producto : vigentes) {
+            existentes.add(producto.getId());
+            cambio |= registrar(producto);
+        }
+        for (Map.Entry<Long, Estado> entrada : estados.entrySet()) {
+            Estado estado = entrada.getValue();
+            if (existentes.contains(entrada.getKey()) || estado.secuencia() > inicio) {
+                continue;
+            }
+            if (estado.version() == ELIMINADO) {
+                estados.remove(entrada.getKey(), estado);
+            } else {
+                cambio |= marcarEliminado(entrada.getKey()) != null;
+            }
+        }
+        if (cambio) {
+            actualizarConjunto();
+        }
+    }
+
+    private synchronized void aplicar(Producto producto) {
+        Estado anterior = estados.get(producto.getId());
+        if (registrar(producto)) {
+            reemplazar(anterior != null ? anterior.producto() : null, estados.get(producto.getId()).producto());
+        }
+    }
+
+    private synchronized void eliminar(Long id) {
+        Producto listado = marcarEliminado(id);
+        if (listado != null) {
+            reemplazar(listado, null);
+        }
+    }
+
+    /**
+     * Guarda el estado de {@code producto} y publica el cruce de umbral, sin tocar el conjunto.
+     *
+     * @return si cambió lo que muestra el conjunto
+     */
+    private boolean registrar(Producto producto) {
+        Estado anterior = estados.get(producto.getId());
+        if (anterior != null && anterior.version() >= producto.getVersion()) {
+            return false;
+        }
+        boolean bajo = Boolean.TRUE.equals(producto.getActivo()) && producto.getStock() <= producto.getStockMinimo();
+        Producto listado = anterior != null ? anterior.producto() : null;
+        boolean visible = bajo ? listado == null || !mismaAlerta(listado, producto) : listado != null;
+        // Sin cambios visibles se conserva la copia listada, para que el estado y el conjunto coincidan
+        Producto guardado = bajo ? (visible ? producto : listado) : null;
+        estados.put(producto.getId(), new Estado(producto.getVersion(), guardado, secuencia.incrementAndGet()));
+
+        if (bajo != (listado != null)) {
+            publicar(producto, bajo);
+        }
+        return visible;
+    }
+
+    /**
+     * @return la copia que estaba en el conjunto, o {@code null} si no estaba
+     */
+    private Producto marcarEliminado(Long id) {
+        Estado anterior = estados.put(id, new Estado(ELIMINADO, null, secuencia.incrementAndGet()));
+        if (anterior == null || anterior.producto() == null) {
+            return null;
+        }
+        publicar(anterior.producto(), false);
+        return anterior.producto();
+    }
+
+    private static boolean mismaAlerta(Producto a, Producto b) {
+        return Objects.equals(a.getNombre(), b.getNombre())
+                && Objects.equals(a.getPresentacion(), b.getPresentacion())
+                && Objects.equals(a.getStock(), b.getStock())
+                && Objects.equals(a.getStockMinimo(), b.getStockMinimo());
+    }
+
+    // Quita y agrega por búsqueda binaria sobre la lista ordenada: O(N) sin recorrer los estados
+    private void reemplazar(Producto anterior, Producto nuevo) {
+        List<Producto> conjunto = new ArrayList<>(stockBajo);
+        if (anterior != null) {
+            int posicion = Collections.binarySearch(conjunto, anterior, ORDEN);
+            if (posicion >= 0) {
+                conjunto.remove(posicion);
+            }
+        }
+        if (nuevo != null) {
+            int posicion = Collections.binarySearch(conjunto, nuevo, ORDEN);
+            conjunto.add(posicion < 0 ? -posicion - 1 : posicion, nuevo);
+        }
+        publicarConjunto(List.copyOf(conjunto));
+    }
+
+    private void actualizarConjunto() {
+        publicarConjunto(estados.values().stream()
+                .map(Estado::producto)
+                .filter(Objects::nonNull)
+                .sorted(ORDEN)
+                .toList());
+    }
+
+    private void publicarConjunto(List<Producto> conjunto) {
+        stockBajo = conjunto;
+        version = VersionRecurso.de("stock-bajo", instancia, revision.incrementAndGet());
+    }
+
+    private void publicar(Producto producto, boolean bajo) {
+        cruces.incrementAndGet();
+        canal.publicar(bajo ? EVENTO_STOCK_BAJO : EVENTO_STOCK_NORMAL, new AlertaStock(producto.getId(),
+                producto.getNombre(), producto.getStock(), producto.getStockMinimo(), bajo, LocalDateTime.now()));
+    }
+
+    private record Estado(long version, Producto producto, long secuencia) {
+    }
+}
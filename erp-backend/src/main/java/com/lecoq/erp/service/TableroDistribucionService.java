@@ -0,0 +1,247 @@
+package com.lecoq.erp.service;
+
+import com.lecoq.erp.dto.CambioDistribucion;
+import com.lecoq.erp.dto.DistribucionResumen;
+import com.lecoq.erp.entity.Distribucion;
+import com.lecoq.erp.entity.Usuario;
+import com.lecoq.erp.repository.DistribucionRepository;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+/**
+ * Tablero de despacho: publica por Server-Sent Events cada distribución creada y cada cambio de
+ * estado, con los mismos datos que el listado, para que las pantallas no consulten la base
+ * periódicamente. Los eventos salen al confirmarse la transacción y no generan consultas por
+ * suscriptor. Un ADMIN recibe todas las distribuciones y el resto de usuarios solo las suyas,
+ * igual que en {@code GET /api/distribuciones}.
+ * <p>
+ * Los cambios hechos en otras instancias se leen de la tabla cada
+ * {@code app.distribuciones.sse.sync-interval}: una sola consulta por instancia, sobre las filas
+ * actualizadas en los últimos {@code app.distribuciones.sse.sync-margen} (que cubre transacciones
+ * largas y diferencias de reloj). Cada instancia recuerda el último estado que publicó de cada
+ * distribución, así que un cambio sale una sola vez aunque llegue por ambos caminos. Solo se
+ * publica un cambio de estado respecto del último visto, o el alta de una distribución creada
+ * dentro de la ventana; el resto de las filas leídas solo se registra.
+ * <p>
+ * Los últimos {@code app.distribuciones.sse.buffer} eventos se conservan en memoria: un cliente
+ * que reconecta con {@code Last-Event-ID} recibe los que se perdió. Si ese id ya salió del buffer
+ * o es de otra ejecución del servidor (incluida otra instancia), recibe {@value #EVENTO_REINICIO}
+ * y debe recargar el listado.
+ */
+@Service
+public class TableroDistribucionService {
+
+    public static final String EVENTO_CREADA = "distribucion-creada";
+    public static final String EVENTO_ESTADO = "distribucion-estado";
+    public static final String EVENTO_REINICIO = "reinicio";
+
+    private final DistribucionRepository distribucionRepository;
+    private final CanalSse canal;
+    private final int capacidadBuffer;
+    private final long margenSync;
+
+    // Los ids de evento llevan el arranque del servidor: uno de otra ejecución no se confunde
+    private final String arranque = Long.toString(System.currentTimeMillis(), 36);
+
+    private final Deque<Evento> buffer = new ArrayDeque<>();
+    private long secuencia;
+
+    // Último estado publicado por distribución, con la fecha en que se vio; se guarda con el lock
+    private final Map<Long, Publicado> publicados = new HashMap<>();
+    private LocalDateTime ultimaSync;
+
+    private final AtomicLong eventosPublicados = new AtomicLong();
+    private final AtomicLong sincronizados = new AtomicLong();
+    private final AtomicLong reenviados = new AtomicLong();
+    private final AtomicLong reinicios = new AtomicLong();
+
+    public TableroDistribucionService(DistribucionRepository distribucionRepository,
+                                      @Value("${app.distribuciones.sse.timeout:1800000}") long timeoutSse,
+                                      @Value("${app.distribuciones.sse.capacidad-cola:10000}") int capacidadCola,
+                                      @Value("${app.distribuciones.sse.buffer:1000}") int capacidadBuffer,
+                                      @Value("${app.distribuciones.sse.sync-margen:60000}") long margenSync) {
+        this.distribucionRepository = distribucionRepository;
+        this.canal = new CanalSse("distribuciones", timeoutSse, capacidadCola);
+        this.capacidadBuffer = capacidadBuffer;
+        this.margenSync = margenSync;
+    }
+
+    /**
+     * Publica los cambios confirmados en otras instancias. La primera lectura solo registra el
+     * estado actual: lo anterior al arranque ya está en el listado que carga cada cliente.
+     */
+    @Scheduled(fixedDelayString = "${app.distribuciones.sse.sync-interval:2000}")
+    public void sincronizar() {
+        LocalDateTime inicio = LocalDateTime.now();
+        LocalDateTime desde;
+        boolean primera;
+        synchronized (this) {
+            primera = ultimaSync == null;
+            desde = (primera ? inicio : ultimaSync).minus(Duration.ofMillis(margenSync));
+        }
+        List<CambioDistribucion> cambios = distribucionRepository.findActualizadasDesde(desde);
+        synchronized (this) {
+            for (CambioDistribucion cambio : cambios) {
+                DistribucionResumen resumen = cambio.getResumen();
+                Publicado anterior = publicados.get(resumen.getId());
+                // Una edición sin cambio de estado (chofer, placa, dirección) no es un evento; una fila
+                // no vista antes solo se anuncia si se creó dentro de la ventana
+                String tipo = null;
+                if (!primera && anterior != null) {
+                    tipo = anterior.estado() != resumen.getEstado() ? EVENTO_ESTADO : null;
+                } else if (!primera && !cambio.getFechaCreacion().isBefore(desde)) {
+                    tipo = EVENTO_CREADA;
+                }
+                if (tipo != null) {
+                    publicar(tipo, resumen, cambio.getUsuarioId());
+                    sincronizados.incrementAndGet();
+                } else {
+                    // Sigue dentro de la ventana: se renueva para no olvidarla antes de que salga
+                    publicados.put(resumen.getId(), new Publicado(resumen.getEstado(), inicio));
+                }
+            }
+            // Lo que ya salió de la ventana no vuelve a leerse salvo que cambie de nuevo
+            publicados.values().removeIf(publicado -> publicado.visto().isBefore(desde));
+            ultimaSync = inicio;
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.distribuciones.sse.latido:30000}")
+    public void latido() {
+        canal.latido();
+    }
+
+    @PreDestroy
+    void cerrar() {
+        canal.cerrar();
+    }
+
+    /**
+     * @param ultimoEventoId valor de {@code Last-Event-ID}, o {@code null} en la primera conexión
+     */
+    public synchronized SseEmitter suscribir(Usuario usuario, String ultimoEventoId) {
+        Long usuarioId = usuario.getRol() == Usuario.Rol.ADMIN ? null : usuario.getId();
+        Predicate<Object> filtro = ambito -> usuarioId == null || usuarioId.equals(ambito);
+        SseEmitter emitter = canal.suscribir(filtro);
+
+        // Con el lock, el reenvío queda antes de cualquier evento publicado después de suscribirse
+        if (ultimoEventoId != null && !ultimoEventoId.isBlank()) {
+            Long desde = secuenciaDe(ultimoEventoId);
+            Evento primero = buffer.peekFirst();
+            long primeraDisponible = primero != null ? primero.secuencia() : secuencia + 1;
+            if (desde == null || desde > secuencia || desde < primeraDisponible - 1) {
+                reinicios.incrementAndGet();
+                canal.enviar(emitter, EVENTO_REINICIO, idDe(secuencia), Map.of("motivo",
+                        "Los eventos desde " + ultimoEventoId + " ya no están disponibles, recargue el listado"));
+            } else {
+                for (Evento evento : buffer) {
+                    if (evento.secuencia() > desde && filtro.test(evento.usuarioId())) {
+                        canal.enviar(emitter, evento.tipo(), idDe(evento.secuencia()), evento.distribucion());
+                        reenviados.incrementAndGet();
+                    }
+                }
+            }
+        }
+        return emitter;
+    }
+
+    public void creada(Distribucion distribucion) {
+        publicarAlConfirmar(EVENTO_CREADA, distribucion);
+    }
+
+    public void estadoCambiado(Distribucion distribucion) {
+        publicarAlConfirmar(EVENTO_ESTADO, distribucion);
+    }
+
+    public Map<String, Object> getEstadisticas() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("eventosPublicados", eventosPublicados.get());
+        stats.put("eventosDeOtrasInstancias", sincronizados.get());
+        stats.put("eventosReenviados", reenviados.get());
+        stats.put("reinicios", reinicios.get());
+        synchronized (this) {
+            stats.put("enBuffer", buffer.size());
+            stats.put("ultimoEvento", idDe(secuencia));
+        }
+        stats.put("sse", canal.getEstadisticas());
+        return stats;
+    }
+
+    // El resumen se arma dentro de la transacción, donde las asociaciones LAZY siguen accesibles
+    private void publicarAlConfirmar(String tipo, Distribucion distribucion) {
+        DistribucionResumen resumen = resumenDe(distribucion);
+        Long usuarioId = distribucion.getUsuario().getId();
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    publicar(tipo, resumen, usuarioId);
+                }
+            });
+        } else {
+            publicar(tipo, resumen, usuarioId);
+        }
+    }
+
+    private static DistribucionResumen resumenDe(Distribucion distribucion) {
+        return new DistribucionResumen(distribucion.getId(),
+                distribucion.getPedido().getId(), distribucion.getPedido().getNumeroPedido(),
+                distribucion.getChoferNombre(), distribucion.getVehiculoPlaca(), distribucion.getDireccionEntrega(),
+                distribucion.getEstado(), distribucion.getFechaSalida(), distribucion.getFechaEntrega(),
+                distribucion.getUsuario().getNombreCompleto());
+    }
+
+    private synchronized void publicar(String tipo, DistribucionResumen resumen, Long usuarioId) {
+        // La sincronización pudo haber leído el cambio antes de que llegara el afterCommit, o al revés
+        Publicado anterior = publicados.put(resumen.getId(), new Publicado(resumen.getEstado(), LocalDateTime.now()));
+        if (anterior != null && anterior.estado() == resumen.getEstado()) {
+            return;
+        }
+        Evento evento = new Evento(++secuencia, tipo, usuarioId, resumen);
+        buffer.addLast(evento);
+        if (buffer.size() > capacidadBuffer) {
+            buffer.removeFirst();
+        }
+        eventosPublicados.incrementAndGet();
+        canal.publicar(tipo, idDe(evento.secuencia()), resumen, usuarioId);
+    }
+
+    private String idDe(long secuencia) {
+        return arranque + "-" + secuencia;
+    }
+
+    private Long secuenciaDe(String id) {
+        int separador = id.lastIndexOf('-');
+        if (separador < 0 || !id.substring(0, separador).equals(arranque)) {
+            return null;
+        }
+        try {
+            return Long.parseLong(id.substring(separador + 1));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private record Evento(long secuencia, String tipo, Long usuarioId, DistribucionResumen distribucion) {
+    }
+
+    private record Publicado(Distribucion.EstadoDistribucion estado, LocalDateTime visto) {
+    }
+}
@@ -0,0 +1,107 @@
+package com.lecoq.erp.service;
+
+import com.lecoq.erp.config.JwtTokenCache;
+import com.lecoq.erp.entity.TokenRevocado;
+import com.lecoq.erp.repository.TokenRevocadoRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Tokens revocados (logout) indexados por jti. El filtro JWT consulta solo el mapa en memoria;
+ * la tabla {@code tokens_revocados} sirve para reconstruirlo al reiniciar y para propagar las
+ * revocaciones entre instancias. Cada entrada se descarta cuando el token habría expirado.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class TokenRevocationService {
+
+    private final TokenRevocadoRepository tokenRevocadoRepository;
+    private final JwtTokenCache jwtTokenCache;
+
+    // jti -> expiración del token en epoch millis
+    private final Map<String, Long> revocados = new ConcurrentHashMap<>();
+
+    private volatile LocalDateTime ultimaSincronizacion;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void cargarRevocados() {
+        ultimaSincronizacion = LocalDateTime.now();
+        for (TokenRevocado token : tokenRevocadoRepository.findByFechaExpiracionAfter(ultimaSincronizacion)) {
+            registrarEnMemoria(token.getJti(), toEpochMillis(token.getFechaExpiracion()));
+        }
+        log.info("Tokens revocados cargados: {}", revocados.size());
+    }
+
+    /**
+     * Incorpora las revocaciones hechas en otras instancias desde la última sincronización.
+     */
+    @Scheduled(fixedDelayString = "${app.jwt.revocation.sync-interval:30000}")
+    public void sincronizar() {
+        if (ultimaSincronizacion == null) {
+            return;
+        }
+        LocalDateTime ahora = LocalDateTime.now();
+        // Margen para no perder revocaciones confirmadas durante la consulta anterior
+        LocalDateTime desde = ultimaSincronizacion.minusSeconds(5);
+        Set<String> nuevos = new HashSet<>();
+        for (TokenRevocado token : tokenRevocadoRepository.findRevocadosDesde(desde, ahora)) {
+            if (!revocados.containsKey(token.getJti())) {
+                nuevos.add(token.getJti());
+            }
+            registrarEnMemoria(token.getJti(), toEpochMillis(token.getFechaExpiracion()));
+        }
+        jwtTokenCache.invalidateJtis(nuevos);
+        ultimaSincronizacion = ahora;
+    }
+
+    public boolean isRevocado(String jti) {
+        return jti != null && revocados.containsKey(jti);
+    }
+
+    @Transactional
+    public void revocar(String jti, Date expiracion) {
+        if (jti == null || expiracion.getTime() <= System.currentTimeMillis()) {
+            return;
+        }
+        registrarEnMemoria(jti, expiracion.getTime());
+        tokenRevocadoRepository.save(new TokenRevocado(jti,
+                LocalDateTime.ofInstant(expiracion.toInstant(), ZoneId.systemDefault()), LocalDateTime.now()));
+    }
+
+    @Scheduled(fixedDelayString = "${app.jwt.revocation.purge-interval:600000}")
+    @Transactional
+    public void purgarExpirados() {
+        long now = System.currentTimeMillis();
+        revocados.values().removeIf(expiracion -> expiracion <= now);
+        int eliminados = tokenRevocadoRepository.deleteExpirados(LocalDateTime.now());
+        if (eliminados > 0) {
+            log.info("Tokens revocados expirados eliminados: {}", eliminados);
+        }
+    }
+
+    public int size() {
+        return revocados.size();
+    }
+
+    void registrarEnMemoria(String jti, long expiracionMillis) {
+        revocados.put(jti, expiracionMillis);
+    }
+
+    private static long toEpochMillis(LocalDateTime fecha) {
+        return fecha.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+}
@@ -0,0 +1,112 @@
+package com.lecoq.erp.service;
+
+import com.lecoq.erp.entity.Usuario;
+import com.lecoq.erp.repository.UsuarioRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Versión vigente de token por usuario, mantenida en memoria para que el filtro JWT pueda
+ * rechazar tokens obsoletos sin consultar la base de datos. Los cambios locales se aplican al
+ * confirmarse la transacción y cada {@code app.jwt.version.sync-interval} se incorporan los
+ * hechos en otras instancias. Todo cambio de rol, estado o credenciales incrementa la versión,
+ * así que una sincronización que leyó antes de un cambio local no lo pisa.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class TokenVersionService {
+
+    // Versión de un usuario eliminado: ninguna lectura posterior lo vuelve a agregar
+    private static final int ELIMINADO = Integer.MAX_VALUE;
+
+    private final UsuarioRepository usuarioRepository;
+
+    private final Map<Long, Estado> versiones = new ConcurrentHashMap<>();
+    private final AtomicLong secuencia = new AtomicLong();
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void cargarVersiones() {
+        sincronizar();
+        log.info("Versiones de token cargadas para {} usuarios", versiones.size());
+    }
+
+    @Scheduled(fixedDelayString = "${app.jwt.version.sync-interval:30000}",
+               initialDelayString = "${app.jwt.version.sync-interval:30000}")
+    public void sincronizar() {
+        long inicio = secuencia.get();
+        Set<Long> existentes = new HashSet<>();
+        for (Object[] fila : usuarioRepository.findTokenVersions()) {
+            Long id = (Long) fila[0];
+            existentes.add(id);
+            aplicar(id, (Integer) fila[1], Boolean.TRUE.equals(fila[2]));
+        }
+        // Eliminados en otra instancia, salvo que algo los haya registrado durante la lectura
+        versiones.forEach((id, estado) -> {
+            if (!existentes.contains(id) && estado.secuencia() <= inicio) {
+                versiones.remove(id, estado);
+            }
+        });
+    }
+
+    public boolean isVigente(Long usuarioId, Integer tokenVersion) {
+        if (usuarioId == null || tokenVersion == null) {
+            return false;
+        }
+        Estado estado = versiones.get(usuarioId);
+        return estado != null && estado.activo() && estado.version() == tokenVersion;
+    }
+
+    public void registrar(Usuario usuario) {
+        Long id = usuario.getId();
+        int version = usuario.getTokenVersion();
+        boolean activo = Boolean.TRUE.equals(usuario.getActivo());
+        alConfirmar(() -> aplicar(id, version, activo));
+    }
+
+    /**
+     * Incrementa la versión del usuario; los tokens emitidos antes dejan de ser válidos.
+     */
+    public void invalidarTokens(Usuario usuario) {
+        usuario.setTokenVersion(usuario.getTokenVersion() + 1);
+        registrar(usuario);
+    }
+
+    public void eliminar(Long usuarioId) {
+        alConfirmar(() -> aplicar(usuarioId, ELIMINADO, false));
+    }
+
+    private void aplicar(Long id, int version, boolean activo) {
+        versiones.compute(id, (clave, actual) -> actual != null && actual.version() > version
+                ? actual
+                : new Estado(version, activo, secuencia.incrementAndGet()));
+    }
+
+    private void alConfirmar(Runnable cambio) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    cambio.run();
+                }
+            });
+        } else {
+            cambio.run();
+        }
+    }
+
+    private record Estado(int version, boolean activo, long secuencia) {
+    }
+}
@@ -1,13 +1,17 @@
 package com.lecoq.erp.service;
 
+import com.lecoq.erp.config.JwtTokenCache;
 import com.lecoq.erp.entity.Usuario;
 import com.lecoq.erp.repository.UsuarioRepository;
 import lombok.RequiredArgsConstructor;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
 
 @Service
@@ -17,6 +21,8 @@ public class UsuarioService {
 
     private final UsuarioRepository usuarioRepository;
     private final PasswordEncoder passwordEncoder;
+    private final JwtTokenCache jwtTokenCache;
+    private final TokenVersionService tokenVersionService;
 
     public List<Usuario> findAll() {
         return usuarioRepository.findAll();
@@ -46,13 +52,26 @@ public class UsuarioService {
             // Usuario existente - verificar si se debe actualizar la contraseña
             Usuario existente = usuarioRepository.findById(usuario.getId())
                     .orElseThrow(() -> new RuntimeException("Usuario no encontrado"));
+
+            // La versión de token la decide el servidor, igual que en update
+            usuario.setTokenVersion(existente.getTokenVersion());
+            boolean invalidarTokens = !existente.getUsername().equals(usuario.getUsername())
+                    || existente.getRol() != usuario.getRol()
+                    || !Objects.equals(existente.getActivo(), usuario.getActivo());
             
             if (!usuario.getPassword().equals(existente.getPassword())) {
                 // Solo cifrar si la contraseña cambió
                 usuario.setPassword(passwordEncoder.encode(usuario.getPassword()));
+                invalidarTokens = true;
+            }
+            if (invalidarTokens) {
+                tokenVersionService.invalidarTokens(usuario);
             }
+            invalidarCacheAlConfirmar(existente.getUsername());
         }
-        return usuarioRepository.save(usuario);
+        Usuario guardado = usuarioRepository.save(usuario);
+        tokenVersionService.registrar(guardado);
+        return guardado;
     }
 
     public Usuario create(Usuario usuario) {
@@ -65,7 +84,9 @@ public class UsuarioService {
         }
         
         usuario.setPassword(passwordEncoder.encode(usuario.getPassword()));
-        return usuarioRepository.save(usuario);
+        Usuario guardado = usuarioRepository.save(usuario);
+        tokenVersionService.registrar(guardado);
+        return guardado;
     }
 
     public Usuario update(Long id, Usuario usuario) {
@@ -84,6 +105,14 @@ public class UsuarioService {
             throw new RuntimeException("Ya existe un usuario con ese email");
         }
 
+        // Los tokens emitidos con el username anterior dejan de estar en cache
+        invalidarCacheAlConfirmar(existente.getUsername());
+
+        boolean invalidarTokens = !existente.getUsername().equals(usuario.getUsername())
+                || existente.getRol() != usuario.getRol()
+                || !Objects.equals(existente.getActivo(), usuario.getActivo())
+                || !Boolean.TRUE.equals(usuario.getActivo());
+
         existente.setUsername(usuario.getUsername());
         existente.setNombreCompleto(usuario.getNombreCompleto());
         existente.setEmail(usuario.getEmail());
@@ -93,12 +122,22 @@ public class UsuarioService {
         // Solo actualizar contraseña si se proporcionó una nueva
         if (usuario.getPassword() != null && !usuario.getPassword().trim().isEmpty()) {
             existente.setPassword(passwordEncoder.encode(usuario.getPassword()));
+            invalidarTokens = true;
+        }
+
+        if (invalidarTokens) {
+            tokenVersionService.invalidarTokens(existente);
+        } else {
+            tokenVersionService.registrar(existente);
         }
 
         return usuarioRepository.save(existente);
     }
 
     public void deleteById(Long id) {
+        usuarioRepository.findById(id)
+                .ifPresent(usuario -> invalidarCacheAlConfirmar(usuario.getUsername()));
+        tokenVersionService.eliminar(id);
         usuarioRepository.deleteById(id);
     }
 
@@ -106,13 +145,17 @@ public class UsuarioService {
         Usuario usuario = usuarioRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Usuario no encontrado"));
         usuario.setActivo(false);
+        tokenVersionService.invalidarTokens(usuario);
         usuarioRepository.save(usuario);
+        invalidarCacheAlConfirmar(usuario.getUsername());
     }
 
     public void activate(Long id) {
         Usuario usuario = usuarioRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Usuario no encontrado"));
         usuario.setActivo(true);
+        // Cada cambio de estado incrementa la versión para que las sincronizaciones lo ordenen
+        tokenVersionService.invalidarTokens(usuario);
         usuarioRepository.save(usuario);
     }
 
@@ -123,4 +166,18 @@ public class UsuarioService {
     public List<Usuario> findActiveUsersByRol(Usuario.Rol rol) {
         return usuarioRepository.findActiveUsersByRol(rol);
     }
+
+    // Antes del commit, una petición concurrente podría volver a cachear el principal anterior
+    private void invalidarCacheAlConfirmar(String username) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    jwtTokenCache.invalidateUser(username);
+                }
+            });
+        } else {
+            jwtTokenCache.invalidateUser(username);
+        }
+    }
 }
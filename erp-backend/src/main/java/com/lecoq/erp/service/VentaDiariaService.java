@@ -0,0 +1,192 @@
+package com.lecoq.erp.service;
+
+import com.lecoq.erp.dto.VentaAgregada;
+import com.lecoq.erp.entity.DetallePedido;
+import com.lecoq.erp.entity.Pedido;
+import com.lecoq.erp.repository.VentaDiariaRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Acumulado diario de ventas (día, producto, vendedor). Un pedido suma mientras está en un
+ * estado de venta y resta al salir de él; el ajuste se hace con upserts aditivos en la misma
+ * transacción del cambio de estado, por lo que los reportes no agregan pedidos en vivo.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class VentaDiariaService {
+
+    private static final Set<Pedido.EstadoPedido> ESTADOS_VENTA = EnumSet.of(
+            Pedido.EstadoPedido.CONFIRMADO, Pedido.EstadoPedido.EN_PREPARACION,
+            Pedido.EstadoPedido.ENVIADO, Pedido.EstadoPedido.ENTREGADO);
+
+    private static final String UPSERT =
+            "INSERT INTO ventas_diarias (fecha, producto_id, usuario_id, cantidad, importe, lineas) " +
+            "VALUES (?, ?, ?, ?, ?, ?) ON DUPLICATE KEY UPDATE " +
+            "cantidad = cantidad + VALUES(cantidad), importe = importe + VALUES(importe), lineas = lineas + VALUES(lineas)";
+
+    private static final String ELIMINAR_RANGO = "DELETE FROM ventas_diarias WHERE fecha BETWEEN ? AND ?";
+
+    private static final String RECALCULAR_RANGO =
+            "INSERT INTO ventas_diarias (fecha, producto_id, usuario_id, cantidad, importe, lineas) " +
+            "SELECT DATE(p.fecha_pedido), d.producto_id, p.usuario_id, SUM(d.cantidad), SUM(d.subtotal), COUNT(*) " +
+            "FROM pedidos p JOIN detalles_pedido d ON d.pedido_id = p.id " +
+            "WHERE p.fecha_pedido >= ? AND p.fecha_pedido < ? AND p.estado IN ('CONFIRMADO', 'EN_PREPARACION', 'ENVIADO', 'ENTREGADO') " +
+            "GROUP BY DATE(p.fecha_pedido), d.producto_id, p.usuario_id";
+
+    private final VentaDiariaRepository ventaDiariaRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${app.reportes.reconstruccion.hilos:4}")
+    private int hilosReconstruccion;
+
+    @Value("${app.reportes.reconstruccion.dias-por-lote:7}")
+    private int diasPorLote;
+
+    private final AtomicBoolean reconstruyendo = new AtomicBoolean();
+
+    public static boolean esVenta(Pedido.EstadoPedido estado) {
+        return ESTADOS_VENTA.contains(estado);
+    }
+
+    /**
+     * Ajusta el acumulado por un cambio de estado: suma si el pedido entra a un estado de venta,
+     * resta si sale y no hace nada en otro caso.
+     */
+    @Transactional
+    public void registrarCambioEstado(Pedido pedido, Pedido.EstadoPedido anterior, Pedido.EstadoPedido nuevo) {
+        registrarCambiosEstado(List.of(pedido), anterior, nuevo);
+    }
+
+    @Transactional
+    public void registrarCambiosEstado(Collection<Pedido> pedidos, Pedido.EstadoPedido anterior, Pedido.EstadoPedido nuevo) {
+        if (esVenta(anterior) == esVenta(nuevo)) {
+            return;
+        }
+        acumular(pedidos, esVenta(nuevo) ? 1 : -1);
+    }
+
+    /**
+     * Resta del acumulado un pedido que se elimina estando en un estado de venta.
+     */
+    @Transactional
+    public void registrarEliminacion(Pedido pedido) {
+        if (esVenta(pedido.getEstado())) {
+            acumular(List.of(pedido), -1);
+        }
+    }
+
+    @Transactional(readOnly = true)
+    public List<VentaAgregada> porDia(LocalDate desde, LocalDate hasta) {
+        return ventaDiariaRepository.sumarPorDia(desde, hasta);
+    }
+
+    @Transactional(readOnly = true)
+    public List<VentaAgregada> porProducto(LocalDate desde, LocalDate hasta) {
+        return ventaDiariaRepository.sumarPorProducto(desde, hasta);
+    }
+
+    @Transactional(readOnly = true)
+    public List<VentaAgregada> porUsuario(LocalDate desde, LocalDate hasta) {
+        return ventaDiariaRepository.sumarPorUsuario(desde, hasta);
+    }
+
+    /**
+     * Recalcula el acumulado del rango desde los pedidos. El rango se divide en lotes de
+     * {@code app.reportes.reconstruccion.dias-por-lote} días que se procesan en paralelo, cada uno
+     * en su propia transacción (borrado del lote y INSERT ... SELECT agregado).
+     *
+     * @return resumen con la cantidad de lotes, las filas regeneradas y la duración
+     */
+    public Map<String, Object> reconstruir(LocalDate desde, LocalDate hasta) {
+        if (desde.isAfter(hasta)) {
+            throw new IllegalArgumentException("La fecha inicial no puede ser posterior a la final");
+        }
+        if (!reconstruyendo.compareAndSet(false, true)) {
+            throw new IllegalStateException("Ya hay una reconstrucción del reporte de ventas en curso");
+        }
+        long inicio = System.currentTimeMillis();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, hilosReconstruccion));
+        try {
+            List<Future<Integer>> lotes = new ArrayList<>();
+            for (LocalDate loteDesde = desde; !loteDesde.isAfter(hasta); loteDesde = loteDesde.plusDays(diasPorLote)) {
+                LocalDate d = loteDesde;
+                LocalDate h = loteDesde.plusDays(diasPorLote - 1L).isAfter(hasta) ? hasta : loteDesde.plusDays(diasPorLote - 1L);
+                lotes.add(executor.submit(() -> transactionTemplate.execute(status -> reconstruirLote(d, h))));
+            }
+            int filas = 0;
+            for (Future<Integer> lote : lotes) {
+                filas += lote.get();
+            }
+
+            Map<String, Object> resultado = new LinkedHashMap<>();
+            resultado.put("desde", desde);
+            resultado.put("hasta", hasta);
+            resultado.put("lotes", lotes.size());
+            resultado.put("filas", filas);
+            resultado.put("milisegundos", System.currentTimeMillis() - inicio);
+            log.info("Reporte de ventas reconstruido {} - {}: {} filas en {} lotes", desde, hasta, filas, lotes.size());
+            return resultado;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Reconstrucción interrumpida", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Error reconstruyendo el reporte de ventas: " + e.getCause().getMessage(), e.getCause());
+        } finally {
+            executor.shutdownNow();
+            reconstruyendo.set(false);
+        }
+    }
+
+    private int reconstruirLote(LocalDate desde, LocalDate hasta) {
+        jdbcTemplate.update(ELIMINAR_RANGO, Date.valueOf(desde), Date.valueOf(hasta));
+        return jdbcTemplate.update(RECALCULAR_RANGO,
+                Timestamp.valueOf(desde.atStartOfDay()), Timestamp.valueOf(hasta.plusDays(1).atStartOfDay()));
+    }
+
+    private void acumular(Collection<Pedido> pedidos, int signo) {
+        // Ordenadas por clave para que transacciones concurrentes tomen los bloqueos en el mismo orden
+        Map<String, Object[]> filas = new TreeMap<>();
+        for (Pedido pedido : pedidos) {
+            LocalDate fecha = pedido.getFechaPedido().toLocalDate();
+            Long usuarioId = pedido.getUsuario().getId();
+            for (DetallePedido detalle : pedido.getDetalles()) {
+                Long productoId = detalle.getProducto().getId();
+                String clave = String.format("%s|%019d|%019d", fecha, productoId, usuarioId);
+                Object[] fila = filas.computeIfAbsent(clave,
+                        k -> new Object[]{Date.valueOf(fecha), productoId, usuarioId, 0L, BigDecimal.ZERO, 0L});
+                fila[3] = (Long) fila[3] + (long) signo * detalle.getCantidad();
+                fila[4] = ((BigDecimal) fila[4]).add(detalle.getSubtotal().multiply(BigDecimal.valueOf(signo)));
+                fila[5] = (Long) fila[5] + signo;
+            }
+        }
+        if (!filas.isEmpty()) {
+            jdbcTemplate.batchUpdate(UPSERT, new ArrayList<>(filas.values()));
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package com.lecoq.erp.service;
+
+import com.lecoq.erp.dto.VersionRecurso;
+import com.lecoq.erp.entity.Producto;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+/**
+ * Calcula los validadores de los GET condicionales con consultas de agregación (versión, fecha de
+ * actualización y conteos), sin cargar las entidades. Cada validador cubre todas las filas que
+ * aparecen en la respuesta: el detalle de un pedido cambia también si cambia uno de sus productos.
+ * Los listados combinan conteo, id máximo, suma de versiones y fecha máxima, de modo que una
+ * inserción, un borrado o una actualización cambian el ETag aunque los relojes no coincidan.
+ */
+@Service
+@Transactional(readOnly = true)
+public class VersionRecursoService {
+
+    private static final String PRODUCTO =
+            "SELECT p.version, p.fechaActualizacion FROM Producto p WHERE p.id = :id";
+
+    private static final String PRODUCTOS =
+            "SELECT COUNT(p), MAX(p.id), SUM(p.version), MAX(p.fechaActualizacion) FROM Producto p";
+
+    private static final String USUARIOS =
+            "SELECT COUNT(u), MAX(u.id), MAX(u.fechaActualizacion) FROM Usuario u";
+
+    private static final String PEDIDO =
+            "SELECT p.version, p.fechaActualizacion, u.fechaActualizacion, " +
+            "COUNT(d), SUM(pr.version), MAX(pr.fechaActualizacion) " +
+            "FROM Pedido p JOIN p.usuario u LEFT JOIN p.detalles d LEFT JOIN d.producto pr " +
+            "WHERE p.id = :id GROUP BY p.id, p.version, p.fechaActualizacion, u.fechaActualizacion";
+
+    private static final String MAQUILADO =
+            "SELECT m.version, m.fechaActualizacion, u.fechaActualizacion, " +
+            "COUNT(d), SUM(pr.version), MAX(pr.fechaActualizacion) " +
+            "FROM Maquilado m JOIN m.usuario u LEFT JOIN m.detalles d LEFT JOIN d.producto pr " +
+            "WHERE m.id = :id GROUP BY m.id, m.version, m.fechaActualizacion, u.fechaActualizacion";
+
+    private static final String DISTRIBUCION =
+            "SELECT d.version, d.fechaActualizacion, u.fechaActualizacion, p.version, p.fechaActualizacion " +
+            "FROM Distribucion d JOIN d.usuario u JOIN d.pedido p WHERE d.id = :id";
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    public Optional<VersionRecurso> producto(Long id) {
+        return porId("producto", PRODUCTO, id);
+    }
+
+    /**
+     * Un único validador para los listados del catálogo: la tabla es pequeña y cualquier cambio
+     * puede mover un producto de un listado a otro (activo, con stock, stock bajo).
+     */
+    public VersionRecurso productos() {
+        return VersionRecurso.de("productos", fila(PRODUCTOS, null));
+    }
+
+    /**
+     * Validador de un producto ya cargado (posiblemente desde {@link CatalogoProductoCache}). Usa
+     * los mismos componentes que {@link #producto(Long)}, así que el ETag coincide con el de la base
+     * cuando el cache está al día, y nunca anuncia una versión más nueva que el cuerpo servido.
+     */
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public VersionRecurso producto(Producto producto) {
+        return VersionRecurso.de("producto:" + producto.getId(), producto.getVersion(), producto.getFechaActualizacion());
+    }
+
+    /**
+     * Validador de un listado del catálogo calculado sobre las mismas filas que se responden: la
+     * lista puede venir del cache y estar detrás de la base en otra instancia.
+     */
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public VersionRecurso productos(String listado, List<Producto> productos) {
+        Object[] componentes = productos.stream()
+                .flatMap(p -> Stream.of(p.getId() + "@" + p.getVersion(), p.getFechaActualizacion()))
+                .toArray();
+        return VersionRecurso.de("productos:" + listado, componentes);
+    }
+
+    public Optional<VersionRecurso> pedido(Long id) {
+        return porId("pedido", PEDIDO, id);
+    }
+
+    public Optional<VersionRecurso> maquilado(Long id) {
+        return porId("maquilado", MAQUILADO, id);
+    }
+
+    public Optional<VersionRecurso> distribucion(Long id) {
+        return porId("distribucion", DISTRIBUCION, id);
+    }
+
+    /**
+     * Listado paginado de maquilados de un usuario ({@code null} para todos). Incluye a los
+     * usuarios porque el resumen muestra su nombre.
+     */
+    public VersionRecurso maquilados(Long usuarioId) {
+        return listado("maquilados", "Maquilado", usuarioId);
+    }
+
+    public VersionRecurso distribuciones(Long usuarioId) {
+        return listado("distribuciones", "Distribucion", usuarioId);
+    }
+
+    private VersionRecurso listado(String recurso, String entidad, Long usuarioId) {
+        String jpql = "SELECT COUNT(e), MAX(e.id), SUM(e.version), MAX(e.fechaActualizacion) FROM " + entidad + " e" +
+                (usuarioId == null ? "" : " WHERE e.usuario.id = :usuarioId");
+        Object[] componentes = Stream.concat(Stream.of(fila(jpql, usuarioId)), Stream.of(fila(USUARIOS, null)))
+                .toArray();
+        return VersionRecurso.de(recurso + ":" + usuarioId, componentes);
+    }
+
+    private Optional<VersionRecurso> porId(String recurso, String jpql, Long id) {
+        List<Object[]> filas = entityManager.createQuery(jpql, Object[].class)
+                .setParameter("id", id)
+                .getResultList();
+        return filas.stream().findFirst().map(fila -> VersionRecurso.de(recurso + ":" + id, fila));
+    }
+
+    private Object[] fila(String jpql, Long usuarioId) {
+        var query = entityManager.createQuery(jpql, Object[].class);
+        if (usuarioId != null) {
+            query.setParameter("usuarioId", usuarioId);
+        }
+        return query.getSingleResult();
+    }
+}
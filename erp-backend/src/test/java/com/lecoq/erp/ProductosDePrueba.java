@@ -0,0 +1,59 @@
+package com.lecoq.erp;
+
+import com.lecoq.erp.entity.Producto;
+import com.lecoq.erp.repository.ProductoRepository;
+import com.lecoq.erp.service.ProductoService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Productos creados por los tests de integración. {@link #limpiar()} los borra junto con los
+ * movimientos de kardex y los snapshots que generaron, para no dejar filas en el ledger.
+ */
+@Component
+@RequiredArgsConstructor
+public class ProductosDePrueba {
+
+    public static final int STOCK_INICIAL = 100;
+
+    private final ProductoService productoService;
+    private final ProductoRepository productoRepository;
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    private final List<Long> creados = new ArrayList<>();
+
+    public Producto crear(String nombre) {
+        return crear(nombre, STOCK_INICIAL);
+    }
+
+    public Producto crear(String nombre, int stock) {
+        Producto producto = new Producto();
+        producto.setNombre(nombre + " " + System.nanoTime());
+        producto.setPresentacion("Lata 250ml");
+        producto.setPrecio(new BigDecimal("3.50"));
+        producto.setStock(stock);
+        Producto nuevo = productoService.create(producto);
+        creados.add(nuevo.getId());
+        return nuevo;
+    }
+
+    /**
+     * Llamar después de borrar los pedidos y distribuciones que usan estos productos.
+     */
+    public void limpiar() {
+        if (creados.isEmpty()) {
+            return;
+        }
+        Map<String, Object> ids = Map.of("ids", creados);
+        jdbcTemplate.update("DELETE FROM movimientos_stock WHERE producto_id IN (:ids)", ids);
+        jdbcTemplate.update("DELETE FROM snapshots_stock WHERE producto_id IN (:ids)", ids);
+        productoRepository.deleteAllById(creados);
+        creados.clear();
+    }
+}
@@ -0,0 +1,146 @@
+package com.lecoq.erp.controller;
+
+import com.lecoq.erp.ProductosDePrueba;
+import com.lecoq.erp.entity.DetallePedido;
+import com.lecoq.erp.entity.Pedido;
+import com.lecoq.erp.entity.Producto;
+import com.lecoq.erp.repository.PedidoRepository;
+import com.lecoq.erp.service.PedidoService;
+import com.lecoq.erp.service.ProductoService;
+import com.lecoq.erp.service.ReservaStockService;
+import com.lecoq.erp.service.UsuarioService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * GET condicionales de productos y pedidos: 304 mientras el validador no cambia, 200 con un ETag
+ * nuevo después de una escritura, y Last-Modified utilizable con {@code If-Modified-Since}.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@WithMockUser(roles = "ADMIN")
+class RespuestaCondicionalTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ProductoService productoService;
+
+    @Autowired
+    private PedidoService pedidoService;
+
+    @Autowired
+    private UsuarioService usuarioService;
+
+    @Autowired
+    private ReservaStockService reservaStockService;
+
+    @Autowired
+    private PedidoRepository pedidoRepository;
+
+    @Autowired
+    private ProductosDePrueba productosDePrueba;
+
+    private Producto producto;
+    private Long pedidoId;
+
+    @AfterEach
+    void limpiar() {
+        if (pedidoId != null) {
+            reservaStockService.liberar(pedidoId);
+            pedidoRepository.deleteById(pedidoId);
+        }
+        productosDePrueba.limpiar();
+    }
+
+    @Test
+    void productoDevuelve304HastaQueCambia() throws Exception {
+        producto = crearProducto();
+        String url = "/api/productos/" + producto.getId();
+
+        MvcResult primera = mockMvc.perform(get(url))
+                .andExpect(status().isOk())
+                .andExpect(header().exists(HttpHeaders.LAST_MODIFIED))
+                .andReturn();
+        String etag = primera.getResponse().getHeader(HttpHeaders.ETAG);
+        assertNotNull(etag);
+
+        mockMvc.perform(get(url).header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+        mockMvc.perform(get(url).header(HttpHeaders.IF_MODIFIED_SINCE,
+                        primera.getResponse().getHeader(HttpHeaders.LAST_MODIFIED)))
+                .andExpect(status().isNotModified());
+
+        productoService.actualizarStock(producto.getId(), -1);
+
+        String nuevoEtag = mockMvc.perform(get(url).header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        assertNotEquals(etag, nuevoEtag, "Un ajuste de stock debe cambiar el ETag del producto");
+    }
+
+    @Test
+    void pedidoDevuelve304HastaQueCambia() throws Exception {
+        producto = crearProducto();
+        Long usuarioId = usuarioService.findByUsername("admin").orElseThrow().getId();
+        pedidoId = pedidoService.create(nuevoPedido(), usuarioId).getId();
+        String url = "/api/pedidos/" + pedidoId;
+
+        MvcResult primera = mockMvc.perform(get(url))
+                .andExpect(status().isOk())
+                .andExpect(header().exists(HttpHeaders.LAST_MODIFIED))
+                .andReturn();
+        String etag = primera.getResponse().getHeader(HttpHeaders.ETAG);
+        assertNotNull(etag);
+
+        mockMvc.perform(get(url).header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+        mockMvc.perform(get(url).header(HttpHeaders.IF_MODIFIED_SINCE,
+                        primera.getResponse().getHeader(HttpHeaders.LAST_MODIFIED)))
+                .andExpect(status().isNotModified());
+
+        pedidoService.cambiarEstado(pedidoId, Pedido.EstadoPedido.CONFIRMADO);
+
+        String nuevoEtag = mockMvc.perform(get(url).header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        assertNotEquals(etag, nuevoEtag, "Un cambio de estado debe cambiar el ETag del pedido");
+    }
+
+    private Producto crearProducto() {
+        return productosDePrueba.crear("Producto condicional", 10);
+    }
+
+    private Pedido nuevoPedido() {
+        DetallePedido detalle = new DetallePedido();
+        Producto referencia = new Producto();
+        referencia.setId(producto.getId());
+        detalle.setProducto(referencia);
+        detalle.setCantidad(1);
+
+        Pedido pedido = new Pedido();
+        pedido.setClienteNombre("Cliente condicional");
+        pedido.setDetalles(new ArrayList<>(List.of(detalle)));
+        return pedido;
+    }
+}
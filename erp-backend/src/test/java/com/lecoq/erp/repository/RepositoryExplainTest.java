@@ -0,0 +1,330 @@
+package com.lecoq.erp.repository;
+
+import com.lecoq.erp.entity.Distribucion;
+import com.lecoq.erp.entity.Maquilado;
+import com.lecoq.erp.entity.Pedido;
+import com.lecoq.erp.entity.Usuario;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Ejecuta cada finder de pedidos, maquilados y distribuciones contra datos sembrados y pasa la
+ * SQL que genera Hibernate, con sus parámetros, por EXPLAIN. Falla si alguna consulta recorre
+ * una tabla completa o necesita ordenar en memoria (filesort).
+ *
+ * <p>Los datos imitan la distribución real: la mayoría de documentos en estado final, muchos
+ * usuarios y fechas repartidas en un año, para que el optimizador elija como lo haría en producción.
+ */
+@SpringBootTest
+@Import(RepositoryExplainTest.CapturaPlanes.class)
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class RepositoryExplainTest {
+
+    private static final long ID_BASE = 900_000_000L;
+    private static final int FILAS = 3000;
+    private static final int USUARIOS = 20;
+    private static final String PREFIJO_USUARIO = "explain_seed_";
+
+    // Un recorrido completo de una tabla pequeña (usuarios, productos) no es un problema
+    private static final long FILAS_MAXIMAS_SCAN = 100;
+
+    @Autowired
+    private PedidoRepository pedidoRepository;
+
+    @Autowired
+    private MaquiladoRepository maquiladoRepository;
+
+    @Autowired
+    private DistribucionRepository distribucionRepository;
+
+    @Autowired
+    private UsuarioRepository usuarioRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final List<Long> usuarioIds = new ArrayList<>();
+    private final LocalDateTime inicio = LocalDateTime.now().minusDays(365).withNano(0);
+    private final List<String> fallos = new ArrayList<>();
+
+    @BeforeAll
+    void sembrar() {
+        limpiar();
+        for (int i = 0; i < USUARIOS; i++) {
+            jdbcTemplate.update("INSERT INTO usuarios (username, password, nombre_completo, email, rol, activo, token_version) " +
+                    "VALUES (?, 'x', 'Usuario explain', ?, 'VENTAS', true, 0)", PREFIJO_USUARIO + i, PREFIJO_USUARIO + i + "@lecoq.test");
+        }
+        usuarioIds.addAll(jdbcTemplate.queryForList(
+                "SELECT id FROM usuarios WHERE username LIKE ? ORDER BY id", Long.class, PREFIJO_USUARIO + "%"));
+
+        List<Object[]> pedidos = new ArrayList<>();
+        List<Object[]> maquilados = new ArrayList<>();
+        List<Object[]> distribuciones = new ArrayList<>();
+        for (int i = 0; i < FILAS; i++) {
+            Timestamp fecha = Timestamp.valueOf(fecha(i));
+            Long usuarioId = usuarioIds.get(i % USUARIOS);
+            pedidos.add(new Object[]{ID_BASE + i, "EXPLAIN-P-" + i, "Cliente " + i, BigDecimal.TEN,
+                    estado(i, "PENDIENTE", "CONFIRMADO", "ENTREGADO"), fecha, usuarioId});
+            maquilados.add(new Object[]{ID_BASE + i, "EXPLAIN-M-" + i, "Proveedor " + i, BigDecimal.TEN,
+                    estado(i, "PENDIENTE", "EN_PROCESO", "RECIBIDO"), fecha, usuarioId});
+            distribuciones.add(new Object[]{ID_BASE + i, ID_BASE + i, "Chofer " + i, "EXP-" + (i % 300),
+                    fecha, estado(i, "PROGRAMADO", "EN_RUTA", "ENTREGADO"), "Dirección " + i, usuarioId});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO pedidos (id, numero_pedido, cliente_nombre, total, estado, fecha_pedido, " +
+                "usuario_id, version) VALUES (?, ?, ?, ?, ?, ?, ?, 0)", pedidos);
+        jdbcTemplate.batchUpdate("INSERT INTO maquilados (id, numero_orden, proveedor_nombre, costo_total, estado, fecha_orden, " +
+                "usuario_id, version) VALUES (?, ?, ?, ?, ?, ?, ?, 0)", maquilados);
+        jdbcTemplate.batchUpdate("INSERT INTO distribuciones (id, pedido_id, chofer_nombre, vehiculo_placa, fecha_salida, estado, " +
+                "direccion_entrega, usuario_id, version) VALUES (?, ?, ?, ?, ?, ?, ?, ?, 0)", distribuciones);
+        jdbcTemplate.execute("ANALYZE TABLE pedidos, maquilados, distribuciones");
+    }
+
+    @BeforeEach
+    void reiniciarFallos() {
+        fallos.clear();
+    }
+
+    @AfterAll
+    void limpiar() {
+        jdbcTemplate.update("DELETE FROM distribuciones WHERE id >= ?", ID_BASE);
+        jdbcTemplate.update("DELETE FROM pedidos WHERE id >= ?", ID_BASE);
+        jdbcTemplate.update("DELETE FROM maquilados WHERE id >= ?", ID_BASE);
+        jdbcTemplate.update("DELETE FROM usuarios WHERE username LIKE ?", PREFIJO_USUARIO + "%");
+    }
+
+    @Test
+    void findersDePedidosUsanIndices() {
+        Usuario usuario = usuarioRepository.findById(usuarioIds.get(0)).orElseThrow();
+        LocalDateTime medio = fecha(FILAS / 2);
+
+        verificar("findByNumeroPedido", () -> pedidoRepository.findByNumeroPedido("EXPLAIN-P-10"));
+        verificar("findByUsuario", () -> pedidoRepository.findByUsuario(usuario));
+        verificar("findByEstado", () -> pedidoRepository.findByEstado(Pedido.EstadoPedido.PENDIENTE));
+        verificar("findPedidosByFechaPedidoBetween",
+                () -> pedidoRepository.findPedidosByFechaPedidoBetween(medio, medio.plusDays(1)));
+        verificar("findByEstadoIn", () -> pedidoRepository.findByEstadoIn(List.of(Pedido.EstadoPedido.PENDIENTE)));
+        verificarSinScan("findByEstadoIn (varios estados)", () -> pedidoRepository.findByEstadoIn(
+                List.of(Pedido.EstadoPedido.PENDIENTE, Pedido.EstadoPedido.CONFIRMADO)));
+        verificar("findByUsuarioId", () -> pedidoRepository.findByUsuarioId(usuario.getId()));
+        verificar("findDetalleById", () -> pedidoRepository.findDetalleById(ID_BASE));
+        verificar("findConDetallesByIdIn", () -> pedidoRepository.findConDetallesByIdIn(List.of(ID_BASE, ID_BASE + 1)));
+        verificar("findPrimeraPagina", () -> pedidoRepository.findPrimeraPagina(PageRequest.of(0, 50)));
+        verificar("findPaginaDespuesDe", () -> pedidoRepository.findPaginaDespuesDe(medio, ID_BASE, PageRequest.of(0, 50)));
+        verificar("findPrimeraPaginaByUsuarioId",
+                () -> pedidoRepository.findPrimeraPaginaByUsuarioId(usuario.getId(), PageRequest.of(0, 50)));
+        verificar("findPaginaByUsuarioIdDespuesDe", () -> pedidoRepository.findPaginaByUsuarioIdDespuesDe(
+                usuario.getId(), medio, ID_BASE, PageRequest.of(0, 50)));
+
+        assertTrue(fallos.isEmpty(), String.join("\n", fallos));
+    }
+
+    @Test
+    void findersDeMaquiladosUsanIndices() {
+        Usuario usuario = usuarioRepository.findById(usuarioIds.get(0)).orElseThrow();
+        LocalDateTime medio = fecha(FILAS / 2);
+
+        verificar("findByNumeroOrden", () -> maquiladoRepository.findByNumeroOrden("EXPLAIN-M-10"));
+        verificar("findByUsuario", () -> maquiladoRepository.findByUsuario(usuario));
+        verificar("findByEstado", () -> maquiladoRepository.findByEstado(Maquilado.EstadoMaquilado.PENDIENTE));
+        verificar("findByFechaOrdenBetween", () -> maquiladoRepository.findByFechaOrdenBetween(medio, medio.plusDays(1)));
+        verificar("findByEstadoIn", () -> maquiladoRepository.findByEstadoIn(List.of(Maquilado.EstadoMaquilado.PENDIENTE)));
+        verificarSinScan("findByEstadoIn (varios estados)", () -> maquiladoRepository.findByEstadoIn(
+                List.of(Maquilado.EstadoMaquilado.PENDIENTE, Maquilado.EstadoMaquilado.EN_PROCESO)));
+        verificar("findByUsuarioId", () -> maquiladoRepository.findByUsuarioId(usuario.getId()));
+        verificar("findDetalleById", () -> maquiladoRepository.findDetalleById(ID_BASE));
+        verificar("findPrimeraPagina", () -> maquiladoRepository.findPrimeraPagina(PageRequest.of(0, 50)));
+        verificar("findPaginaDespuesDe", () -> maquiladoRepository.findPaginaDespuesDe(medio, ID_BASE, PageRequest.of(0, 50)));
+        verificar("findPrimeraPaginaByUsuarioId",
+                () -> maquiladoRepository.findPrimeraPaginaByUsuarioId(usuario.getId(), PageRequest.of(0, 50)));
+        verificar("findPaginaByUsuarioIdDespuesDe", () -> maquiladoRepository.findPaginaByUsuarioIdDespuesDe(
+                usuario.getId(), medio, ID_BASE, PageRequest.of(0, 50)));
+        // findByIdIncrementandoVersion es la misma búsqueda por clave primaria que findDetalleById
+
+        assertTrue(fallos.isEmpty(), String.join("\n", fallos));
+    }
+
+    @Test
+    void findersDeDistribucionesUsanIndices() {
+        Usuario usuario = usuarioRepository.findById(usuarioIds.get(0)).orElseThrow();
+        Pedido pedido = pedidoRepository.findById(ID_BASE).orElseThrow();
+        LocalDateTime medio = fecha(FILAS / 2);
+
+        verificar("findByPedido", () -> distribucionRepository.findByPedido(pedido));
+        verificar("findByUsuario", () -> distribucionRepository.findByUsuario(usuario));
+        verificar("findByEstado", () -> distribucionRepository.findByEstado(Distribucion.EstadoDistribucion.PROGRAMADO));
+        verificar("findByVehiculoPlaca", () -> distribucionRepository.findByVehiculoPlaca("EXP-7"));
+        verificar("findByFechaSalidaBetween",
+                () -> distribucionRepository.findByFechaSalidaBetween(medio, medio.plusDays(1)));
+        verificar("findByEstadoIn",
+                () -> distribucionRepository.findByEstadoIn(List.of(Distribucion.EstadoDistribucion.PROGRAMADO)));
+        verificarSinScan("findByEstadoIn (varios estados)", () -> distribucionRepository.findByEstadoIn(
+                List.of(Distribucion.EstadoDistribucion.PROGRAMADO, Distribucion.EstadoDistribucion.EN_RUTA)));
+        verificar("findByUsuarioId", () -> distribucionRepository.findByUsuarioId(usuario.getId()));
+        verificar("findPrimeraPagina", () -> distribucionRepository.findPrimeraPagina(PageRequest.of(0, 50)));
+        verificar("findPaginaDespuesDe",
+                () -> distribucionRepository.findPaginaDespuesDe(medio, ID_BASE, PageRequest.of(0, 50)));
+        verificar("findPrimeraPaginaByUsuarioId",
+                () -> distribucionRepository.findPrimeraPaginaByUsuarioId(usuario.getId(), PageRequest.of(0, 50)));
+        verificar("findPaginaByUsuarioIdDespuesDe", () -> distribucionRepository.findPaginaByUsuarioIdDespuesDe(
+                usuario.getId(), medio, ID_BASE, PageRequest.of(0, 50)));
+
+        assertTrue(fallos.isEmpty(), String.join("\n", fallos));
+    }
+
+    private void verificar(String finder, Runnable consulta) {
+        verificar(finder, consulta, true);
+    }
+
+    /**
+     * Para IN con varios valores y ORDER BY: cada valor es un rango distinto del índice y MySQL
+     * no puede recorrerlos en orden, así que el filesort de las filas encontradas es inevitable.
+     */
+    private void verificarSinScan(String finder, Runnable consulta) {
+        verificar(finder, consulta, false);
+    }
+
+    private void verificar(String finder, Runnable consulta, boolean sinFilesort) {
+        List<Plan> planes = CapturaPlanes.capturar(consulta);
+        assertFalse(planes.isEmpty(), finder + ": no se ejecutó ninguna consulta");
+        for (Plan plan : planes) {
+            for (FilaPlan fila : plan.filas()) {
+                if ("ALL".equals(fila.type()) && fila.rows() > FILAS_MAXIMAS_SCAN) {
+                    fallos.add(finder + ": recorrido completo de " + fila.table() + " (" + fila.rows() + " filas)\n  " + plan.sql());
+                }
+                if (sinFilesort && fila.extra() != null && fila.extra().contains("Using filesort")) {
+                    fallos.add(finder + ": filesort en " + fila.table() + "\n  " + plan.sql());
+                }
+            }
+        }
+    }
+
+    private LocalDateTime fecha(int i) {
+        return inicio.plusMinutes(i * 175L);
+    }
+
+    // 5% y 5% en los estados activos, el resto en el estado final
+    private static String estado(int i, String primero, String segundo, String fin) {
+        return switch (i % 20) {
+            case 0 -> primero;
+            case 1 -> segundo;
+            default -> fin;
+        };
+    }
+
+    record Plan(String sql, List<FilaPlan> filas) {
+    }
+
+    record FilaPlan(String table, String type, String key, long rows, String extra) {
+    }
+
+    /**
+     * Envuelve el DataSource para que, mientras se captura, cada SELECT preparada se explique
+     * primero en la misma conexión y con los mismos parámetros.
+     */
+    @TestConfiguration
+    static class CapturaPlanes {
+
+        private static final ThreadLocal<List<Plan>> PLANES = new ThreadLocal<>();
+
+        static List<Plan> capturar(Runnable consulta) {
+            List<Plan> planes = new ArrayList<>();
+            PLANES.set(planes);
+            try {
+                consulta.run();
+            } finally {
+                PLANES.remove();
+            }
+            return planes;
+        }
+
+        @Bean
+        static BeanPostProcessor explicarConsultas() {
+            return new BeanPostProcessor() {
+                @Override
+                public Object postProcessAfterInitialization(Object bean, String beanName) {
+                    return bean instanceof DataSource dataSource ? envolver(DataSource.class, dataSource) : bean;
+                }
+            };
+        }
+
+        private static <T> T envolver(Class<T> tipo, T destino) {
+            return tipo.cast(Proxy.newProxyInstance(tipo.getClassLoader(), new Class<?>[]{tipo}, (proxy, metodo, args) -> {
+                Object resultado = invocar(destino, metodo, args);
+                if (resultado instanceof Connection conexion && metodo.getName().equals("getConnection")) {
+                    return envolver(Connection.class, conexion);
+                }
+                if (resultado instanceof PreparedStatement sentencia && metodo.getName().equals("prepareStatement")) {
+                    return sentenciaExplicada((Connection) destino, (String) args[0], sentencia);
+                }
+                return resultado;
+            }));
+        }
+
+        private static PreparedStatement sentenciaExplicada(Connection conexion, String sql, PreparedStatement destino) {
+            List<Object[]> parametros = new ArrayList<>();
+            return (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+                    new Class<?>[]{PreparedStatement.class}, (proxy, metodo, args) -> {
+                        if (metodo.getName().startsWith("set") && args != null && args.length > 1 && args[0] instanceof Integer) {
+                            parametros.add(new Object[]{metodo, args});
+                        } else if (metodo.getName().equals("clearParameters")) {
+                            parametros.clear();
+                        } else if (metodo.getName().equals("executeQuery") && PLANES.get() != null
+                                && sql.stripLeading().toLowerCase().startsWith("select")) {
+                            PLANES.get().add(explicar(conexion, sql, parametros));
+                        }
+                        return invocar(destino, metodo, args);
+                    });
+        }
+
+        private static Plan explicar(Connection conexion, String sql, List<Object[]> parametros) throws Exception {
+            try (PreparedStatement explain = conexion.prepareStatement("EXPLAIN " + sql)) {
+                for (Object[] parametro : parametros) {
+                    ((Method) parametro[0]).invoke(explain, (Object[]) parametro[1]);
+                }
+                List<FilaPlan> filas = new ArrayList<>();
+                try (ResultSet rs = explain.executeQuery()) {
+                    while (rs.next()) {
+                        filas.add(new FilaPlan(rs.getString("table"), rs.getString("type"), rs.getString("key"),
+                                rs.getLong("rows"), rs.getString("Extra")));
+                    }
+                }
+                return new Plan(sql, filas);
+            }
+        }
+
+        private static Object invocar(Object destino, Method metodo, Object[] args) throws Throwable {
+            try {
+                return metodo.invoke(destino, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
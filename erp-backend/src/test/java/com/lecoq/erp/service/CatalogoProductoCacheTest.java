@@ -0,0 +1,43 @@
+package com.lecoq.erp.service;
+
+import com.lecoq.erp.ProductosDePrueba;
+import com.lecoq.erp.entity.MovimientoStock;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.Map;
+
+import static com.lecoq.erp.ProductosDePrueba.STOCK_INICIAL;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+class CatalogoProductoCacheTest {
+
+    @Autowired
+    private ProductoService productoService;
+
+    @Autowired
+    private ProductosDePrueba productosDePrueba;
+
+    @AfterEach
+    void limpiar() {
+        productosDePrueba.limpiar();
+    }
+
+    @Test
+    void catalogoEnCacheReflejaElStockConfirmado() {
+        Long id = productosDePrueba.crear("Producto cache").getId();
+
+        // Primera lectura llena la cache; el ajuste confirmado debe verse en la siguiente
+        assertEquals(STOCK_INICIAL, productoService.findById(id).orElseThrow().getStock());
+        assertTrue(productoService.findProductosConStock().stream().anyMatch(p -> p.getId().equals(id)));
+        productoService.ajustarStockLote(Map.of(id, -STOCK_INICIAL), MovimientoStock.TipoMovimiento.AJUSTE_MANUAL, null);
+
+        assertEquals(0, productoService.findById(id).orElseThrow().getStock());
+        assertFalse(productoService.findProductosConStock().stream().anyMatch(p -> p.getId().equals(id)));
+    }
+}
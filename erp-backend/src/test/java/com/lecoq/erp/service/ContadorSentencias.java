@@ -0,0 +1,61 @@
+package com.lecoq.erp.service;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Registra las sentencias que Hibernate prepara en el hilo actual. Se activa con
+ * {@code spring.jpa.properties.hibernate.session_factory.statement_inspector}; al contar por hilo,
+ * los jobs programados que corren en paralelo no alteran la medición. Un lote JDBC cuenta como
+ * una sola sentencia.
+ */
+public class ContadorSentencias implements StatementInspector {
+
+    public static final String PROPIEDAD =
+            "spring.jpa.properties.hibernate.session_factory.statement_inspector=com.lecoq.erp.service.ContadorSentencias";
+
+    private static final ThreadLocal<List<String>> SENTENCIAS = ThreadLocal.withInitial(ArrayList::new);
+
+    // Asignación de bloques de ids del optimizador pooled: depende de cuántos ids quedan, no de la operación
+    private static final Pattern SECUENCIA = Pattern.compile("\\w+_seq\\b");
+
+    @Override
+    public String inspect(String sql) {
+        SENTENCIAS.get().add(sql.trim().toLowerCase(Locale.ROOT));
+        return sql;
+    }
+
+    public static void reiniciar() {
+        SENTENCIAS.get().clear();
+    }
+
+    public static long total() {
+        return SENTENCIAS.get().stream()
+                .filter(sql -> !SECUENCIA.matcher(sql).find())
+                .count();
+    }
+
+    public static long distintasDeInsert() {
+        return SENTENCIAS.get().stream()
+                .filter(sql -> !sql.startsWith("insert"))
+                .filter(sql -> !SECUENCIA.matcher(sql).find())
+                .count();
+    }
+
+    public static long inserts() {
+        return SENTENCIAS.get().stream()
+                .filter(sql -> sql.startsWith("insert"))
+                .count();
+    }
+
+    public static long insertsEn(String tabla) {
+        String prefijo = "insert into " + tabla.toLowerCase(Locale.ROOT) + " ";
+        return SENTENCIAS.get().stream()
+                .filter(sql -> sql.startsWith(prefijo))
+                .count();
+    }
+}
@@ -0,0 +1,134 @@
+package com.lecoq.erp.service;
+
+import com.lecoq.erp.ProductosDePrueba;
+import com.lecoq.erp.entity.DetallePedido;
+import com.lecoq.erp.entity.Pedido;
+import com.lecoq.erp.entity.Producto;
+import com.lecoq.erp.entity.Usuario;
+import com.lecoq.erp.repository.PedidoRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(properties = ContadorSentencias.PROPIEDAD)
+class PedidoServiceQueryCountTest {
+
+    // hibernate.jdbc.batch_size
+    private static final int TAMANO_LOTE = 50;
+
+    @Autowired
+    private PedidoService pedidoService;
+
+    @Autowired
+    private UsuarioService usuarioService;
+
+    @Autowired
+    private ReservaStockService reservaStockService;
+
+    @Autowired
+    private PedidoRepository pedidoRepository;
+
+    @Autowired
+    private ProductosDePrueba productosDePrueba;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private final List<Long> pedidoIds = new ArrayList<>();
+
+    @AfterEach
+    void limpiar() {
+        pedidoIds.forEach(reservaStockService::liberar);
+        pedidoRepository.deleteAllById(pedidoIds);
+        productosDePrueba.limpiar();
+    }
+
+    @Test
+    void lasConsultasDeCreateNoCrecenConLasLineas() {
+        Long usuarioId = usuarioService.findByUsername("admin").orElseThrow().getId();
+        List<Producto> productos = new ArrayList<>();
+        for (int i = 0; i < 60; i++) {
+            productos.add(crearProducto(i));
+        }
+
+        // Deja reservado el bloque de números de documento antes de medir
+        consultasAlCrear(usuarioId, productos.subList(0, 1));
+
+        long consultasCon5Lineas = consultasAlCrear(usuarioId, productos.subList(0, 5));
+        long consultasCon60Lineas = consultasAlCrear(usuarioId, productos);
+
+        assertEquals(consultasCon5Lineas, consultasCon60Lineas,
+                "Las sentencias distintas de los INSERT no deben depender de la cantidad de líneas");
+        // Cabecera más líneas y reservas en lotes: los INSERT no crecen de a una fila
+        long lotes = (60 + TAMANO_LOTE - 1) / TAMANO_LOTE;
+        assertTrue(ContadorSentencias.insertsEn("detalles_pedido") <= lotes,
+                "Las líneas del pedido deben insertarse en lotes de " + TAMANO_LOTE);
+        assertTrue(ContadorSentencias.insertsEn("reservas_stock") <= lotes,
+                "Las reservas del pedido deben insertarse en lotes de " + TAMANO_LOTE);
+        assertTrue(ContadorSentencias.inserts() <= 1 + 2 * lotes,
+                "Crear un pedido de 60 líneas no debe costar más de " + (1 + 2 * lotes) + " INSERT en total");
+    }
+
+    @Test
+    void lasConsultasDelDetalleNoCrecenConLasLineas() {
+        Long usuarioId = usuarioService.findByUsername("admin").orElseThrow().getId();
+        List<Producto> productos = new ArrayList<>();
+        for (int i = 0; i < 60; i++) {
+            productos.add(crearProducto(i));
+        }
+        consultasAlCrear(usuarioId, productos.subList(0, 5));
+        Long pedidoCon5Lineas = pedidoIds.get(pedidoIds.size() - 1);
+        consultasAlCrear(usuarioId, productos);
+        Long pedidoCon60Lineas = pedidoIds.get(pedidoIds.size() - 1);
+
+        long consultasCon5Lineas = consultasAlLeerDetalle(pedidoCon5Lineas);
+        long consultasCon60Lineas = consultasAlLeerDetalle(pedidoCon60Lineas);
+
+        assertEquals(consultasCon5Lineas, consultasCon60Lineas,
+                "Leer el detalle de un pedido no debe emitir una consulta por línea");
+    }
+
+    private long consultasAlLeerDetalle(Long pedidoId) {
+        ContadorSentencias.reiniciar();
+        transactionTemplate.executeWithoutResult(status -> {
+            // Recorre lo mismo que serializa la vista de detalle
+            Pedido pedido = pedidoService.findById(pedidoId).orElseThrow();
+            pedido.getUsuario().getNombreCompleto();
+            pedido.getDetalles().forEach(d -> d.getProducto().getNombre());
+        });
+        transactionTemplate.executeWithoutResult(status ->
+                pedidoService.findDetallesByPedidoId(pedidoId).forEach(d -> d.getProducto().getNombre()));
+        return ContadorSentencias.total();
+    }
+
+    private long consultasAlCrear(Long usuarioId, List<Producto> productos) {
+        Pedido pedido = new Pedido();
+        pedido.setClienteNombre("Cliente consultas");
+        List<DetallePedido> detalles = new ArrayList<>();
+        for (Producto producto : productos) {
+            DetallePedido detalle = new DetallePedido();
+            Producto referencia = new Producto();
+            referencia.setId(producto.getId());
+            detalle.setProducto(referencia);
+            detalle.setCantidad(1);
+            detalles.add(detalle);
+        }
+        pedido.setDetalles(detalles);
+
+        ContadorSentencias.reiniciar();
+        pedidoIds.add(pedidoService.create(pedido, usuarioId).getId());
+        return ContadorSentencias.distintasDeInsert();
+    }
+
+    private Producto crearProducto(int indice) {
+        return productosDePrueba.crear("Producto consultas " + indice, 10);
+    }
+}
@@ -0,0 +1,112 @@
+package com.lecoq.erp.service;
+
+import com.lecoq.erp.ProductosDePrueba;
+import com.lecoq.erp.entity.DetallePedido;
+import com.lecoq.erp.entity.Pedido;
+import com.lecoq.erp.entity.Producto;
+import com.lecoq.erp.entity.Usuario;
+import com.lecoq.erp.repository.PedidoRepository;
+import com.lecoq.erp.repository.ProductoRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.lecoq.erp.ProductosDePrueba.STOCK_INICIAL;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+class ProductoStockConcurrencyTest {
+
+    private static final int PEDIDOS = 300;
+
+    @Autowired
+    private PedidoService pedidoService;
+
+    @Autowired
+    private UsuarioService usuarioService;
+
+    @Autowired
+    private ReservaStockService reservaStockService;
+
+    @Autowired
+    private PedidoRepository pedidoRepository;
+
+    @Autowired
+    private ProductoRepository productoRepository;
+
+    @Autowired
+    private ProductosDePrueba productosDePrueba;
+
+    private Producto producto;
+    private final List<Long> pedidoIds = new ArrayList<>();
+
+    @AfterEach
+    void limpiar() {
+        pedidoRepository.deleteAllById(pedidoIds);
+        productosDePrueba.limpiar();
+    }
+
+    @Test
+    void confirmacionesConcurrentesNoSobrevendenNiPierdenDescuentos() throws Exception {
+        producto = productosDePrueba.crear("Producto concurrencia");
+
+        Usuario admin = usuarioService.findByUsername("admin").orElseThrow();
+        for (int i = 0; i < PEDIDOS; i++) {
+            // Se libera la reserva (como si hubiera vencido) para poder crear más pedidos que stock
+            Long pedidoId = pedidoService.create(nuevoPedido(), admin.getId()).getId();
+            reservaStockService.liberar(pedidoId);
+            pedidoIds.add(pedidoId);
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(32);
+        CountDownLatch inicio = new CountDownLatch(1);
+        AtomicInteger confirmados = new AtomicInteger();
+        AtomicInteger rechazados = new AtomicInteger();
+        List<Future<?>> tareas = new ArrayList<>();
+        for (Long pedidoId : pedidoIds) {
+            tareas.add(executor.submit(() -> {
+                inicio.await();
+                try {
+                    pedidoService.cambiarEstado(pedidoId, Pedido.EstadoPedido.CONFIRMADO);
+                    confirmados.incrementAndGet();
+                } catch (RuntimeException e) {
+                    rechazados.incrementAndGet();
+                }
+                return null;
+            }));
+        }
+        inicio.countDown();
+        for (Future<?> tarea : tareas) {
+            tarea.get(60, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        int stockFinal = productoRepository.findById(producto.getId()).orElseThrow().getStock();
+        assertTrue(stockFinal >= 0, "El stock nunca debe quedar negativo");
+        assertEquals(STOCK_INICIAL, confirmados.get(), "Cada unidad disponible debe venderse exactamente una vez");
+        assertEquals(PEDIDOS - STOCK_INICIAL, rechazados.get());
+        assertEquals(STOCK_INICIAL - confirmados.get(), stockFinal, "No debe perderse ningún descuento");
+    }
+
+    private Pedido nuevoPedido() {
+        DetallePedido detalle = new DetallePedido();
+        detalle.setProducto(producto);
+        detalle.setCantidad(1);
+
+        Pedido pedido = new Pedido();
+        pedido.setClienteNombre("Cliente concurrencia");
+        pedido.setDetalles(new ArrayList<>(List.of(detalle)));
+        return pedido;
+    }
+}
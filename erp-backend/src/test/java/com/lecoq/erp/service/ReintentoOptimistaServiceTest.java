@@ -0,0 +1,47 @@
+package com.lecoq.erp.service;
+
+import com.lecoq.erp.ProductosDePrueba;
+import com.lecoq.erp.entity.Producto;
+import com.lecoq.erp.repository.ProductoRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import static com.lecoq.erp.ProductosDePrueba.STOCK_INICIAL;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@SpringBootTest
+class ReintentoOptimistaServiceTest {
+
+    @Autowired
+    private ProductoService productoService;
+
+    @Autowired
+    private ProductoRepository productoRepository;
+
+    @Autowired
+    private ProductosDePrueba productosDePrueba;
+
+    @AfterEach
+    void limpiar() {
+        productosDePrueba.limpiar();
+    }
+
+    @Test
+    void edicionSobreStockDesactualizadoDevuelveConflicto() {
+        Long id = productosDePrueba.crear("Producto versión").getId();
+
+        // El cliente leyó el producto antes de un ajuste de stock concurrente
+        Producto leido = productoRepository.findById(id).orElseThrow();
+        productoService.actualizarStock(id, -10);
+        leido.setStock(STOCK_INICIAL + 5);
+
+        ConflictoVersionException conflicto = assertThrows(ConflictoVersionException.class,
+                () -> productoService.update(id, leido));
+        assertEquals(leido.getVersion() + 1, conflicto.getVersionActual());
+        assertEquals(STOCK_INICIAL - 10, productoRepository.findById(id).orElseThrow().getStock(),
+                "La edición desactualizada no debe sobrescribir el ajuste");
+    }
+}
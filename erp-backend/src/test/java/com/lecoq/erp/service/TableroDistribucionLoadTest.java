@@ -0,0 +1,178 @@
+package com.lecoq.erp.service;
+
+import com.lecoq.erp.ProductosDePrueba;
+import com.lecoq.erp.config.JwtTokenUtil;
+import com.lecoq.erp.entity.DetallePedido;
+import com.lecoq.erp.entity.Distribucion;
+import com.lecoq.erp.entity.Pedido;
+import com.lecoq.erp.entity.Producto;
+import com.lecoq.erp.entity.Usuario;
+import com.lecoq.erp.repository.DistribucionRepository;
+import com.lecoq.erp.repository.PedidoRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Con cientos de tableros conectados, publicar una distribución no agrega consultas: los eventos
+ * salen de memoria al confirmarse la transacción.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+                properties = ContadorSentencias.PROPIEDAD)
+class TableroDistribucionLoadTest {
+
+    private static final int SUSCRIPTORES = 300;
+
+    @LocalServerPort
+    private int puerto;
+
+    @Autowired
+    private DistribucionService distribucionService;
+
+    @Autowired
+    private TableroDistribucionService tableroDistribucionService;
+
+    @Autowired
+    private PedidoService pedidoService;
+
+    @Autowired
+    private UsuarioService usuarioService;
+
+    @Autowired
+    private DistribucionRepository distribucionRepository;
+
+    @Autowired
+    private PedidoRepository pedidoRepository;
+
+    @Autowired
+    private ProductosDePrueba productosDePrueba;
+
+    @Autowired
+    private JwtTokenUtil jwtTokenUtil;
+
+    private final HttpClient cliente = HttpClient.newHttpClient();
+    private final List<InputStream> conexiones = new ArrayList<>();
+    private final List<Long> distribucionIds = new ArrayList<>();
+    private final List<Long> pedidoIds = new ArrayList<>();
+    private Producto producto;
+
+    @AfterEach
+    void limpiar() throws Exception {
+        for (InputStream conexion : conexiones) {
+            conexion.close();
+        }
+        distribucionRepository.deleteAllById(distribucionIds);
+        pedidoRepository.deleteAllById(pedidoIds);
+        productosDePrueba.limpiar();
+    }
+
+    @Test
+    void lasConsultasNoDependenDeLosSuscriptores() throws Exception {
+        Usuario admin = usuarioService.findByUsername("admin").orElseThrow();
+        producto = crearProducto();
+        // La primera distribución paga costos únicos (bloque de ids, cachés): no se mide
+        consultasAlDespachar(admin.getId());
+
+        long consultasSinSuscriptores = consultasAlDespachar(admin.getId());
+
+        conectar(jwtTokenUtil.generateToken(admin), SUSCRIPTORES);
+        long enviadosAntes = enviados();
+        long consultasConSuscriptores = consultasAlDespachar(admin.getId());
+
+        assertEquals(consultasSinSuscriptores, consultasConSuscriptores,
+                "Las consultas al crear y cambiar de estado una distribución no deben depender de los tableros conectados");
+
+        // Creada, en ruta y entregada llegan a cada tablero
+        long esperados = enviadosAntes + 3L * SUSCRIPTORES;
+        long limite = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (enviados() < esperados && System.nanoTime() < limite) {
+            Thread.sleep(50);
+        }
+        assertTrue(enviados() >= esperados, "Todos los tableros deben recibir los tres eventos");
+    }
+
+    private long consultasAlDespachar(Long usuarioId) {
+        Long pedidoId = crearPedidoConfirmado(usuarioId);
+
+        // Solo las sentencias de este hilo: los jobs programados corren en paralelo
+        ContadorSentencias.reiniciar();
+        Distribucion distribucion = new Distribucion();
+        distribucion.setChoferNombre("Chofer tablero");
+        distribucion.setVehiculoPlaca("TAB-" + (System.nanoTime() % 1000));
+        distribucion.setFechaSalida(LocalDateTime.now());
+        distribucion.setDireccionEntrega("Av. Tablero 123");
+        Long distribucionId = distribucionService.create(distribucion, pedidoId, usuarioId).getId();
+        distribucionIds.add(distribucionId);
+        distribucionService.cambiarEstado(distribucionId, Distribucion.EstadoDistribucion.EN_RUTA);
+        distribucionService.cambiarEstado(distribucionId, Distribucion.EstadoDistribucion.ENTREGADO);
+        return ContadorSentencias.total();
+    }
+
+    private void conectar(String token, int cantidad) throws Exception {
+        URI uri = URI.create("http://localhost:" + puerto + "/api/distribuciones/eventos");
+        List<CompletableFuture<HttpResponse<InputStream>>> respuestas = new ArrayList<>();
+        for (int i = 0; i < cantidad; i++) {
+            HttpRequest request = HttpRequest.newBuilder(uri)
+                    .header("Authorization", "Bearer " + token)
+                    .header("Accept", "text/event-stream")
+                    .build();
+            respuestas.add(cliente.sendAsync(request, HttpResponse.BodyHandlers.ofInputStream()));
+        }
+        for (CompletableFuture<HttpResponse<InputStream>> respuesta : respuestas) {
+            HttpResponse<InputStream> response = respuesta.get(30, TimeUnit.SECONDS);
+            conexiones.add(response.body());
+            assertEquals(200, response.statusCode());
+        }
+        assertEquals(cantidad, suscriptores());
+    }
+
+    private Long crearPedidoConfirmado(Long usuarioId) {
+        Pedido pedido = new Pedido();
+        pedido.setClienteNombre("Cliente tablero");
+        DetallePedido detalle = new DetallePedido();
+        Producto referencia = new Producto();
+        referencia.setId(producto.getId());
+        detalle.setProducto(referencia);
+        detalle.setCantidad(1);
+        pedido.setDetalles(new ArrayList<>(List.of(detalle)));
+
+        Long pedidoId = pedidoService.create(pedido, usuarioId).getId();
+        pedidoIds.add(pedidoId);
+        pedidoService.cambiarEstado(pedidoId, Pedido.EstadoPedido.CONFIRMADO);
+        return pedidoId;
+    }
+
+    private Producto crearProducto() {
+        return productosDePrueba.crear("Producto tablero", 10);
+    }
+
+    private long enviados() {
+        return ((Number) sse().get("eventosEnviados")).longValue();
+    }
+
+    private int suscriptores() {
+        return ((Number) sse().get("suscriptores")).intValue();
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> sse() {
+        return (Map<String, Object>) tableroDistribucionService.getEstadisticas().get("sse");
+    }
+}